@@ -1,6 +1,8 @@
 package bms;
 
+import bms.building.Building;
 import bms.building.BuildingInitialiser;
+import bms.building.ChangeJournal;
 import bms.display.View;
 import bms.display.ViewModel;
 import bms.exceptions.FileFormatException;
@@ -9,6 +11,8 @@ import javafx.application.Platform;
 import javafx.stage.Stage;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.List;
 
 /**
@@ -24,6 +28,13 @@ public class Launcher extends Application {
      * <p>
      * where <code>filename</code> is the path of the file containing the
      * buildings to be displayed by the GUI.
+     * <p>
+     * Changes made in the GUI are journalled to the directory
+     * <code>filename.journal</code>, see {@link ChangeJournal}. If that
+     * directory holds a checkpoint when the GUI starts, and the file has not
+     * been modified since the checkpoint was written, the buildings are
+     * recovered from it instead of being loaded from the file; deleting it
+     * discards any changes made since the file was last saved.
      *
      * @param args command line arguments
      * @ass2_given
@@ -52,8 +63,19 @@ public class Launcher extends Application {
 
         View view;
         try {
-            view = new View(stage, new ViewModel(
-                    BuildingInitialiser.loadBuildings(params.get(0))));
+            Path file = Paths.get(params.get(0));
+            Path journalDirectory = Paths.get(params.get(0) + ".journal");
+            List<Building> buildings;
+            if (ChangeJournal.isCurrent(journalDirectory, file)) {
+                buildings = ChangeJournal.recover(journalDirectory);
+            } else {
+                buildings = BuildingInitialiser.loadBuildingsStreaming(
+                        params.get(0));
+            }
+            ViewModel viewModel = new ViewModel(buildings);
+            viewModel.setJournal(ChangeJournal.open(journalDirectory, file,
+                    buildings));
+            view = new View(stage, viewModel);
         } catch (IOException | FileFormatException e) {
             System.err.println("Error loading from file \"" + params.get(0)
                     + "\". Stack trace below:");
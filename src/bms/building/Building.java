@@ -2,16 +2,23 @@ package bms.building;
 
 import bms.exceptions.*;
 import bms.floor.Floor;
+import bms.hazardevaluation.HazardBatch;
+import bms.hazardevaluation.HazardEvaluator;
+import bms.room.FireDrillState;
 import bms.room.Room;
 import bms.room.RoomType;
 import bms.sensors.CarbonDioxideSensor;
-import bms.sensors.Sensor;
 import bms.util.Encodable;
 import bms.util.FireDrill;
+import bms.util.SimulationClock;
+import bms.util.TimedItem;
+import bms.util.TimedItemManager;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Represents a building of floors, which in turn, contain rooms.
@@ -35,8 +42,29 @@ public class Building implements FireDrill, Encodable {
      */
     private List<Floor> floors;
 
+    /**
+     * Clock which the maintenance schedules and sensors in this building are
+     * registered with.
+     */
+    private final SimulationClock clock = new SimulationClock();
+
+    /**
+     * Fire drill status of every room in this building.
+     */
+    private final FireDrillState fireDrillState = new FireDrillState();
+
+    /**
+     * Observers notified when a floor is added to the building.
+     */
+    private final List<BuildingObserver> observers =
+            new CopyOnWriteArrayList<>();
+
     /**
      * Creates a new empty building with no rooms.
+     * <p>
+     * The building's clock is registered weakly with the
+     * {@link TimedItemManager}, so that the building is ticked along with
+     * every other timed item until it is discarded.
      *
      * @param name name of this building, eg. "General Purpose South"
      * @ass1
@@ -44,6 +72,7 @@ public class Building implements FireDrill, Encodable {
     public Building(String name) {
         this.name = name;
         this.floors = new ArrayList<>();
+        TimedItemManager.getInstance().registerTimedItemWeakly(this.clock);
     }
 
     /**
@@ -141,6 +170,34 @@ public class Building implements FireDrill, Encodable {
 
         // No problems, so add floor to the list of floors
         floors.add(newFloor);
+        newFloor.setClock(this.clock);
+        newFloor.setFireDrillState(this.fireDrillState);
+        for (BuildingObserver observer : this.observers) {
+            observer.floorAdded(this, newFloor);
+        }
+    }
+
+    /**
+     * Adds an observer to be notified when a floor is added to this
+     * building, eg. to follow the rooms added to it, see
+     * {@link Floor#addObserver(bms.floor.FloorObserver)}.
+     * <p>
+     * Observers are called on the thread adding the floor, after it has been
+     * added.
+     *
+     * @param observer observer to add
+     */
+    public void addObserver(BuildingObserver observer) {
+        this.observers.add(observer);
+    }
+
+    /**
+     * Removes an observer added with {@link #addObserver(BuildingObserver)}.
+     *
+     * @param observer observer to remove
+     */
+    public void removeObserver(BuildingObserver observer) {
+        this.observers.remove(observer);
     }
 
     /**
@@ -215,6 +272,8 @@ public class Building implements FireDrill, Encodable {
      * If there are no rooms (of any type) in the building, a
      * FireDrillException must be thrown. Note that floors may be in the
      * building, but the floors may not contain rooms yet.
+     * <p>
+     * Drills are started in every room at once, see {@link FireDrillState}.
      *
      * @param roomType the type of room to carry out fire drills on; null if
      *                 fire drills are to be carried out in all rooms
@@ -227,20 +286,11 @@ public class Building implements FireDrill, Encodable {
             throw new FireDrillException("Cannot conduct fire drill because "
                     + "there are no floors in the building yet!");
         }
-        boolean hasRooms = false;
-        for (Floor floor : this.floors) {
-            if (!floor.getRooms().isEmpty()) {
-                hasRooms = true;
-            }
-        }
-        if (!hasRooms) {
+        if (this.fireDrillState.size() < 1) {
             throw new FireDrillException("Cannot conduct fire drill because "
                     + "there are no rooms in the building yet!");
-        } else {
-            for (Floor floor : this.floors) {
-                floor.fireDrill(roomType);
-            }
         }
+        this.fireDrillState.fireDrill(roomType);
     }
 
     /**
@@ -251,9 +301,74 @@ public class Building implements FireDrill, Encodable {
      * @ass1
      */
     public void cancelFireDrill() {
+        this.fireDrillState.cancelFireDrill();
+    }
+
+    /**
+     * Returns the clock which the maintenance schedules and sensors in this
+     * building are registered with.
+     * <p>
+     * The clock can be paused, or run faster than other buildings' clocks,
+     * see {@link SimulationClock#setRate(int)}. To tick the building
+     * independently, eg. on a thread of its own, unregister the clock from
+     * the {@link TimedItemManager} first; buildings have no shared mutable
+     * state, so different buildings can be ticked concurrently.
+     *
+     * @return this building's clock
+     */
+    public SimulationClock getClock() {
+        return this.clock;
+    }
+
+    /**
+     * Returns a new list of the maintenance schedules and sensors in this
+     * building which are ticked by the timed item manager.
+     *
+     * @return timed items owned by this building
+     */
+    public List<TimedItem> getTimedItems() {
+        List<TimedItem> timedItems = new ArrayList<>();
+        for (Floor floor : this.floors) {
+            timedItems.addAll(floor.getTimedItems());
+        }
+        return timedItems;
+    }
+
+    /**
+     * Evaluates the hazard level of every room in this building which has a
+     * hazard evaluator, in one pass over their sensors, see
+     * {@link HazardBatch}.
+     * <p>
+     * Each level is identical to the one returned by the room's evaluator.
+     *
+     * @return report of the rooms' hazard levels, in floor and room order
+     */
+    public HazardReport evaluateHazards() {
+        List<Room> rooms = new ArrayList<>();
+        List<HazardEvaluator> evaluators = new ArrayList<>();
         for (Floor floor : this.floors) {
-            floor.cancelFireDrill();
+            for (Room room : floor.getRooms()) {
+                HazardEvaluator evaluator = room.getHazardEvaluator();
+                if (evaluator != null) {
+                    rooms.add(room);
+                    evaluators.add(evaluator);
+                }
+            }
         }
+        return new HazardReport(rooms, new HazardBatch(evaluators).evaluate());
+    }
+
+    /**
+     * Stops every maintenance schedule and sensor in this building from being
+     * ticked by the {@link TimedItemManager}, eg. once the building has been
+     * discarded, by unregistering the building's clock.
+     * <p>
+     * The clock is registered weakly, so discarded buildings stop being
+     * ticked once they are garbage collected anyway; this method stops them
+     * straight away.
+     */
+    public void unregisterTimedItems() {
+        TimedItemManager.getInstance().unregisterTimedItem(this.clock);
     }
 
     /**
@@ -353,4 +468,48 @@ public class Building implements FireDrill, Encodable {
         }
         return buildingCode + System.lineSeparator();
     }
+
+    /**
+     * Appends the machine-readable string representation of this building
+     * and all of its floors, rooms and sensors, exactly as returned by
+     * {@link #encode()}.
+     *
+     * @param out destination to append the encoded representation to
+     * @throws IOException if appending to the destination fails
+     */
+    @Override
+    public void encodeTo(Appendable out) throws IOException {
+        encodeWithoutTrailingSeparator(out);
+        out.append(System.lineSeparator());
+    }
+
+    /**
+     * Appends the encoded representation of every given building, separated
+     * by line separators, as written to a save file.
+     * <p>
+     * The output is the concatenation of each building's {@link #encode()},
+     * without the final line separator.
+     *
+     * @param buildings buildings to encode, in order
+     * @param out destination to append the encoded representation to
+     * @throws IOException if appending to the destination fails
+     */
+    public static void encodeBuildings(List<Building> buildings, Appendable out)
+            throws IOException {
+        for (int i = 0; i < buildings.size(); i++) {
+            if (i > 0) {
+                out.append(System.lineSeparator());
+            }
+            buildings.get(i).encodeWithoutTrailingSeparator(out);
+        }
+    }
+
+    private void encodeWithoutTrailingSeparator(Appendable out)
+            throws IOException {
+        out.append(this.name).append(System.lineSeparator())
+                .append(Integer.toString(this.floors.size()));
+        for (Floor floor : this.floors) {
+            floor.encodeTo(out);
+        }
+    }
 }
@@ -9,10 +9,19 @@ import bms.room.RoomType;
 import bms.sensors.*;
 
 import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
 
 /**
  * Represents a building of floors, which in turn, contain rooms.
@@ -20,6 +29,17 @@ import java.util.Map;
  * A building can be evacuated, which causes all rooms on all floors within the building to be evacuated.
  */
 public class BuildingInitialiser {
+    /**
+     * Names of the concrete sensor types which may appear in a save file.
+     */
+    private static final String[] SENSOR_TYPES = {"CarbonDioxideSensor",
+            "NoiseSensor", "OccupancySensor", "TemperatureSensor"};
+
+    /**
+     * All room types, cached to avoid copying the array for every room.
+     */
+    private static final RoomType[] ROOM_TYPES = RoomType.values();
+
     /**
      * Loads a list of buildings from a save file with the given filename.
      * Save files have the following structure.
@@ -631,4 +651,472 @@ public class BuildingInitialiser {
         map.put(sensor, weighting);
         return map;
     }
+
+    /**
+     * Loads a list of buildings from a save file with the given filename,
+     * walking the characters of the file once.
+     * <p>
+     * Accepts the same file format as {@link #loadBuildings(String)}, but
+     * parses numbers without splitting lines into substrings and adds floors,
+     * rooms and sensors directly to their parents as they are read.
+     * <p>
+     * If the file is invalid, the thrown exception reports the line and column
+     * of the first malformed record, see {@link FileFormatException#getLine()}
+     * and {@link FileFormatException#getColumn()}.
+     *
+     * @param filename path of the file from which to load a list of buildings
+     * @return a list containing all the buildings loaded from the file
+     * @throws IOException if an IOException is encountered when calling any IO methods
+     * @throws FileFormatException if the file format of the given file is invalid
+     */
+    public static List<Building> loadBuildingsStreaming(String filename)
+            throws IOException, FileFormatException {
+        try (Reader reader = new FileReader(filename)) {
+            return parseBuildings(new SaveFileTokenizer(reader));
+        }
+    }
+
+    /**
+     * Loads a list of buildings from a save file with the given filename,
+     * parsing the memory-mapped bytes of the file directly.
+     * <p>
+     * This avoids decoding the file into characters, so very large save files
+     * load without allocating buffers in proportion to their size. Files
+     * which contain non-ASCII characters (eg. in building names), or which
+     * are too large to map in one piece, are loaded with
+     * {@link #loadBuildingsStreaming(String)} instead. Either way, the result
+     * is the same as that of {@link #loadBuildingsStreaming(String)}.
+     *
+     * @param filename path of the file from which to load a list of buildings
+     * @return a list containing all the buildings loaded from the file
+     * @throws IOException if an IOException is encountered when calling any IO methods
+     * @throws FileFormatException if the file format of the given file is invalid
+     */
+    public static List<Building> loadBuildingsMapped(String filename)
+            throws IOException, FileFormatException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename),
+                StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size <= Integer.MAX_VALUE) {
+                MappedByteBuffer bytes = channel.map(
+                        FileChannel.MapMode.READ_ONLY, 0, size);
+                if (SaveFileTokenizer.isAscii(bytes)) {
+                    return parseBuildings(new SaveFileTokenizer(bytes));
+                }
+            }
+        }
+        return loadBuildingsStreaming(filename);
+    }
+
+    /**
+     * Loads a list of buildings from a save file with the given filename,
+     * parsing the buildings in parallel on the common fork/join pool.
+     *
+     * @param filename path of the file from which to load a list of buildings
+     * @return a list containing all the buildings loaded from the file
+     * @throws IOException if an IOException is encountered when calling any IO methods
+     * @throws FileFormatException if the file format of the given file is invalid
+     * @see #loadBuildingsParallel(String, Executor)
+     */
+    public static List<Building> loadBuildingsParallel(String filename)
+            throws IOException, FileFormatException {
+        return loadBuildingsParallel(filename, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Loads a list of buildings from a save file with the given filename,
+     * parsing the buildings in parallel on the given executor.
+     * <p>
+     * The file is read into memory and indexed first, to find where each
+     * building record starts. Each building is then parsed on its own task.
+     * The returned buildings are in file order, and the result (or the
+     * exception thrown) is the same as that of
+     * {@link #loadBuildingsStreaming(String)}; if several buildings are
+     * malformed, the error in the earliest one is reported.
+     *
+     * @param filename path of the file from which to load a list of buildings
+     * @param executor executor on which to parse the buildings
+     * @return a list containing all the buildings loaded from the file
+     * @throws IOException if an IOException is encountered when calling any IO methods
+     * @throws FileFormatException if the file format of the given file is invalid
+     */
+    public static List<Building> loadBuildingsParallel(String filename,
+                                                       Executor executor)
+            throws IOException, FileFormatException {
+        char[] chars = new char[8192];
+        int length = 0;
+        try (Reader reader = new FileReader(filename)) {
+            int read;
+            while ((read = reader.read(chars, length, chars.length - length)) > 0) {
+                length += read;
+                if (length == chars.length) {
+                    chars = Arrays.copyOf(chars, chars.length * 2);
+                }
+            }
+        }
+        SaveFileIndex index = SaveFileIndex.build(chars, length);
+        if (index.size() == 0) {
+            return parseBuildings(new SaveFileTokenizer(
+                    new CharArrayReader(chars, 0, length)));
+        }
+
+        final char[] file = chars;
+        final int fileLength = length;
+        List<FutureTask<List<Building>>> tasks = new ArrayList<>(index.size());
+        for (int i = 0; i < index.size(); i++) {
+            final int segment = i;
+            FutureTask<List<Building>> task = new FutureTask<>(
+                    () -> parseSegment(file, index, segment));
+            tasks.add(task);
+            executor.execute(task);
+        }
+
+        List<Building> buildings = new ArrayList<>();
+        try {
+            for (int i = 0; i < tasks.size(); i++) {
+                List<Building> parsed = awaitSegment(tasks.get(i));
+                if (parsed == null) {
+                    // the index disagreed with the parser, so parse the rest
+                    // of the file in order from the last known good position
+                    buildings.addAll(parseBuildings(new SaveFileTokenizer(
+                            new CharArrayReader(file, index.start(i),
+                                    fileLength - index.start(i)),
+                            index.line(i))));
+                    break;
+                }
+                buildings.addAll(parsed);
+            }
+        } finally {
+            for (FutureTask<List<Building>> task : tasks) {
+                task.cancel(false);
+            }
+        }
+        return buildings;
+    }
+
+    /**
+     * Parses one segment of an indexed save file.
+     *
+     * @return buildings in the segment, or null if a delimited segment did not
+     * hold exactly one building
+     */
+    private static List<Building> parseSegment(char[] chars, SaveFileIndex index,
+                                               int segment)
+            throws IOException, FileFormatException {
+        int start = index.start(segment);
+        SaveFileTokenizer tokenizer = new SaveFileTokenizer(
+                new CharArrayReader(chars, start, index.end(segment) - start),
+                index.line(segment));
+        if (!index.isDelimited(segment)) {
+            return parseBuildings(tokenizer);
+        }
+        Building building = parseBuilding(tokenizer);
+        if (!tokenizer.atEndOfInput()) {
+            return null;
+        }
+        List<Building> buildings = new ArrayList<>(1);
+        buildings.add(building);
+        return buildings;
+    }
+
+    /**
+     * Waits for a segment to be parsed, rethrowing any exception thrown while
+     * parsing it.
+     */
+    private static List<Building> awaitSegment(FutureTask<List<Building>> task)
+            throws IOException, FileFormatException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while loading buildings");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof FileFormatException) {
+                throw (FileFormatException) cause;
+            }
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Parses every building remaining in the given tokenizer.
+     *
+     * @param tokenizer tokenizer positioned at the start of a building
+     * @return buildings in the order they were read
+     * @throws IOException if an IOException is encountered when calling any IO methods
+     * @throws FileFormatException if the file format is invalid
+     */
+    static List<Building> parseBuildings(SaveFileTokenizer tokenizer)
+            throws IOException, FileFormatException {
+        if (tokenizer.atEndOfInput()) {
+            throw tokenizer.recordError("expected a building but the file is empty");
+        }
+        List<Building> buildings = new ArrayList<>();
+        do {
+            buildings.add(parseBuilding(tokenizer));
+        } while (!tokenizer.atEndOfInput());
+        return buildings;
+    }
+
+    /**
+     * Parses a building name line, floor count line and all of the building's
+     * floors.
+     */
+    static Building parseBuilding(SaveFileTokenizer tokenizer)
+            throws IOException, FileFormatException {
+        tokenizer.beginRecord();
+        String name = tokenizer.readLine();
+        if (name.isEmpty()) {
+            throw tokenizer.recordError("expected a building name but found an empty line");
+        }
+        if (name.indexOf(':') >= 0) {
+            throw tokenizer.recordError("building name must not contain ':'");
+        }
+        tokenizer.endLine();
+
+        tokenizer.beginRecord();
+        int numFloors = tokenizer.readInt();
+        if (numFloors < 0) {
+            throw tokenizer.error("number of floors must not be negative");
+        }
+        tokenizer.endLine();
+
+        Building building = new Building(name);
+        for (int i = 0; i < numFloors; i++) {
+            parseFloor(tokenizer, building);
+        }
+        return building;
+    }
+
+    /**
+     * Parses a floor line and all of the floor's rooms, adding the floor to
+     * the given building.
+     * <p>
+     * floorNumber:floorWidth:floorLength:numRooms[:rooms,in,maintenance,schedule]
+     */
+    private static void parseFloor(SaveFileTokenizer tokenizer, Building building)
+            throws IOException, FileFormatException {
+        tokenizer.beginRecord();
+        int floorNumber = tokenizer.readInt();
+        tokenizer.expect(':');
+        double width = tokenizer.readDouble();
+        tokenizer.expect(':');
+        double length = tokenizer.readDouble();
+        tokenizer.expect(':');
+        int numRooms = tokenizer.readInt();
+        if (numRooms < 0) {
+            throw tokenizer.error("number of rooms must not be negative");
+        }
+        int[] schedule = null;
+        int scheduleLine = 0;
+        int scheduleColumn = 0;
+        if (tokenizer.skip(':')) {
+            scheduleLine = tokenizer.getLine();
+            scheduleColumn = tokenizer.getColumn();
+            schedule = tokenizer.readIntList();
+        }
+        tokenizer.endLine();
+
+        Floor floor = new Floor(floorNumber, width, length);
+        try {
+            building.addFloor(floor);
+        } catch (IllegalArgumentException | DuplicateFloorException
+                | NoFloorBelowException | FloorTooSmallException e) {
+            throw tokenizer.recordError("invalid floor: " + e.getMessage());
+        }
+
+        for (int i = 0; i < numRooms; i++) {
+            parseRoom(tokenizer, floor);
+        }
+
+        if (schedule != null) {
+            List<Room> roomOrder = new ArrayList<>(schedule.length);
+            for (int roomNumber : schedule) {
+                Room room = floor.getRoomByNumber(roomNumber);
+                if (room == null) {
+                    throw new FileFormatException("maintenance schedule room "
+                            + roomNumber + " is not on floor " + floorNumber,
+                            scheduleLine, scheduleColumn);
+                }
+                roomOrder.add(room);
+            }
+            try {
+                floor.createMaintenanceSchedule(roomOrder);
+            } catch (IllegalArgumentException e) {
+                throw new FileFormatException("invalid maintenance schedule",
+                        scheduleLine, scheduleColumn);
+            }
+        }
+    }
+
+    /**
+     * Parses a room line and all of the room's sensors, adding the room to
+     * the given floor.
+     * <p>
+     * roomNumber:ROOM_TYPE:roomArea:numSensors[:hazardEvalType]
+     */
+    private static void parseRoom(SaveFileTokenizer tokenizer, Floor floor)
+            throws IOException, FileFormatException {
+        tokenizer.beginRecord();
+        int roomLine = tokenizer.getRecordLine();
+        int roomNumber = tokenizer.readInt();
+        tokenizer.expect(':');
+        tokenizer.readToken();
+        RoomType type = null;
+        for (RoomType roomType : ROOM_TYPES) {
+            if (tokenizer.tokenEquals(roomType.name())) {
+                type = roomType;
+            }
+        }
+        if (type == null) {
+            throw tokenizer.error("unknown room type \"" + tokenizer.tokenText() + "\"");
+        }
+        tokenizer.expect(':');
+        double area = tokenizer.readDouble();
+        if (area < Room.getMinArea()) {
+            throw tokenizer.error("room area must be at least " + Room.getMinArea());
+        }
+        tokenizer.expect(':');
+        int numSensors = tokenizer.readInt();
+        if (numSensors < 0) {
+            throw tokenizer.error("number of sensors must not be negative");
+        }
+        List<HazardSensor> ruleBasedSensors = null;
+        Map<HazardSensor, Integer> weightings = null;
+        if (tokenizer.skip(':')) {
+            tokenizer.readToken();
+            if (tokenizer.tokenEquals("RuleBased")) {
+                ruleBasedSensors = new ArrayList<>(numSensors);
+            } else if (tokenizer.tokenEquals("WeightingBased")) {
+                weightings = new HashMap<>();
+            } else {
+                throw tokenizer.error("unknown hazard evaluator \""
+                        + tokenizer.tokenText() + "\"");
+            }
+        }
+        tokenizer.endLine();
+
+        Room room = new Room(roomNumber, type, area);
+        try {
+            floor.addRoom(room);
+        } catch (IllegalArgumentException | DuplicateRoomException
+                | InsufficientSpaceException e) {
+            throw tokenizer.recordError("invalid room: " + e.getMessage());
+        }
+
+        for (int i = 0; i < numSensors; i++) {
+            parseSensor(tokenizer, room, ruleBasedSensors, weightings);
+        }
+
+        // adding sensors clears the hazard evaluator, so it is set last
+        if (ruleBasedSensors != null) {
+            room.setHazardEvaluator(new RuleBasedHazardEvaluator(ruleBasedSensors));
+        }
+        if (weightings != null) {
+            try {
+                room.setHazardEvaluator(new WeightingBasedHazardEvaluator(weightings));
+            } catch (IllegalArgumentException e) {
+                throw new FileFormatException("invalid hazard evaluator weightings",
+                        roomLine, 1);
+            }
+        }
+    }
+
+    /**
+     * Parses a sensor line, adding the sensor to the given room.
+     * <p>
+     * sensorType:list,of,sensor,readings[:sensorAttributes...][@weighting]
+     *
+     * @param ruleBasedSensors list to add the sensor to if the room has a
+     *                         rule based hazard evaluator; null otherwise
+     * @param weightings map to add the sensor's weighting to if the room has a
+     *                   weighting based hazard evaluator; null otherwise
+     */
+    private static void parseSensor(SaveFileTokenizer tokenizer, Room room,
+                                    List<HazardSensor> ruleBasedSensors,
+                                    Map<HazardSensor, Integer> weightings)
+            throws IOException, FileFormatException {
+        tokenizer.beginRecord();
+        tokenizer.readToken();
+        String sensorType = null;
+        for (String type : SENSOR_TYPES) {
+            if (tokenizer.tokenEquals(type)) {
+                sensorType = type;
+            }
+        }
+        if (sensorType == null) {
+            throw tokenizer.error("unknown sensor type \"" + tokenizer.tokenText() + "\"");
+        }
+        tokenizer.expect(':');
+        int[] sensorReadings = tokenizer.readIntList();
+
+        int updateFrequency = 1;
+        int capacity = 0;
+        int idealValue = 0;
+        int varLimit = 0;
+        if (!sensorType.equals("TemperatureSensor")) {
+            tokenizer.expect(':');
+            updateFrequency = tokenizer.readInt();
+        }
+        if (sensorType.equals("OccupancySensor")) {
+            tokenizer.expect(':');
+            capacity = tokenizer.readInt();
+        }
+        if (sensorType.equals("CarbonDioxideSensor")) {
+            tokenizer.expect(':');
+            idealValue = tokenizer.readInt();
+            tokenizer.expect(':');
+            varLimit = tokenizer.readInt();
+        }
+        int weighting = 0;
+        if (weightings != null) {
+            tokenizer.expect('@');
+            weighting = tokenizer.readInt();
+        }
+        tokenizer.endLine();
+
+        HazardSensor sensor;
+        try {
+            switch (sensorType) {
+                case "CarbonDioxideSensor":
+                    sensor = new CarbonDioxideSensor(sensorReadings,
+                            updateFrequency, idealValue, varLimit);
+                    break;
+                case "NoiseSensor":
+                    sensor = new NoiseSensor(sensorReadings, updateFrequency);
+                    break;
+                case "OccupancySensor":
+                    sensor = new OccupancySensor(sensorReadings,
+                            updateFrequency, capacity);
+                    break;
+                default:
+                    sensor = new TemperatureSensor(sensorReadings);
+                    break;
+            }
+        } catch (IllegalArgumentException e) {
+            throw tokenizer.recordError("invalid sensor: " + e.getMessage());
+        }
+
+        try {
+            room.addSensor(sensor);
+        } catch (DuplicateSensorException e) {
+            throw tokenizer.recordError("invalid sensor: " + e.getMessage());
+        }
+        if (ruleBasedSensors != null) {
+            ruleBasedSensors.add(sensor);
+        }
+        if (weightings != null) {
+            weightings.put(sensor, weighting);
+        }
+    }
 }
@@ -0,0 +1,17 @@
+package bms.building;
+
+import bms.floor.Floor;
+
+/**
+ * Observer of floors being added to a building, see
+ * {@link Building#addObserver(BuildingObserver)}.
+ */
+public interface BuildingObserver {
+    /**
+     * Called after the given floor has been added to the given building.
+     *
+     * @param building building the floor was added to
+     * @param floor floor which was added
+     */
+    void floorAdded(Building building, Floor floor);
+}
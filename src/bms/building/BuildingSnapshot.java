@@ -0,0 +1,580 @@
+package bms.building;
+
+import bms.exceptions.*;
+import bms.floor.Floor;
+import bms.floor.MaintenanceSchedule;
+import bms.hazardevaluation.HazardEvaluator;
+import bms.hazardevaluation.RuleBasedHazardEvaluator;
+import bms.hazardevaluation.WeightingBasedHazardEvaluator;
+import bms.room.Room;
+import bms.room.RoomType;
+import bms.sensors.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes buildings in a compact, versioned binary snapshot format.
+ * <p>
+ * A snapshot holds the same information as the text save file produced by
+ * {@link Building#encode()}, as well as whether each room has a fire drill
+ * ongoing, and reading a snapshot gives buildings which are equal to the ones
+ * written. Integers are stored as variable-length
+ * (varint) values, sensor readings as zigzag-encoded differences from the
+ * previous reading, and room types, sensor kinds and hazard evaluator kinds
+ * as single byte tags.
+ * <p>
+ * Snapshots have the following structure, where "varint" is an unsigned
+ * variable-length integer, "zigzag" is a signed one, and "decimal" is a
+ * varint holding a number of hundredths shifted left by one bit, or the varint
+ * 1 followed by the eight bytes of {@link Double#doubleToLongBits(double)} for
+ * numbers which are not a whole number of hundredths.
+ *
+ * <pre>
+ *  magic "BMSS", version byte
+ *  varint numBuildings, then for each building:
+ *    varint nameLength, UTF-8 name bytes, varint numFloors
+ *    for each floor:
+ *      zigzag floorNumber, decimal width, decimal length, varint numRooms
+ *      for each room:
+ *        zigzag roomNumber, byte roomType, decimal area,
+ *        byte hazardEvaluator, byte roomFlags, varint numSensors
+ *        for each sensor:
+ *          byte sensorKind, varint numReadings, zigzag readingDeltas...,
+ *          [varint updateFrequency], [varint capacity],
+ *          [zigzag idealValue, zigzag variationLimit], [varint weighting]
+ *      varint scheduleLength, zigzag scheduleRoomNumbers...
+ * </pre>
+ * <p>
+ * The room flags byte holds {@link #FIRE_DRILL} if the room has a fire drill
+ * ongoing. Version 1 snapshots, which have no room flags, can still be read.
+ */
+public class BuildingSnapshot {
+
+    /**
+     * Bytes at the start of every snapshot.
+     */
+    private static final byte[] MAGIC = {'B', 'M', 'S', 'S'};
+
+    /**
+     * Version of the snapshot format written by this class.
+     */
+    private static final int VERSION = 2;
+
+    /**
+     * Oldest version of the snapshot format which can be read.
+     */
+    private static final int MIN_VERSION = 1;
+
+    /**
+     * Room flag set if the room has a fire drill ongoing.
+     */
+    private static final int FIRE_DRILL = 1;
+
+    /**
+     * Hazard evaluator tags.
+     */
+    private static final int NO_EVALUATOR = 0;
+    private static final int RULE_BASED = 1;
+    private static final int WEIGHTING_BASED = 2;
+
+    /**
+     * Sensor kind tags.
+     */
+    private static final int CARBON_DIOXIDE = 0;
+    private static final int NOISE = 1;
+    private static final int OCCUPANCY = 2;
+    private static final int TEMPERATURE = 3;
+
+    /**
+     * Bound on the number of hundredths stored in a compact decimal, so that
+     * its zigzag encoding fits in 30 bits.
+     */
+    private static final long MAX_HUNDREDTHS = 1 << 29;
+
+    /**
+     * All room types, indexed by their tag.
+     */
+    private static final RoomType[] ROOM_TYPES = RoomType.values();
+
+    private BuildingSnapshot() {
+    }
+
+    /**
+     * Writes a snapshot of the given buildings to the file with the given
+     * filename, replacing any existing file.
+     *
+     * @param buildings buildings to write
+     * @param filename path of the file to write
+     * @throws IOException if an IOException is encountered when writing
+     */
+    public static void save(List<Building> buildings, String filename)
+            throws IOException {
+        try (OutputStream out = new FileOutputStream(filename)) {
+            write(buildings, out);
+        }
+    }
+
+    /**
+     * Reads the buildings in the snapshot file with the given filename.
+     *
+     * @param filename path of the file to read
+     * @return buildings in the snapshot, in the order they were written
+     * @throws IOException if an IOException is encountered when reading
+     * @throws FileFormatException if the file is not a valid snapshot
+     */
+    public static List<Building> load(String filename)
+            throws IOException, FileFormatException {
+        return read(Files.readAllBytes(Paths.get(filename)));
+    }
+
+    /**
+     * Writes a snapshot of the given buildings to the given stream.
+     * The stream is not closed.
+     *
+     * @param buildings buildings to write
+     * @param out stream to write to
+     * @throws IOException if an IOException is encountered when writing
+     * @throws IllegalArgumentException if a room contains a sensor which is
+     * not one of the sensor types in {@code bms.sensors}
+     */
+    public static void write(List<Building> buildings, OutputStream out)
+            throws IOException {
+        SnapshotWriter writer = new SnapshotWriter(out);
+        writer.writeBytes(MAGIC);
+        writer.writeByte(VERSION);
+        writer.writeVarint(buildings.size());
+        for (Building building : buildings) {
+            writeBuilding(writer, building);
+        }
+        writer.flush();
+    }
+
+    /**
+     * Reads the buildings in a snapshot from the given stream, up to the end
+     * of the stream.
+     *
+     * @param in stream to read from
+     * @return buildings in the snapshot, in the order they were written
+     * @throws IOException if an IOException is encountered when reading
+     * @throws FileFormatException if the stream is not a valid snapshot
+     */
+    public static List<Building> read(InputStream in)
+            throws IOException, FileFormatException {
+        return read(in.readAllBytes());
+    }
+
+    private static List<Building> read(byte[] bytes) throws FileFormatException {
+        SnapshotReader reader = new SnapshotReader(bytes);
+        for (byte b : MAGIC) {
+            if (reader.readByte() != b) {
+                throw new FileFormatException("not a building snapshot");
+            }
+        }
+        int version = reader.readByte();
+        if (version < MIN_VERSION || version > VERSION) {
+            throw new FileFormatException("unsupported snapshot version "
+                    + version);
+        }
+        reader.version = version;
+        int numBuildings = reader.readVarint();
+        List<Building> buildings = new ArrayList<>(Math.min(numBuildings, 1024));
+        for (int i = 0; i < numBuildings; i++) {
+            buildings.add(readBuilding(reader));
+        }
+        if (!reader.atEnd()) {
+            throw reader.error("unexpected data after the last building");
+        }
+        return buildings;
+    }
+
+    private static void writeBuilding(SnapshotWriter writer, Building building)
+            throws IOException {
+        byte[] name = building.getName().getBytes(StandardCharsets.UTF_8);
+        writer.writeVarint(name.length);
+        writer.writeBytes(name);
+        List<Floor> floors = building.getFloors();
+        writer.writeVarint(floors.size());
+        for (Floor floor : floors) {
+            writer.writeZigzag(floor.getFloorNumber());
+            writer.writeDecimal(floor.getWidth());
+            writer.writeDecimal(floor.getLength());
+            List<Room> rooms = floor.getRooms();
+            writer.writeVarint(rooms.size());
+            for (Room room : rooms) {
+                writeRoom(writer, room);
+            }
+            MaintenanceSchedule schedule = floor.getMaintenanceSchedule();
+            if (schedule == null) {
+                writer.writeVarint(0);
+            } else {
+                List<Room> roomOrder = schedule.getRoomOrder();
+                writer.writeVarint(roomOrder.size());
+                for (Room room : roomOrder) {
+                    writer.writeZigzag(room.getRoomNumber());
+                }
+            }
+        }
+    }
+
+    private static Building readBuilding(SnapshotReader reader)
+            throws FileFormatException {
+        int nameLength = reader.readVarint();
+        Building building = new Building(reader.readString(nameLength));
+        int numFloors = reader.readVarint();
+        for (int f = 0; f < numFloors; f++) {
+            int position = reader.position();
+            Floor floor = new Floor(reader.readZigzag(), reader.readDecimal(),
+                    reader.readDecimal());
+            try {
+                building.addFloor(floor);
+            } catch (IllegalArgumentException | DuplicateFloorException
+                    | NoFloorBelowException | FloorTooSmallException e) {
+                throw reader.error("invalid floor: " + e.getMessage(), position);
+            }
+            int numRooms = reader.readVarint();
+            for (int r = 0; r < numRooms; r++) {
+                readRoom(reader, floor);
+            }
+            position = reader.position();
+            int scheduleLength = reader.readVarint();
+            if (scheduleLength > 0) {
+                List<Room> roomOrder = new ArrayList<>(Math.min(scheduleLength, 1024));
+                for (int i = 0; i < scheduleLength; i++) {
+                    Room room = floor.getRoomByNumber(reader.readZigzag());
+                    if (room == null) {
+                        throw reader.error("maintenance schedule room is not on floor "
+                                + floor.getFloorNumber(), position);
+                    }
+                    roomOrder.add(room);
+                }
+                try {
+                    floor.createMaintenanceSchedule(roomOrder);
+                } catch (IllegalArgumentException e) {
+                    throw reader.error("invalid maintenance schedule", position);
+                }
+            }
+        }
+        return building;
+    }
+
+    private static void writeRoom(SnapshotWriter writer, Room room) throws IOException {
+        writer.writeZigzag(room.getRoomNumber());
+        writer.writeByte(room.getType().ordinal());
+        writer.writeDecimal(room.getArea());
+        HazardEvaluator evaluator = room.getHazardEvaluator();
+        List<Integer> weightings = null;
+        if (evaluator instanceof RuleBasedHazardEvaluator) {
+            writer.writeByte(RULE_BASED);
+        } else if (evaluator instanceof WeightingBasedHazardEvaluator) {
+            writer.writeByte(WEIGHTING_BASED);
+            // in the same order as the room's sensors, see Room.encode()
+            weightings = ((WeightingBasedHazardEvaluator) evaluator).getWeightings();
+        } else {
+            writer.writeByte(NO_EVALUATOR);
+        }
+        writer.writeByte(room.fireDrillOngoing() ? FIRE_DRILL : 0);
+        List<Sensor> sensors = room.getSensors();
+        writer.writeVarint(sensors.size());
+        for (int i = 0; i < sensors.size(); i++) {
+            writeSensor(writer, sensors.get(i),
+                    weightings == null ? -1 : weightings.get(i));
+        }
+    }
+
+    private static void readRoom(SnapshotReader reader, Floor floor)
+            throws FileFormatException {
+        int position = reader.position();
+        int roomNumber = reader.readZigzag();
+        int type = reader.readByte();
+        if (type < 0 || type >= ROOM_TYPES.length) {
+            throw reader.error("unknown room type tag " + type, position);
+        }
+        Room room;
+        try {
+            room = new Room(roomNumber, ROOM_TYPES[type], reader.readDecimal());
+            floor.addRoom(room);
+        } catch (IllegalArgumentException | DuplicateRoomException
+                | InsufficientSpaceException e) {
+            throw reader.error("invalid room: " + e.getMessage(), position);
+        }
+        int evaluator = reader.readByte();
+        if (evaluator != NO_EVALUATOR && evaluator != RULE_BASED
+                && evaluator != WEIGHTING_BASED) {
+            throw reader.error("unknown hazard evaluator tag " + evaluator);
+        }
+        int flags = reader.version >= 2 ? reader.readByte() : 0;
+        if ((flags & ~FIRE_DRILL) != 0) {
+            throw reader.error("unknown room flags " + flags);
+        }
+        room.setFireDrill((flags & FIRE_DRILL) != 0);
+        List<HazardSensor> ruleBasedSensors = evaluator == RULE_BASED
+                ? new ArrayList<>() : null;
+        Map<HazardSensor, Integer> weightings = evaluator == WEIGHTING_BASED
+                ? new HashMap<>() : null;
+
+        int numSensors = reader.readVarint();
+        for (int i = 0; i < numSensors; i++) {
+            HazardSensor sensor = readSensor(reader, room, weightings);
+            if (ruleBasedSensors != null) {
+                ruleBasedSensors.add(sensor);
+            }
+        }
+
+        // adding sensors clears the hazard evaluator, so it is set last
+        if (ruleBasedSensors != null) {
+            room.setHazardEvaluator(new RuleBasedHazardEvaluator(ruleBasedSensors));
+        }
+        if (weightings != null) {
+            try {
+                room.setHazardEvaluator(new WeightingBasedHazardEvaluator(weightings));
+            } catch (IllegalArgumentException e) {
+                throw reader.error("invalid hazard evaluator weightings", position);
+            }
+        }
+    }
+
+    /**
+     * Writes a sensor, followed by its weighting if it is not negative.
+     */
+    private static void writeSensor(SnapshotWriter writer, Sensor sensor, int weighting)
+            throws IOException {
+        int kind;
+        if (sensor instanceof CarbonDioxideSensor) {
+            kind = CARBON_DIOXIDE;
+        } else if (sensor instanceof NoiseSensor) {
+            kind = NOISE;
+        } else if (sensor instanceof OccupancySensor) {
+            kind = OCCUPANCY;
+        } else if (sensor instanceof TemperatureSensor) {
+            kind = TEMPERATURE;
+        } else {
+            throw new IllegalArgumentException("cannot write sensor of type "
+                    + sensor.getClass().getSimpleName());
+        }
+        TimedSensor timedSensor = (TimedSensor) sensor;
+        writer.writeByte(kind);
+        int[] readings = timedSensor.getSensorReadings();
+        writer.writeVarint(readings.length);
+        int previous = 0;
+        for (int reading : readings) {
+            writer.writeZigzag(reading - previous);
+            previous = reading;
+        }
+        if (kind != TEMPERATURE) {
+            writer.writeVarint(timedSensor.getUpdateFrequency());
+        }
+        if (kind == OCCUPANCY) {
+            writer.writeVarint(((OccupancySensor) sensor).getCapacity());
+        }
+        if (kind == CARBON_DIOXIDE) {
+            CarbonDioxideSensor carbonDioxideSensor = (CarbonDioxideSensor) sensor;
+            writer.writeZigzag(carbonDioxideSensor.getIdealValue());
+            writer.writeZigzag(carbonDioxideSensor.getVariationLimit());
+        }
+        if (weighting >= 0) {
+            writer.writeVarint(weighting);
+        }
+    }
+
+    /**
+     * Reads a sensor and adds it to the given room.
+     *
+     * @param weightings map to add the sensor's weighting to if the room has a
+     *                   weighting based hazard evaluator; null otherwise
+     */
+    private static HazardSensor readSensor(SnapshotReader reader, Room room,
+                                           Map<HazardSensor, Integer> weightings)
+            throws FileFormatException {
+        int position = reader.position();
+        int kind = reader.readByte();
+        if (kind < CARBON_DIOXIDE || kind > TEMPERATURE) {
+            throw reader.error("unknown sensor kind tag " + kind, position);
+        }
+        int numReadings = reader.readVarint();
+        if (numReadings < 0 || numReadings > reader.remaining()) {
+            throw reader.error("snapshot is truncated");
+        }
+        int[] readings = new int[numReadings];
+        int previous = 0;
+        for (int i = 0; i < numReadings; i++) {
+            previous += reader.readZigzag();
+            readings[i] = previous;
+        }
+
+        HazardSensor sensor;
+        try {
+            switch (kind) {
+                case CARBON_DIOXIDE:
+                    sensor = new CarbonDioxideSensor(readings, reader.readVarint(),
+                            reader.readZigzag(), reader.readZigzag());
+                    break;
+                case NOISE:
+                    sensor = new NoiseSensor(readings, reader.readVarint());
+                    break;
+                case OCCUPANCY:
+                    sensor = new OccupancySensor(readings, reader.readVarint(),
+                            reader.readVarint());
+                    break;
+                default:
+                    sensor = new TemperatureSensor(readings);
+                    break;
+            }
+            room.addSensor(sensor);
+        } catch (IllegalArgumentException | DuplicateSensorException e) {
+            throw reader.error("invalid sensor: " + e.getMessage(), position);
+        }
+        if (weightings != null) {
+            weightings.put(sensor, reader.readVarint());
+        }
+        return sensor;
+    }
+
+    /**
+     * Buffered writer of snapshot primitives.
+     */
+    private static class SnapshotWriter {
+        private final OutputStream out;
+        private final byte[] buffer = new byte[1 << 16];
+        private int position;
+
+        private SnapshotWriter(OutputStream out) {
+            this.out = out;
+        }
+
+        private void writeByte(int b) throws IOException {
+            if (position == buffer.length) {
+                flush();
+            }
+            buffer[position++] = (byte) b;
+        }
+
+        private void writeBytes(byte[] bytes) throws IOException {
+            for (byte b : bytes) {
+                writeByte(b);
+            }
+        }
+
+        private void writeVarint(int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            writeByte(value);
+        }
+
+        private void writeZigzag(int value) throws IOException {
+            writeVarint((value << 1) ^ (value >> 31));
+        }
+
+        private void writeDecimal(double value) throws IOException {
+            long hundredths = Math.round(value * 100);
+            if (Math.abs(hundredths) < MAX_HUNDREDTHS && Double.doubleToLongBits(
+                    hundredths / 100.0) == Double.doubleToLongBits(value)) {
+                int zigzag = (int) ((hundredths << 1) ^ (hundredths >> 63));
+                writeVarint(zigzag << 1);
+                return;
+            }
+            writeVarint(1);
+            long bits = Double.doubleToLongBits(value);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                writeByte((int) (bits >>> shift));
+            }
+        }
+
+        private void flush() throws IOException {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+
+    /**
+     * SnapshotReader of snapshot primitives from an array of bytes.
+     */
+    private static class SnapshotReader {
+        private final byte[] bytes;
+        private int position;
+
+        /**
+         * Version of the snapshot being read.
+         */
+        private int version = VERSION;
+
+        private SnapshotReader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        private int position() {
+            return position;
+        }
+
+        private int remaining() {
+            return bytes.length - position;
+        }
+
+        private boolean atEnd() {
+            return position == bytes.length;
+        }
+
+        private int readByte() throws FileFormatException {
+            if (position == bytes.length) {
+                throw error("snapshot is truncated");
+            }
+            return bytes[position++] & 0xFF;
+        }
+
+        private int readVarint() throws FileFormatException {
+            int start = position;
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                int b = readByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw error("malformed integer", start);
+        }
+
+        private int readZigzag() throws FileFormatException {
+            int value = readVarint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        private double readDecimal() throws FileFormatException {
+            int value = readVarint();
+            if ((value & 1) == 0) {
+                int zigzag = value >>> 1;
+                return ((zigzag >>> 1) ^ -(zigzag & 1)) / 100.0;
+            }
+            long bits = 0;
+            for (int i = 0; i < Long.BYTES; i++) {
+                bits = (bits << 8) | readByte();
+            }
+            return Double.longBitsToDouble(bits);
+        }
+
+        private String readString(int length) throws FileFormatException {
+            if (length < 0 || length > remaining()) {
+                throw error("snapshot is truncated");
+            }
+            String text = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return text;
+        }
+
+        private FileFormatException error(String message) {
+            return error(message, position);
+        }
+
+        private FileFormatException error(String message, int offset) {
+            return new FileFormatException("offset " + offset + ": " + message);
+        }
+    }
+}
@@ -0,0 +1,836 @@
+package bms.building;
+
+import bms.exceptions.*;
+import bms.floor.Floor;
+import bms.hazardevaluation.HazardEvaluator;
+import bms.hazardevaluation.RuleBasedHazardEvaluator;
+import bms.hazardevaluation.WeightingBasedHazardEvaluator;
+import bms.room.Room;
+import bms.room.RoomType;
+import bms.sensors.*;
+import bms.util.AtomicFileWriter;
+
+import java.io.*;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of changes made to a list of buildings, so that the
+ * changes can be recovered after a crash without saving every building.
+ * <p>
+ * The journal directory holds a checkpoint, which is a full
+ * {@link BuildingSnapshot} of the buildings, and journal files holding one
+ * compact record per change made since the checkpoint. Each record is
+ * length-prefixed and checksummed; a record torn by a crash part way through
+ * appending it ends the journal, and is discarded on recovery.
+ * <p>
+ * Every checkpoint has a generation number, and starts a new journal file for
+ * that generation. Once the checkpoint has been written, journal files of
+ * older generations are deleted. Recovery loads the checkpoint and replays
+ * the journal files of its generation and any later ones, in order.
+ * <p>
+ * A checkpoint can be started from a snapshot of the buildings taken between
+ * changes, and written later on another thread, see
+ * {@link #startCheckpoint(byte[])}. Changes recorded in the meantime go to
+ * the checkpoint's new journal file, so they are kept whether or not the
+ * checkpoint is written.
+ * <p>
+ * A journal may track the file the buildings were loaded from. Each
+ * checkpoint records the file's last modified time and size as they were when
+ * the checkpoint was written, so that a journal which is older than the file,
+ * for example because the file was replaced after the application exited, is
+ * not recovered; see {@link #isCurrent(Path, Path)}. A checkpoint should be
+ * written whenever the buildings are saved to the file.
+ * <p>
+ * Each method which records a change must be called after the change has
+ * been made successfully to the buildings. Buildings are identified by their
+ * index in the list of buildings, floors and rooms by their numbers. A
+ * journal may be used from several threads, eg. to write a checkpoint in the
+ * background.
+ */
+public class ChangeJournal implements Closeable {
+
+    /**
+     * Name of the checkpoint file in the journal directory.
+     */
+    private static final String CHECKPOINT = "checkpoint.bin";
+
+    /**
+     * Prefix and suffix of the name of each journal file, around its
+     * generation number.
+     */
+    private static final String JOURNAL_PREFIX = "journal-";
+    private static final String JOURNAL_SUFFIX = ".log";
+
+    /**
+     * Record types.
+     */
+    private static final int ADD_BUILDING = 1;
+    private static final int ADD_FLOOR = 2;
+    private static final int ADD_ROOM = 3;
+    private static final int ADD_SENSOR = 4;
+    private static final int SET_RULE_BASED_EVALUATOR = 5;
+    private static final int SET_WEIGHTING_BASED_EVALUATOR = 6;
+    private static final int CREATE_MAINTENANCE_SCHEDULE = 7;
+    private static final int FIRE_DRILL = 8;
+    private static final int CANCEL_FIRE_DRILL = 9;
+    private static final int RENOVATE_FLOOR = 10;
+
+    /**
+     * Sensor kinds, stored in sensor records.
+     */
+    private static final int CARBON_DIOXIDE = 0;
+    private static final int NOISE = 1;
+    private static final int OCCUPANCY = 2;
+    private static final int TEMPERATURE = 3;
+
+    /**
+     * Directory holding the checkpoint and journal files.
+     */
+    private final Path directory;
+
+    /**
+     * File the buildings are loaded from and saved to, or null.
+     */
+    private final Path source;
+
+    /**
+     * Generation of the latest checkpoint started, and of the journal file
+     * changes are appended to.
+     */
+    private long generation;
+
+    /**
+     * Generation of the latest checkpoint written by this journal.
+     */
+    private long written;
+
+    /**
+     * Lock held while writing a checkpoint, so that checkpoints are written
+     * one at a time without holding up changes being recorded.
+     */
+    private final Object checkpointLock = new Object();
+
+    /**
+     * Stream appending to the journal file of the current generation.
+     */
+    private FileOutputStream journal;
+
+    /**
+     * Number of records appended since the latest checkpoint.
+     */
+    private int size;
+
+    /**
+     * Buffer in which each record is assembled before it is appended.
+     */
+    private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream();
+    private final DataOutputStream record = new DataOutputStream(recordBytes);
+
+    private ChangeJournal(Path directory, Path source, long generation) {
+        this.directory = directory;
+        this.source = source;
+        this.generation = generation;
+        this.written = generation;
+    }
+
+    /**
+     * A checkpoint which has been started, but not yet written, see
+     * {@link #startCheckpoint(byte[])}.
+     */
+    public final class PendingCheckpoint {
+
+        /**
+         * Generation of the checkpoint.
+         */
+        private final long generation;
+
+        /**
+         * Snapshot of the buildings when the checkpoint was started.
+         */
+        private final byte[] snapshot;
+
+        private PendingCheckpoint(long generation, byte[] snapshot) {
+            this.generation = generation;
+            this.snapshot = snapshot;
+        }
+
+        /**
+         * Writes the checkpoint, after which the changes recorded before it
+         * was started are no longer needed. The tracked file's last modified
+         * time and size are recorded with it, so this should be called after
+         * the buildings are saved to the file.
+         * <p>
+         * Does nothing if a later checkpoint has already been written. May be
+         * called on any thread.
+         *
+         * @throws IOException if the checkpoint cannot be written
+         */
+        public void write() throws IOException {
+            writeCheckpoint(this);
+        }
+    }
+
+    /**
+     * Returns true if the given directory holds a checkpoint from which
+     * buildings can be recovered.
+     *
+     * @param directory journal directory
+     * @return true if there is a checkpoint
+     */
+    public static boolean exists(Path directory) {
+        return Files.isRegularFile(directory.resolve(CHECKPOINT));
+    }
+
+    /**
+     * Returns true if the given directory holds a checkpoint from which
+     * buildings can be recovered, and the given file has not been modified
+     * since that checkpoint was written, so the journal holds the same or
+     * later changes than the file does.
+     *
+     * @param directory journal directory
+     * @param source file tracked by the journal
+     * @return true if there is a checkpoint as new as the file
+     * @throws IOException if the checkpoint or the file's attributes cannot
+     * be read
+     */
+    public static boolean isCurrent(Path directory, Path source)
+            throws IOException {
+        if (!exists(directory)) {
+            return false;
+        }
+        long[] recorded = new long[2];
+        try (DataInputStream in = new DataInputStream(
+                Files.newInputStream(directory.resolve(CHECKPOINT)))) {
+            in.readLong();
+            recorded[0] = in.readLong();
+            recorded[1] = in.readLong();
+        }
+        return Arrays.equals(recorded, stamp(source));
+    }
+
+    /**
+     * Opens a journal in the given directory which tracks no file, see
+     * {@link #open(Path, Path, List)}.
+     *
+     * @param directory journal directory
+     * @param buildings buildings whose changes are to be journalled
+     * @return journal to which changes to the buildings can be recorded
+     * @throws IOException if the checkpoint cannot be written
+     */
+    public static ChangeJournal open(Path directory, List<Building> buildings)
+            throws IOException {
+        return open(directory, null, buildings);
+    }
+
+    /**
+     * Opens a journal in the given directory, creating it if necessary, and
+     * writes a checkpoint of the given buildings.
+     * <p>
+     * Any changes journalled in the directory before are discarded, so to
+     * keep them the buildings should first be recovered, see
+     * {@link #recover(Path)}.
+     *
+     * @param directory journal directory
+     * @param source file the buildings are loaded from and saved to, or null
+     * @param buildings buildings whose changes are to be journalled
+     * @return journal to which changes to the buildings can be recorded
+     * @throws IOException if the checkpoint cannot be written
+     */
+    public static ChangeJournal open(Path directory, Path source,
+                                     List<Building> buildings)
+            throws IOException {
+        Files.createDirectories(directory);
+        long generation = 0;
+        if (exists(directory)) {
+            try (DataInputStream in = new DataInputStream(
+                    Files.newInputStream(directory.resolve(CHECKPOINT)))) {
+                generation = in.readLong();
+            }
+        }
+        // a checkpoint which was started but never written leaves a later
+        // journal file, which must not be appended to
+        TreeMap<Long, Path> files = journalFiles(directory);
+        if (!files.isEmpty()) {
+            generation = Math.max(generation, files.lastKey());
+        }
+        ChangeJournal journal = new ChangeJournal(directory, source,
+                generation);
+        journal.checkpoint(buildings);
+        return journal;
+    }
+
+    /**
+     * Recovers the buildings from the checkpoint in the given directory, and
+     * replays the changes journalled since it was written.
+     *
+     * @param directory journal directory
+     * @return recovered buildings
+     * @throws IOException if the checkpoint or journal cannot be read
+     * @throws FileFormatException if the checkpoint is invalid, or a
+     * journalled change cannot be applied to the recovered buildings
+     */
+    public static List<Building> recover(Path directory)
+            throws IOException, FileFormatException {
+        long generation;
+        List<Building> buildings;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(directory.resolve(CHECKPOINT))))) {
+            generation = in.readLong();
+            // last modified time and size of the tracked file
+            in.readLong();
+            in.readLong();
+            buildings = BuildingSnapshot.read(in);
+        }
+        for (Path journal : journalFiles(directory).tailMap(generation).values()) {
+            replay(journal, buildings);
+        }
+        return buildings;
+    }
+
+    /**
+     * Returns the number of changes recorded since the latest checkpoint.
+     *
+     * @return number of records in the current journal file
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Writes a checkpoint of the given buildings, after which the changes
+     * recorded so far are no longer needed. The tracked file's last modified
+     * time and size are recorded with it, so this should be called after
+     * the buildings are saved to the file.
+     *
+     * @param buildings buildings in their current state
+     * @throws IOException if the checkpoint cannot be written
+     */
+    public void checkpoint(List<Building> buildings) throws IOException {
+        ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+        BuildingSnapshot.write(buildings, snapshot);
+        startCheckpoint(snapshot.toByteArray()).write();
+    }
+
+    /**
+     * Starts a checkpoint of the buildings from the given snapshot, which must
+     * have been taken, see {@link BuildingSnapshot#write(List, OutputStream)},
+     * after the latest change recorded in this journal. Changes recorded from
+     * now on go to the checkpoint's journal file.
+     * <p>
+     * The checkpoint is not written until {@link PendingCheckpoint#write()}
+     * is called, which may be done later on another thread; until then, the
+     * buildings are recovered from the previous checkpoint and both journal
+     * files.
+     *
+     * @param snapshot snapshot of the buildings in their current state
+     * @return checkpoint to be written
+     * @throws IOException if the new journal file cannot be created
+     */
+    public synchronized PendingCheckpoint startCheckpoint(byte[] snapshot)
+            throws IOException {
+        long next = generation + 1;
+        FileOutputStream nextJournal = new FileOutputStream(
+                journalFile(directory, next).toFile(), true);
+        if (journal != null) {
+            journal.close();
+        }
+        journal = nextJournal;
+        generation = next;
+        size = 0;
+        return new PendingCheckpoint(next, snapshot);
+    }
+
+    /**
+     * Writes the given checkpoint, unless a later one has been written, and
+     * deletes the journal files it replaces.
+     */
+    private void writeCheckpoint(PendingCheckpoint checkpoint)
+            throws IOException {
+        synchronized (checkpointLock) {
+            if (checkpoint.generation <= written) {
+                return;
+            }
+            long[] sourceStamp = stamp(source);
+            AtomicFileWriter.writeBytes(directory.resolve(CHECKPOINT), out -> {
+                DataOutputStream data = new DataOutputStream(out);
+                data.writeLong(checkpoint.generation);
+                data.writeLong(sourceStamp[0]);
+                data.writeLong(sourceStamp[1]);
+                data.write(checkpoint.snapshot);
+                data.flush();
+            });
+            written = checkpoint.generation;
+            for (Map.Entry<Long, Path> old : journalFiles(directory)
+                    .headMap(checkpoint.generation).entrySet()) {
+                Files.deleteIfExists(old.getValue());
+            }
+        }
+    }
+
+    /**
+     * Closes the current journal file. Changes recorded so far are kept.
+     *
+     * @throws IOException if closing the file fails
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+    }
+
+    /**
+     * Records that a building with the given name was added to the end of
+     * the list of buildings.
+     *
+     * @param name name of the new building
+     * @throws IOException if the record cannot be appended
+     */
+    public synchronized void addBuilding(String name) throws IOException {
+        begin(ADD_BUILDING);
+        record.writeUTF(name);
+        append();
+    }
+
+    /**
+     * Records that a floor was added to a building.
+     *
+     * @param building index of the building
+     * @param floorNumber number of the new floor
+     * @param width width of the new floor
+     * @param length length of the new floor
+     * @throws IOException if the record cannot be appended
+     */
+    public synchronized void addFloor(int building, int floorNumber, double width,
+                         double length) throws IOException {
+        begin(ADD_FLOOR);
+        record.writeInt(building);
+        record.writeInt(floorNumber);
+        record.writeDouble(width);
+        record.writeDouble(length);
+        append();
+    }
+
+    /**
+     * Records that a room was added to a floor.
+     *
+     * @param building index of the building
+     * @param floorNumber number of the floor
+     * @param roomNumber number of the new room
+     * @param type type of the new room
+     * @param area area of the new room
+     * @throws IOException if the record cannot be appended
+     */
+    public synchronized void addRoom(int building, int floorNumber, int roomNumber,
+                        RoomType type, double area) throws IOException {
+        begin(ADD_ROOM);
+        writeRoom(building, floorNumber, roomNumber);
+        record.writeByte(type.ordinal());
+        record.writeDouble(area);
+        append();
+    }
+
+    /**
+     * Records that a sensor was added to a room.
+     *
+     * @param building index of the building
+     * @param floorNumber number of the floor
+     * @param roomNumber number of the room
+     * @param sensor the new sensor
+     * @throws IOException if the record cannot be appended
+     * @throws IllegalArgumentException if the sensor is not one of the sensor
+     * types in {@code bms.sensors}
+     */
+    public synchronized void addSensor(int building, int floorNumber, int roomNumber,
+                          Sensor sensor) throws IOException {
+        int kind;
+        if (sensor instanceof CarbonDioxideSensor) {
+            kind = CARBON_DIOXIDE;
+        } else if (sensor instanceof NoiseSensor) {
+            kind = NOISE;
+        } else if (sensor instanceof OccupancySensor) {
+            kind = OCCUPANCY;
+        } else if (sensor instanceof TemperatureSensor) {
+            kind = TEMPERATURE;
+        } else {
+            throw new IllegalArgumentException("cannot journal sensor of type "
+                    + sensor.getClass().getSimpleName());
+        }
+        TimedSensor timedSensor = (TimedSensor) sensor;
+        begin(ADD_SENSOR);
+        writeRoom(building, floorNumber, roomNumber);
+        record.writeByte(kind);
+        int[] readings = timedSensor.getSensorReadings();
+        record.writeInt(readings.length);
+        for (int reading : readings) {
+            record.writeInt(reading);
+        }
+        record.writeByte(timedSensor.getUpdateFrequency());
+        if (kind == OCCUPANCY) {
+            record.writeInt(((OccupancySensor) sensor).getCapacity());
+        }
+        if (kind == CARBON_DIOXIDE) {
+            record.writeInt(((CarbonDioxideSensor) sensor).getIdealValue());
+            record.writeInt(((CarbonDioxideSensor) sensor).getVariationLimit());
+        }
+        append();
+    }
+
+    /**
+     * Records that a hazard evaluator was set on a room.
+     * <p>
+     * A rule based hazard evaluator is recorded as using all of the room's
+     * hazard sensors, and a weighting based evaluator by the weighting of
+     * each of the room's sensors in order.
+     *
+     * @param building index of the building
+     * @param floorNumber number of the floor
+     * @param roomNumber number of the room
+     * @param evaluator the room's new hazard evaluator
+     * @throws IOException if the record cannot be appended
+     * @throws IllegalArgumentException if the evaluator is neither rule
+     * based nor weighting based
+     */
+    public synchronized void setHazardEvaluator(int building, int floorNumber, int roomNumber,
+                                   HazardEvaluator evaluator) throws IOException {
+        if (evaluator instanceof RuleBasedHazardEvaluator) {
+            begin(SET_RULE_BASED_EVALUATOR);
+            writeRoom(building, floorNumber, roomNumber);
+        } else if (evaluator instanceof WeightingBasedHazardEvaluator) {
+            begin(SET_WEIGHTING_BASED_EVALUATOR);
+            writeRoom(building, floorNumber, roomNumber);
+            List<Integer> weightings =
+                    ((WeightingBasedHazardEvaluator) evaluator).getWeightings();
+            record.writeInt(weightings.size());
+            for (int weighting : weightings) {
+                record.writeInt(weighting);
+            }
+        } else {
+            throw new IllegalArgumentException("cannot journal hazard evaluator "
+                    + evaluator);
+        }
+        append();
+    }
+
+    /**
+     * Records that a maintenance schedule was created on a floor.
+     *
+     * @param building index of the building
+     * @param floorNumber number of the floor
+     * @param roomOrder rooms in the schedule, in order
+     * @throws IOException if the record cannot be appended
+     */
+    public synchronized void createMaintenanceSchedule(int building, int floorNumber,
+                                          List<Room> roomOrder) throws IOException {
+        begin(CREATE_MAINTENANCE_SCHEDULE);
+        record.writeInt(building);
+        record.writeInt(floorNumber);
+        record.writeInt(roomOrder.size());
+        for (Room room : roomOrder) {
+            record.writeInt(room.getRoomNumber());
+        }
+        append();
+    }
+
+    /**
+     * Records that a fire drill was started in a building.
+     *
+     * @param building index of the building
+     * @param roomType type of room the drill was started in, or null for all
+     * @throws IOException if the record cannot be appended
+     */
+    public synchronized void fireDrill(int building, RoomType roomType) throws IOException {
+        begin(FIRE_DRILL);
+        record.writeInt(building);
+        record.writeByte(roomType == null ? -1 : roomType.ordinal());
+        append();
+    }
+
+    /**
+     * Records that the fire drill in a building was cancelled.
+     *
+     * @param building index of the building
+     * @throws IOException if the record cannot be appended
+     */
+    public synchronized void cancelFireDrill(int building) throws IOException {
+        begin(CANCEL_FIRE_DRILL);
+        record.writeInt(building);
+        append();
+    }
+
+    /**
+     * Records that a floor was renovated.
+     *
+     * @param building index of the building
+     * @param floorNumber number of the floor
+     * @param width new width of the floor
+     * @param length new length of the floor
+     * @throws IOException if the record cannot be appended
+     */
+    public synchronized void renovateFloor(int building, int floorNumber, double width,
+                              double length) throws IOException {
+        begin(RENOVATE_FLOOR);
+        record.writeInt(building);
+        record.writeInt(floorNumber);
+        record.writeDouble(width);
+        record.writeDouble(length);
+        append();
+    }
+
+    private void begin(int type) throws IOException {
+        if (journal == null) {
+            throw new IOException("journal is closed");
+        }
+        recordBytes.reset();
+        record.writeByte(type);
+    }
+
+    private void writeRoom(int building, int floorNumber, int roomNumber)
+            throws IOException {
+        record.writeInt(building);
+        record.writeInt(floorNumber);
+        record.writeInt(roomNumber);
+    }
+
+    /**
+     * Appends the assembled record to the journal file, framed by its length
+     * and checksum, and forces it to disk.
+     */
+    private void append() throws IOException {
+        byte[] payload = recordBytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteArrayOutputStream framed = new ByteArrayOutputStream(payload.length + 8);
+        DataOutputStream out = new DataOutputStream(framed);
+        out.writeInt(payload.length);
+        out.write(payload);
+        out.writeInt((int) crc.getValue());
+        journal.write(framed.toByteArray());
+        journal.getChannel().force(false);
+        size++;
+    }
+
+    /**
+     * Applies every complete record in the given journal file to the given
+     * buildings.
+     */
+    private static void replay(Path file, List<Building> buildings)
+            throws IOException, FileFormatException {
+        byte[] bytes = Files.readAllBytes(file);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+        int offset = 0;
+        int index = 0;
+        while (bytes.length - offset >= 8) {
+            int length = in.readInt();
+            if (length < 1 || length > bytes.length - offset - 8) {
+                break; // torn record
+            }
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if (in.readInt() != (int) crc.getValue()) {
+                break; // torn record
+            }
+            try {
+                apply(new DataInputStream(new ByteArrayInputStream(payload)),
+                        buildings);
+            } catch (IOException | RuntimeException | DuplicateFloorException
+                    | NoFloorBelowException | FloorTooSmallException
+                    | DuplicateRoomException | InsufficientSpaceException
+                    | DuplicateSensorException | FireDrillException e) {
+                throw new FileFormatException(file.getFileName() + ": record "
+                        + index + " could not be applied: " + e);
+            }
+            offset += length + 8;
+            index++;
+        }
+    }
+
+    /**
+     * Applies the change described by a single record to the given buildings.
+     */
+    private static void apply(DataInputStream in, List<Building> buildings)
+            throws IOException, DuplicateFloorException, NoFloorBelowException,
+            FloorTooSmallException, DuplicateRoomException,
+            InsufficientSpaceException, DuplicateSensorException,
+            FireDrillException {
+        int type = in.readByte();
+        switch (type) {
+            case ADD_BUILDING:
+                buildings.add(new Building(in.readUTF()));
+                break;
+            case ADD_FLOOR: {
+                Building building = buildings.get(in.readInt());
+                building.addFloor(new Floor(in.readInt(), in.readDouble(),
+                        in.readDouble()));
+                break;
+            }
+            case ADD_ROOM: {
+                Floor floor = readFloor(in, buildings);
+                int roomNumber = in.readInt();
+                RoomType roomType = RoomType.values()[in.readByte()];
+                floor.addRoom(new Room(roomNumber, roomType, in.readDouble()));
+                break;
+            }
+            case ADD_SENSOR: {
+                Room room = readRoom(in, buildings);
+                int kind = in.readByte();
+                int[] readings = new int[in.readInt()];
+                for (int i = 0; i < readings.length; i++) {
+                    readings[i] = in.readInt();
+                }
+                int updateFrequency = in.readByte();
+                Sensor sensor;
+                switch (kind) {
+                    case CARBON_DIOXIDE:
+                        sensor = new CarbonDioxideSensor(readings, updateFrequency,
+                                in.readInt(), in.readInt());
+                        break;
+                    case NOISE:
+                        sensor = new NoiseSensor(readings, updateFrequency);
+                        break;
+                    case OCCUPANCY:
+                        sensor = new OccupancySensor(readings, updateFrequency,
+                                in.readInt());
+                        break;
+                    case TEMPERATURE:
+                        sensor = new TemperatureSensor(readings);
+                        break;
+                    default:
+                        throw new IOException("unknown sensor kind " + kind);
+                }
+                room.addSensor(sensor);
+                break;
+            }
+            case SET_RULE_BASED_EVALUATOR: {
+                Room room = readRoom(in, buildings);
+                List<HazardSensor> hazardSensors = new ArrayList<>();
+                for (Sensor sensor : room.getSensors()) {
+                    if (sensor instanceof HazardSensor) {
+                        hazardSensors.add((HazardSensor) sensor);
+                    }
+                }
+                room.setHazardEvaluator(new RuleBasedHazardEvaluator(hazardSensors));
+                break;
+            }
+            case SET_WEIGHTING_BASED_EVALUATOR: {
+                Room room = readRoom(in, buildings);
+                List<Sensor> sensors = room.getSensors();
+                int count = in.readInt();
+                if (count != sensors.size()) {
+                    throw new IOException("expected " + sensors.size()
+                            + " weightings but found " + count);
+                }
+                Map<HazardSensor, Integer> weightings = new HashMap<>();
+                for (Sensor sensor : sensors) {
+                    weightings.put((HazardSensor) sensor, in.readInt());
+                }
+                room.setHazardEvaluator(new WeightingBasedHazardEvaluator(weightings));
+                break;
+            }
+            case CREATE_MAINTENANCE_SCHEDULE: {
+                Floor floor = readFloor(in, buildings);
+                int count = in.readInt();
+                List<Room> roomOrder = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    int roomNumber = in.readInt();
+                    Room room = floor.getRoomByNumber(roomNumber);
+                    if (room == null) {
+                        throw new IOException("no room " + roomNumber);
+                    }
+                    roomOrder.add(room);
+                }
+                floor.createMaintenanceSchedule(roomOrder);
+                break;
+            }
+            case FIRE_DRILL: {
+                Building building = buildings.get(in.readInt());
+                int roomType = in.readByte();
+                building.fireDrill(roomType < 0 ? null : RoomType.values()[roomType]);
+                break;
+            }
+            case CANCEL_FIRE_DRILL:
+                buildings.get(in.readInt()).cancelFireDrill();
+                break;
+            case RENOVATE_FLOOR:
+                buildings.get(in.readInt()).renovateFloor(in.readInt(),
+                        in.readDouble(), in.readDouble());
+                break;
+            default:
+                throw new IOException("unknown record type " + type);
+        }
+    }
+
+    private static Floor readFloor(DataInputStream in, List<Building> buildings)
+            throws IOException {
+        Building building = buildings.get(in.readInt());
+        int floorNumber = in.readInt();
+        Floor floor = building.getFloorByNumber(floorNumber);
+        if (floor == null) {
+            throw new IOException("no floor " + floorNumber);
+        }
+        return floor;
+    }
+
+    private static Room readRoom(DataInputStream in, List<Building> buildings)
+            throws IOException {
+        Floor floor = readFloor(in, buildings);
+        int roomNumber = in.readInt();
+        Room room = floor.getRoomByNumber(roomNumber);
+        if (room == null) {
+            throw new IOException("no room " + roomNumber);
+        }
+        return room;
+    }
+
+    /**
+     * Returns the last modified time and size of the given file, or -1 for
+     * both if the file is null or does not exist.
+     */
+    private static long[] stamp(Path file) throws IOException {
+        if (file == null || !Files.exists(file)) {
+            return new long[]{-1, -1};
+        }
+        BasicFileAttributes attributes = Files.readAttributes(file,
+                BasicFileAttributes.class);
+        return new long[]{attributes.lastModifiedTime().toMillis(),
+                attributes.size()};
+    }
+
+    private static Path journalFile(Path directory, long generation) {
+        return directory.resolve(JOURNAL_PREFIX + generation + JOURNAL_SUFFIX);
+    }
+
+    /**
+     * Returns the journal files in the given directory, by generation.
+     */
+    private static TreeMap<Long, Path> journalFiles(Path directory)
+            throws IOException {
+        TreeMap<Long, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                JOURNAL_PREFIX + "*" + JOURNAL_SUFFIX)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                try {
+                    files.put(Long.parseLong(name.substring(JOURNAL_PREFIX.length(),
+                            name.length() - JOURNAL_SUFFIX.length())), file);
+                } catch (NumberFormatException e) {
+                    // not a journal file
+                }
+            }
+        }
+        return files;
+    }
+}
@@ -0,0 +1,289 @@
+package bms.building;
+
+import bms.floor.Floor;
+import bms.floor.FloorObserver;
+import bms.room.Room;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Evacuates the floors of a building automatically when the hazard level of
+ * a room on them reaches a given level.
+ * <p>
+ * A floor is evacuated while any room on it is at or above the evacuation
+ * level, and, if floors above are evacuated too, while any room on a floor
+ * below it is. Every room on an evacuated floor reports
+ * {@link bms.room.RoomState#EVACUATE}, see {@link Floor#setEvacuating(boolean)};
+ * once no room which caused a floor's evacuation is at the evacuation level
+ * any more, the floor's evacuation ends. Evacuations are recorded apart from
+ * fire drills, so manual fire drills started or cancelled on the same floors
+ * neither affect nor are affected by the engine.
+ * <p>
+ * Rooms are watched by a {@link HazardAlertEngine}, so only rooms which
+ * changed are evaluated each minute, and floors are only updated when a room
+ * crosses the evacuation level. Whether a floor is being evacuated, and how
+ * many are, can be asked in constant time.
+ * <p>
+ * Floors and rooms which are in the building when the engine is created are
+ * watched, and so are floors and rooms added to it later, see
+ * {@link BuildingObserver} and {@link FloorObserver}. A floor added above an
+ * evacuated floor is evacuated too if floors above are.
+ */
+public class EvacuationEngine implements HazardAlertListener,
+        BuildingObserver, FloorObserver {
+
+    /**
+     * Building whose floors are evacuated.
+     */
+    private final Building building;
+
+    /**
+     * Engine raising an alert when a room crosses the evacuation level.
+     */
+    private final HazardAlertEngine alerts;
+
+    /**
+     * Whether floors above a floor with a hazardous room are evacuated too.
+     */
+    private final boolean evacuateFloorsAbove;
+
+    /**
+     * Floors of the building, by floor number less one. Grown as floors are
+     * added, like the other arrays indexed by floor.
+     */
+    private Floor[] floors = new Floor[4];
+
+    /**
+     * Number of floors in the building.
+     */
+    private int numberOfFloors = 0;
+
+    /**
+     * Index of the floor each watched room is on.
+     */
+    private final Map<Room, Integer> roomFloors = new IdentityHashMap<>();
+
+    /**
+     * Watched rooms at or above the evacuation level.
+     */
+    private final Set<Room> hazardous =
+            Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * Number of rooms at or above the evacuation level on each floor.
+     */
+    private int[] hazardousRooms = new int[4];
+
+    /**
+     * Indices of the floors with at least one room at or above the
+     * evacuation level, for finding the lowest.
+     */
+    private final TreeSet<Integer> hazardousFloors = new TreeSet<>();
+
+    /**
+     * Whether each floor is being evacuated.
+     */
+    private boolean[] evacuating = new boolean[4];
+
+    /**
+     * Number of floors being evacuated.
+     */
+    private int evacuatingFloors = 0;
+
+    /**
+     * Creates a new evacuation engine for the given building, and registers
+     * it with the building's clock. Floors with a room already at or above
+     * the evacuation level are evacuated straight away.
+     *
+     * @param building building to evacuate
+     * @param evacuationLevel lowest hazard level of a room which evacuates
+     *                        its floor
+     * @param evacuateFloorsAbove whether to evacuate the floors above too
+     * @throws IllegalArgumentException if the evacuation level is not
+     * between 0 and 100
+     */
+    public EvacuationEngine(Building building, int evacuationLevel,
+                            boolean evacuateFloorsAbove) {
+        if (evacuationLevel < 0 || evacuationLevel > 100) {
+            throw new IllegalArgumentException(
+                    "Evacuation level must be between 0 and 100");
+        }
+        this.building = building;
+        this.evacuateFloorsAbove = evacuateFloorsAbove;
+        this.alerts = new HazardAlertEngine(building, evacuationLevel,
+                evacuationLevel);
+        this.alerts.addListener(this);
+        building.addObserver(this);
+        for (Floor floor : building.getFloors()) {
+            floorAdded(building, floor);
+        }
+    }
+
+    /**
+     * Starts watching the given floor and its rooms, and the rooms added to
+     * it later. The floor is evacuated straight away if floors above
+     * hazardous floors are evacuated, and a floor below it is hazardous.
+     *
+     * @param building building the floor was added to
+     * @param floor floor which was added
+     */
+    @Override
+    public void floorAdded(Building building, Floor floor) {
+        synchronized (this) {
+            int index = floor.getFloorNumber() - 1;
+            if (index >= this.floors.length) {
+                int capacity = Math.max(index + 1, 2 * this.floors.length);
+                this.floors = Arrays.copyOf(this.floors, capacity);
+                this.hazardousRooms = Arrays.copyOf(this.hazardousRooms,
+                        capacity);
+                this.evacuating = Arrays.copyOf(this.evacuating, capacity);
+            }
+            this.floors[index] = floor;
+            this.numberOfFloors = Math.max(this.numberOfFloors, index + 1);
+            if (this.evacuateFloorsAbove && !this.hazardousFloors.isEmpty()
+                    && this.hazardousFloors.first() < index) {
+                setEvacuating(index, true);
+            }
+        }
+        floor.addObserver(this);
+        for (Room room : floor.getRooms()) {
+            roomAdded(floor, room);
+        }
+    }
+
+    /**
+     * Starts watching a room added to one of the building's floors, and
+     * evacuates the floor straight away if the room is already at or above
+     * the evacuation level.
+     *
+     * @param floor floor the room was added to
+     * @param room room which was added
+     */
+    @Override
+    public void roomAdded(Floor floor, Room room) {
+        synchronized (this) {
+            this.roomFloors.put(room, floor.getFloorNumber() - 1);
+        }
+        // the alert engine's lock is taken outside this engine's, as it is
+        // when alerts are raised
+        this.alerts.watchRoom(room);
+        if (this.alerts.isRaised(room)) {
+            synchronized (this) {
+                roomRaised(room);
+            }
+        }
+    }
+
+    /**
+     * Returns whether the floor with the given number is being evacuated.
+     *
+     * @param floorNumber number of the floor
+     * @return true if the floor is being evacuated; false otherwise, or if
+     * there is no such floor
+     */
+    public synchronized boolean isFloorEvacuating(int floorNumber) {
+        int index = floorNumber - 1;
+        return index >= 0 && index < this.numberOfFloors
+                && this.evacuating[index];
+    }
+
+    /**
+     * Returns the number of floors being evacuated.
+     *
+     * @return number of evacuating floors
+     */
+    public synchronized int getNumberOfEvacuatingFloors() {
+        return this.evacuatingFloors;
+    }
+
+    /**
+     * Stops watching the building's floors and rooms, and ends the evacuation
+     * of every floor the engine is evacuating.
+     */
+    public void stop() {
+        this.alerts.stop();
+        this.building.removeObserver(this);
+        for (Floor floor : this.building.getFloors()) {
+            floor.removeObserver(this);
+        }
+        synchronized (this) {
+            for (int i = 0; i < this.numberOfFloors; i++) {
+                setEvacuating(i, false);
+            }
+            this.hazardous.clear();
+            this.hazardousFloors.clear();
+            Arrays.fill(this.hazardousRooms, 0);
+        }
+    }
+
+    /**
+     * Updates the evacuated floors when a room crosses the evacuation level.
+     *
+     * @param alert alert raised for the room
+     */
+    @Override
+    public synchronized void alertRaised(HazardAlert alert) {
+        if (alert.getType() == HazardAlert.Type.HAZARD_RAISED) {
+            roomRaised(alert.getRoom());
+        } else if (alert.getType() == HazardAlert.Type.HAZARD_CLEARED) {
+            roomCleared(alert.getRoom());
+        }
+    }
+
+    private void roomRaised(Room room) {
+        Integer index = this.roomFloors.get(room);
+        // a room added while being raised may be reported twice
+        if (index == null || !this.hazardous.add(room)
+                || this.hazardousRooms[index]++ > 0) {
+            return;
+        }
+        int lowest = this.hazardousFloors.isEmpty()
+                ? this.numberOfFloors : this.hazardousFloors.first();
+        this.hazardousFloors.add(index);
+        if (!this.evacuateFloorsAbove) {
+            setEvacuating(index, true);
+        } else {
+            // floors from the previous lowest up are already evacuating
+            for (int i = index; i < lowest; i++) {
+                setEvacuating(i, true);
+            }
+        }
+    }
+
+    private void roomCleared(Room room) {
+        Integer index = this.roomFloors.get(room);
+        if (index == null || !this.hazardous.remove(room)
+                || --this.hazardousRooms[index] > 0) {
+            return;
+        }
+        int lowest = this.hazardousFloors.first();
+        this.hazardousFloors.remove(index);
+        if (!this.evacuateFloorsAbove) {
+            setEvacuating(index, false);
+        } else if (index == lowest) {
+            int nextLowest = this.hazardousFloors.isEmpty()
+                    ? this.numberOfFloors : this.hazardousFloors.first();
+            for (int i = index; i < nextLowest; i++) {
+                setEvacuating(i, false);
+            }
+        }
+    }
+
+    private void setEvacuating(int index, boolean evacuate) {
+        if (this.evacuating[index] == evacuate) {
+            return;
+        }
+        this.evacuating[index] = evacuate;
+        if (evacuate) {
+            this.evacuatingFloors++;
+        } else {
+            this.evacuatingFloors--;
+        }
+        this.floors[index].setEvacuating(evacuate);
+    }
+}
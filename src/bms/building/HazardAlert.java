@@ -0,0 +1,153 @@
+package bms.building;
+
+import bms.room.Room;
+import bms.room.RoomState;
+
+/**
+ * Alert that a room's hazard level or state has crossed a threshold, raised
+ * by a {@link HazardAlertEngine}.
+ */
+public class HazardAlert {
+
+    /**
+     * Kinds of alert.
+     */
+    public enum Type {
+        /**
+         * The room's hazard level has risen to or above the raise threshold.
+         */
+        HAZARD_RAISED,
+        /**
+         * The room's hazard level has fallen below the clear threshold.
+         */
+        HAZARD_CLEARED,
+        /**
+         * The room has changed state, eg. from OPEN to EVACUATE.
+         */
+        STATE_CHANGED
+    }
+
+    /**
+     * Kind of alert.
+     */
+    private final Type type;
+
+    /**
+     * Room the alert is for.
+     */
+    private final Room room;
+
+    /**
+     * Room's hazard level when the alert was raised.
+     */
+    private final int hazardLevel;
+
+    /**
+     * Room's state before the alert.
+     */
+    private final RoomState previousState;
+
+    /**
+     * Room's state when the alert was raised.
+     */
+    private final RoomState state;
+
+    /**
+     * Minutes elapsed by the building's clock when the alert was raised.
+     */
+    private final long minute;
+
+    /**
+     * Creates a new alert.
+     *
+     * @param type kind of alert
+     * @param room room the alert is for
+     * @param hazardLevel room's current hazard level
+     * @param previousState room's previous state
+     * @param state room's current state
+     * @param minute minutes elapsed by the building's clock
+     */
+    HazardAlert(Type type, Room room, int hazardLevel, RoomState previousState,
+                RoomState state, long minute) {
+        this.type = type;
+        this.room = room;
+        this.hazardLevel = hazardLevel;
+        this.previousState = previousState;
+        this.state = state;
+        this.minute = minute;
+    }
+
+    /**
+     * Returns the kind of alert.
+     *
+     * @return alert type
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Returns the room the alert is for.
+     *
+     * @return alerted room
+     */
+    public Room getRoom() {
+        return room;
+    }
+
+    /**
+     * Returns the room's hazard level when the alert was raised.
+     *
+     * @return hazard level, between 0 and 100 (inclusive)
+     */
+    public int getHazardLevel() {
+        return hazardLevel;
+    }
+
+    /**
+     * Returns the room's state before the alert; the same as
+     * {@link #getState()} unless the state changed.
+     *
+     * @return previous room state
+     */
+    public RoomState getPreviousState() {
+        return previousState;
+    }
+
+    /**
+     * Returns the room's state when the alert was raised.
+     *
+     * @return current room state
+     */
+    public RoomState getState() {
+        return state;
+    }
+
+    /**
+     * Returns the minutes elapsed by the building's clock when the alert was
+     * raised.
+     *
+     * @return minute of the alert
+     */
+    public long getMinute() {
+        return minute;
+    }
+
+    /**
+     * Returns the human-readable string representation of this alert.
+     * <p>
+     * The format of the string to return is
+     * "HazardAlert: type='type', room='roomNumber', hazardLevel='level',
+     * state='previousState'->'state', minute='minute'"
+     * without the single quotes.
+     *
+     * @return string representation of this alert
+     */
+    @Override
+    public String toString() {
+        return String.format(
+                "HazardAlert: type=%s, room=%d, hazardLevel=%d, state=%s->%s, minute=%d",
+                type, room.getRoomNumber(), hazardLevel, previousState, state,
+                minute);
+    }
+}
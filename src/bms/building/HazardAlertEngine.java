@@ -0,0 +1,401 @@
+package bms.building;
+
+import bms.floor.Floor;
+import bms.floor.FloorObserver;
+import bms.room.Room;
+import bms.room.RoomObserver;
+import bms.room.RoomState;
+import bms.sensors.Sensor;
+import bms.sensors.TimedSensor;
+import bms.util.SimulationClock;
+import bms.util.TimedItem;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Raises alerts when the hazard level or state of a room in a building
+ * crosses a threshold.
+ * <p>
+ * A {@link HazardAlert.Type#HAZARD_RAISED} alert is raised when a room's
+ * hazard level rises to or above the raise threshold, and a
+ * {@link HazardAlert.Type#HAZARD_CLEARED} alert when it then falls below the
+ * clear threshold. Keeping the clear threshold below the raise threshold
+ * stops a level hovering around one threshold from raising an alert on every
+ * change. A {@link HazardAlert.Type#STATE_CHANGED} alert is raised whenever a
+ * room's state changes, eg. when it must be evacuated. Each crossing raises
+ * one alert, however long the room stays past the threshold.
+ * <p>
+ * The engine is ticked by the building's clock, after the building's
+ * sensors and maintenance schedules. It only evaluates the rooms which may
+ * have changed that minute: those with a sensor whose reading changed, see
+ * {@link TimedSensor#getMinutesUntilNextReading()}, and those whose fire
+ * drill or maintenance status, sensors or hazard evaluator changed, see
+ * {@link RoomObserver}. Its cost each minute therefore grows with the number
+ * of changes, not the number of rooms. After a jump of many minutes, rooms
+ * are evaluated once, as they are at the end of the jump.
+ * <p>
+ * Rooms which are in the building when the engine is created are watched,
+ * and so are rooms added to it later, on new floors or existing ones, see
+ * {@link BuildingObserver} and {@link FloorObserver}.
+ */
+public class HazardAlertEngine implements TimedItem, RoomObserver,
+        BuildingObserver, FloorObserver {
+
+    /**
+     * Due minute of a room which is not due to be evaluated.
+     */
+    private static final long NEVER = Long.MAX_VALUE;
+
+    /**
+     * Building whose rooms are watched.
+     */
+    private final Building building;
+
+    /**
+     * Clock ticking the building and this engine.
+     */
+    private final SimulationClock clock;
+
+    /**
+     * Lowest hazard level which raises an alert.
+     */
+    private final int raiseThreshold;
+
+    /**
+     * Hazard level below which a raised alert is cleared.
+     */
+    private final int clearThreshold;
+
+    /**
+     * Alert state of each watched room.
+     */
+    private final Map<Room, Watch> watches = new IdentityHashMap<>();
+
+    /**
+     * Watched rooms by the minute they are next due to be evaluated. A room
+     * is evaluated early if it changes, so entries whose minute no longer
+     * matches the room's due minute are skipped.
+     */
+    private final PriorityQueue<Due> due =
+            new PriorityQueue<>(Comparator.comparingLong(entry -> entry.minute));
+
+    /**
+     * Rooms which have changed since the engine was last ticked. Rooms may
+     * change on any thread, so this is the only state shared without the
+     * engine's lock.
+     */
+    private final Queue<Room> changed = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Listeners to notify of alerts.
+     */
+    private final List<HazardAlertListener> listeners =
+            new CopyOnWriteArrayList<>();
+
+    /**
+     * Number of times a room has been evaluated.
+     */
+    private long evaluations = 0;
+
+    /**
+     * Alert state of a watched room.
+     */
+    private static final class Watch {
+        private final Room room;
+        private boolean raised;
+        private RoomState state;
+        private long dueAt = NEVER;
+
+        private Watch(Room room) {
+            this.room = room;
+        }
+    }
+
+    /**
+     * Entry in the queue of rooms due to be evaluated.
+     */
+    private static final class Due {
+        private final long minute;
+        private final Watch watch;
+
+        private Due(long minute, Watch watch) {
+            this.minute = minute;
+            this.watch = watch;
+        }
+    }
+
+    /**
+     * Creates a new alert engine watching every room in the given building,
+     * and every room added to it later, and registers it with the building's
+     * clock.
+     * <p>
+     * The current hazard level and state of each room are taken as given, so
+     * alerts are only raised when they next cross a threshold.
+     *
+     * @param building building to watch
+     * @param raiseThreshold lowest hazard level which raises an alert
+     * @param clearThreshold hazard level below which a raised alert is
+     *                       cleared
+     * @throws IllegalArgumentException if the thresholds are not between 0
+     * and 100, or the clear threshold is above the raise threshold
+     */
+    public HazardAlertEngine(Building building, int raiseThreshold,
+                             int clearThreshold) {
+        if (clearThreshold < 0 || raiseThreshold > 100
+                || clearThreshold > raiseThreshold) {
+            throw new IllegalArgumentException("Thresholds must satisfy "
+                    + "0 <= clear threshold <= raise threshold <= 100");
+        }
+        this.building = building;
+        this.clock = building.getClock();
+        this.raiseThreshold = raiseThreshold;
+        this.clearThreshold = clearThreshold;
+        building.addObserver(this);
+        for (Floor floor : building.getFloors()) {
+            floorAdded(building, floor);
+        }
+        this.clock.registerTimedItem(this);
+    }
+
+    /**
+     * Starts watching the given floor's rooms, and the rooms added to it
+     * later.
+     *
+     * @param building building the floor was added to
+     * @param floor floor which was added
+     */
+    @Override
+    public void floorAdded(Building building, Floor floor) {
+        floor.addObserver(this);
+        for (Room room : floor.getRooms()) {
+            watchRoom(room);
+        }
+    }
+
+    /**
+     * Starts watching a room added to one of the building's floors.
+     *
+     * @param floor floor the room was added to
+     * @param room room which was added
+     */
+    @Override
+    public void roomAdded(Floor floor, Room room) {
+        watchRoom(room);
+    }
+
+    /**
+     * Starts watching the given room. Does nothing if the room is already
+     * watched.
+     * <p>
+     * The room's current hazard level and state are taken as given, so
+     * alerts are only raised when they next cross a threshold.
+     *
+     * @param room room to watch
+     */
+    public synchronized void watchRoom(Room room) {
+        if (this.watches.containsKey(room)) {
+            return;
+        }
+        Watch watch = new Watch(room);
+        watch.raised = room.getHazardLevel() >= this.raiseThreshold;
+        watch.state = room.evaluateRoomState();
+        this.watches.put(room, watch);
+        room.addObserver(this);
+        schedule(watch, this.clock.getMinutesElapsed());
+    }
+
+    /**
+     * Returns whether the hazard level of the given room has risen to or
+     * above the raise threshold, and not since been cleared.
+     *
+     * @param room room to check
+     * @return true if the room is watched and has a raised hazard alert
+     */
+    public synchronized boolean isRaised(Room room) {
+        Watch watch = this.watches.get(room);
+        return watch != null && watch.raised;
+    }
+
+    /**
+     * Stops watching every room, and the floors and rooms added to the
+     * building, and unregisters the engine from the building's clock.
+     */
+    public synchronized void stop() {
+        this.clock.unregisterTimedItem(this);
+        this.building.removeObserver(this);
+        for (Floor floor : this.building.getFloors()) {
+            floor.removeObserver(this);
+        }
+        for (Room room : this.watches.keySet()) {
+            room.removeObserver(this);
+        }
+        this.watches.clear();
+        this.due.clear();
+        this.changed.clear();
+    }
+
+    /**
+     * Adds a listener to be notified of each alert raised.
+     *
+     * @param listener listener to add
+     */
+    public void addListener(HazardAlertListener listener) {
+        this.listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener added with {@link #addListener(HazardAlertListener)}.
+     *
+     * @param listener listener to remove
+     */
+    public void removeListener(HazardAlertListener listener) {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * Returns a new list of the watched rooms whose hazard level has risen to
+     * or above the raise threshold, and not since been cleared.
+     *
+     * @return rooms with raised hazard alerts
+     */
+    public synchronized List<Room> getRaisedRooms() {
+        List<Room> rooms = new ArrayList<>();
+        for (Watch watch : this.watches.values()) {
+            if (watch.raised) {
+                rooms.add(watch.room);
+            }
+        }
+        return rooms;
+    }
+
+    /**
+     * Returns the number of times any room has been evaluated since the
+     * engine was created, not counting when it started to be watched.
+     *
+     * @return number of room evaluations
+     */
+    public synchronized long getEvaluations() {
+        return this.evaluations;
+    }
+
+    /**
+     * Notes that the given room has changed, so that it is evaluated when the
+     * engine is next ticked.
+     *
+     * @param room room which changed
+     */
+    @Override
+    public void roomChanged(Room room) {
+        this.changed.add(room);
+    }
+
+    /**
+     * Evaluates the rooms which may have changed this minute.
+     */
+    @Override
+    public void elapseOneMinute() {
+        check();
+    }
+
+    /**
+     * Evaluates the rooms which may have changed during the given number of
+     * minutes, as they are at the end of those minutes.
+     *
+     * @param minutes number of minutes elapsed
+     */
+    @Override
+    public void elapseMinutes(long minutes) {
+        check();
+    }
+
+    /**
+     * Evaluates every changed room, and every room due by the clock's
+     * current minute.
+     */
+    private synchronized void check() {
+        long now = this.clock.getMinutesElapsed();
+        Room room;
+        while ((room = this.changed.poll()) != null) {
+            Watch watch = this.watches.get(room);
+            if (watch != null) {
+                evaluate(watch, now);
+            }
+        }
+        while (!this.due.isEmpty() && this.due.peek().minute <= now) {
+            Due entry = this.due.poll();
+            Watch watch = entry.watch;
+            if (watch.dueAt == entry.minute
+                    && this.watches.get(watch.room) == watch) {
+                watch.dueAt = NEVER;
+                evaluate(watch, now);
+            }
+        }
+    }
+
+    /**
+     * Evaluates the given room, raises any alerts, and schedules the room's
+     * next evaluation.
+     */
+    private void evaluate(Watch watch, long now) {
+        this.evaluations++;
+        Room room = watch.room;
+        int level = room.getHazardLevel();
+        RoomState state = room.evaluateRoomState();
+        if (!watch.raised && level >= this.raiseThreshold) {
+            watch.raised = true;
+            raise(HazardAlert.Type.HAZARD_RAISED, watch, level, state, now);
+        } else if (watch.raised && level < this.clearThreshold) {
+            watch.raised = false;
+            raise(HazardAlert.Type.HAZARD_CLEARED, watch, level, state, now);
+        }
+        if (state != watch.state) {
+            raise(HazardAlert.Type.STATE_CHANGED, watch, level, state, now);
+            watch.state = state;
+        }
+        schedule(watch, now);
+    }
+
+    private void raise(HazardAlert.Type type, Watch watch, int level,
+                       RoomState state, long now) {
+        HazardAlert alert = new HazardAlert(type, watch.room, level,
+                watch.state, state, now);
+        for (HazardAlertListener listener : this.listeners) {
+            listener.alertRaised(alert);
+        }
+    }
+
+    /**
+     * Schedules the given room to be evaluated when one of its sensors' next
+     * reading is due. Sensors which are not timed, or not scheduled by the
+     * building's clock, are checked every minute.
+     */
+    private void schedule(Watch watch, long now) {
+        long until = NEVER;
+        for (Sensor sensor : watch.room.getSensors()) {
+            if (sensor instanceof TimedSensor
+                    && ((TimedSensor) sensor).getScheduler() == this.clock) {
+                int minutes = ((TimedSensor) sensor).getMinutesUntilNextReading();
+                if (minutes != Integer.MAX_VALUE) {
+                    until = Math.min(until, minutes);
+                }
+            } else {
+                until = 1;
+            }
+        }
+        long next = until == NEVER ? NEVER : now + until;
+        if (next != watch.dueAt) {
+            watch.dueAt = next;
+            if (next != NEVER) {
+                this.due.add(new Due(next, watch));
+            }
+        }
+    }
+}
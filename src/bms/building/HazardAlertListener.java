@@ -0,0 +1,16 @@
+package bms.building;
+
+/**
+ * Listener for the alerts raised by a {@link HazardAlertEngine}.
+ */
+public interface HazardAlertListener {
+    /**
+     * Called when an alert is raised.
+     * <p>
+     * Called on the thread ticking the building's clock, so must not block
+     * for long.
+     *
+     * @param alert alert raised
+     */
+    void alertRaised(HazardAlert alert);
+}
@@ -0,0 +1,147 @@
+package bms.building;
+
+import bms.room.Room;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Hazard levels of every room in a building with a hazard evaluator,
+ * evaluated together, see {@link Building#evaluateHazards()}.
+ * <p>
+ * As well as each room's level, the report summarises how the levels are
+ * distributed: the highest level, a histogram of levels in bands of ten,
+ * and the rooms at or above a given level.
+ */
+public class HazardReport {
+
+    /**
+     * Number of bands in the histogram: one for each ten levels from 0 to
+     * 99, and one for 100.
+     */
+    public static final int HISTOGRAM_BANDS = 11;
+
+    /**
+     * Rooms whose levels were evaluated, in floor and room order.
+     */
+    private final List<Room> rooms;
+
+    /**
+     * Hazard level of each room.
+     */
+    private final int[] levels;
+
+    /**
+     * Highest hazard level of any room.
+     */
+    private final int maxHazardLevel;
+
+    /**
+     * Number of rooms with a level in each band.
+     */
+    private final int[] histogram = new int[HISTOGRAM_BANDS];
+
+    /**
+     * Creates a new report of the given rooms' hazard levels.
+     *
+     * @param rooms rooms whose levels were evaluated
+     * @param levels hazard level of each room, between 0 and 100
+     */
+    HazardReport(List<Room> rooms, int[] levels) {
+        this.rooms = rooms;
+        this.levels = levels;
+        int max = 0;
+        for (int level : levels) {
+            max = Math.max(max, level);
+            this.histogram[Math.min(Math.max(level, 0) / 10,
+                    HISTOGRAM_BANDS - 1)]++;
+        }
+        this.maxHazardLevel = max;
+    }
+
+    /**
+     * Returns a new list of the rooms whose levels were evaluated, in floor
+     * and room order.
+     *
+     * @return rooms in this report
+     */
+    public List<Room> getRooms() {
+        return new ArrayList<>(this.rooms);
+    }
+
+    /**
+     * Returns the number of rooms in this report.
+     *
+     * @return number of rooms
+     */
+    public int size() {
+        return this.levels.length;
+    }
+
+    /**
+     * Returns the hazard level of the room at the given index of
+     * {@link #getRooms()}.
+     *
+     * @param index index of the room
+     * @return the room's hazard level, between 0 and 100 (inclusive)
+     */
+    public int getHazardLevel(int index) {
+        return this.levels[index];
+    }
+
+    /**
+     * Returns the highest hazard level of any room, or 0 if there are no
+     * rooms.
+     *
+     * @return maximum hazard level
+     */
+    public int getMaxHazardLevel() {
+        return this.maxHazardLevel;
+    }
+
+    /**
+     * Returns a new array of the number of rooms with a level in each band:
+     * the band at index i holds levels from 10*i to 10*i + 9, and the last
+     * band holds level 100.
+     *
+     * @return histogram of hazard levels
+     */
+    public int[] getHistogram() {
+        return Arrays.copyOf(this.histogram, HISTOGRAM_BANDS);
+    }
+
+    /**
+     * Returns the number of rooms with a hazard level at or above the given
+     * threshold.
+     *
+     * @param threshold lowest hazard level to count
+     * @return number of rooms at or above the threshold
+     */
+    public int countAtLeast(int threshold) {
+        int count = 0;
+        for (int level : this.levels) {
+            if (level >= threshold) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns a new list of the rooms with a hazard level at or above the
+     * given threshold, in floor and room order.
+     *
+     * @param threshold lowest hazard level to include
+     * @return rooms at or above the threshold
+     */
+    public List<Room> getRoomsAtLeast(int threshold) {
+        List<Room> result = new ArrayList<>();
+        for (int i = 0; i < this.levels.length; i++) {
+            if (this.levels[i] >= threshold) {
+                result.add(this.rooms.get(i));
+            }
+        }
+        return result;
+    }
+}
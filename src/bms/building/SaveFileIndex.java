@@ -0,0 +1,236 @@
+package bms.building;
+
+import java.util.Arrays;
+
+/**
+ * Index of where each building record starts in a save file held in memory.
+ * <p>
+ * Building records are delimited by reading only the counts on the floor
+ * count line, each floor line and each room line, and skipping over every
+ * sensor line. Once a count cannot be read the rest of the file is left as one
+ * final, undelimited segment, so that parsing it reports exactly the same
+ * error as a sequential parse would.
+ */
+final class SaveFileIndex {
+
+    /**
+     * Characters of the save file.
+     */
+    private final char[] chars;
+
+    /**
+     * Number of valid characters in {@link #chars}.
+     */
+    private final int length;
+
+    /**
+     * Offset of the next character to be indexed.
+     */
+    private int position;
+
+    /**
+     * Line number of the next character to be indexed, starting at 1.
+     */
+    private int line = 1;
+
+    /**
+     * Offsets and line numbers at which each segment starts.
+     */
+    private int[] starts = new int[16];
+    private int[] startLines = new int[16];
+
+    /**
+     * Number of segments found.
+     */
+    private int size;
+
+    /**
+     * Whether the last segment contains exactly one building.
+     */
+    private boolean lastDelimited = true;
+
+    private SaveFileIndex(char[] chars, int length) {
+        this.chars = chars;
+        this.length = length;
+    }
+
+    /**
+     * Indexes the building records in the first {@code length} characters of
+     * the given array.
+     *
+     * @param chars characters of the save file
+     * @param length number of valid characters
+     * @return index of building records
+     */
+    static SaveFileIndex build(char[] chars, int length) {
+        SaveFileIndex index = new SaveFileIndex(chars, length);
+        while (index.position < length) {
+            int start = index.position;
+            int startLine = index.line;
+            boolean delimited = index.skipBuilding();
+            index.add(start, startLine);
+            if (!delimited) {
+                index.lastDelimited = false;
+                break;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Returns the number of segments in the file.
+     *
+     * @return number of segments
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the offset of the first character of the given segment.
+     *
+     * @param segment index of the segment
+     * @return start offset
+     */
+    int start(int segment) {
+        return starts[segment];
+    }
+
+    /**
+     * Returns the offset after the last character of the given segment.
+     *
+     * @param segment index of the segment
+     * @return end offset
+     */
+    int end(int segment) {
+        return segment + 1 < size ? starts[segment + 1] : length;
+    }
+
+    /**
+     * Returns the line number on which the given segment starts.
+     *
+     * @param segment index of the segment
+     * @return line number, starting at 1
+     */
+    int line(int segment) {
+        return startLines[segment];
+    }
+
+    /**
+     * Returns true if the given segment holds exactly one building record;
+     * false if it is the undelimited remainder of the file.
+     *
+     * @param segment index of the segment
+     * @return true if delimited
+     */
+    boolean isDelimited(int segment) {
+        return segment + 1 < size || lastDelimited;
+    }
+
+    private void add(int start, int startLine) {
+        if (size == starts.length) {
+            starts = Arrays.copyOf(starts, size * 2);
+            startLines = Arrays.copyOf(startLines, size * 2);
+        }
+        starts[size] = start;
+        startLines[size] = startLine;
+        size++;
+    }
+
+    /**
+     * Skips over one building record.
+     *
+     * @return true if the record was delimited; false if a count could not be
+     * read
+     */
+    private boolean skipBuilding() {
+        if (!skipLine()) {
+            return false;
+        }
+        int numFloors = readCount(0);
+        if (numFloors < 0 || !skipLine()) {
+            return false;
+        }
+        for (int f = 0; f < numFloors; f++) {
+            int numRooms = readCount(3);
+            if (numRooms < 0 || !skipLine()) {
+                return false;
+            }
+            for (int r = 0; r < numRooms; r++) {
+                int numSensors = readCount(3);
+                if (numSensors < 0 || !skipLine()) {
+                    return false;
+                }
+                for (int s = 0; s < numSensors; s++) {
+                    if (!skipLine()) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Skips to the start of the next line.
+     *
+     * @return false if there was no line left to skip
+     */
+    private boolean skipLine() {
+        if (position >= length) {
+            return false;
+        }
+        while (position < length && chars[position] != '\n'
+                && chars[position] != '\r') {
+            position++;
+        }
+        if (position < length) {
+            if (chars[position] == '\r' && position + 1 < length
+                    && chars[position + 1] == '\n') {
+                position++;
+            }
+            position++;
+            line++;
+        }
+        return true;
+    }
+
+    /**
+     * Reads the non-negative integer in the given colon-separated field of
+     * the current line, without moving to the next line.
+     *
+     * @param field index of the field, starting at 0
+     * @return value of the field, or -1 if it is not a non-negative integer
+     */
+    private int readCount(int field) {
+        int i = position;
+        for (int skipped = 0; skipped < field; i++) {
+            if (i >= length || chars[i] == '\n' || chars[i] == '\r') {
+                return -1;
+            }
+            if (chars[i] == ':') {
+                skipped++;
+            }
+        }
+        if (i < length && chars[i] == '+') {
+            i++;
+        }
+        long value = 0;
+        int digits = 0;
+        while (i < length && chars[i] >= '0' && chars[i] <= '9') {
+            value = value * 10 + (chars[i] - '0');
+            if (++digits > 10) {
+                return -1;
+            }
+            i++;
+        }
+        if (digits == 0 || value > Integer.MAX_VALUE) {
+            return -1;
+        }
+        if (i < length && chars[i] != ':' && chars[i] != ','
+                && chars[i] != '@' && chars[i] != '\n' && chars[i] != '\r') {
+            return -1;
+        }
+        return (int) value;
+    }
+}
@@ -0,0 +1,548 @@
+package bms.building;
+
+import bms.exceptions.FileFormatException;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Single-pass tokenizer over the characters of a building save file.
+ * <p>
+ * Integers and doubles are parsed directly from the character buffer, without
+ * creating a substring for every field. The line and column of every token is
+ * tracked so that the first malformed record can be reported precisely.
+ * <p>
+ * Characters are read either from a {@link Reader}, or directly from a buffer
+ * of ASCII bytes such as a memory-mapped file.
+ */
+class SaveFileTokenizer {
+
+    /**
+     * Value returned by {@link #peek()} once the end of the input is reached.
+     */
+    static final int EOF = -1;
+
+    /**
+     * Number of characters read from the underlying reader at a time.
+     */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Largest number of significant digits which can be converted to a double
+     * exactly using a single division by a power of ten.
+     */
+    private static final int MAX_FAST_DIGITS = 15;
+
+    /**
+     * Powers of ten that are exactly representable as doubles.
+     */
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * Reader providing the characters of the save file, or null if reading
+     * from {@link #bytes}.
+     */
+    private final Reader reader;
+
+    /**
+     * Buffer of characters read from the reader, or null if reading from
+     * {@link #bytes}.
+     */
+    private final char[] buffer;
+
+    /**
+     * ASCII bytes of the save file, or null if reading from {@link #reader}.
+     */
+    private final ByteBuffer bytes;
+
+    /**
+     * Index of the next character to return from the buffer.
+     */
+    private int position;
+
+    /**
+     * Index after the last valid character in the buffer.
+     */
+    private int limit;
+
+    /**
+     * Line and column of the next character, starting at 1.
+     */
+    private int line;
+    private int column = 1;
+
+    /**
+     * Position of the record (line) currently being parsed.
+     */
+    private int recordLine;
+    private int recordColumn;
+
+    /**
+     * Position of the last token read.
+     */
+    private int tokenLine;
+    private int tokenColumn;
+
+    /**
+     * Characters of the last token read by {@link #readToken()}.
+     */
+    private char[] token = new char[64];
+    private int tokenLength;
+
+    /**
+     * Scratch space for {@link #readIntList()}, reused between records.
+     */
+    private int[] ints = new int[64];
+
+    /**
+     * Creates a new tokenizer over the given reader, starting at line 1.
+     *
+     * @param reader reader providing the characters of the save file
+     */
+    SaveFileTokenizer(Reader reader) {
+        this(reader, 1);
+    }
+
+    /**
+     * Creates a new tokenizer over the given reader, which is positioned at
+     * the start of the given line of the save file.
+     *
+     * @param reader reader providing the characters of the save file
+     * @param firstLine line number of the first character of the reader
+     */
+    SaveFileTokenizer(Reader reader, int firstLine) {
+        this.reader = reader;
+        this.buffer = new char[BUFFER_SIZE];
+        this.bytes = null;
+        this.line = firstLine;
+        this.recordLine = firstLine;
+        this.recordColumn = 1;
+    }
+
+    /**
+     * Creates a new tokenizer over the remaining bytes of the given buffer,
+     * starting at line 1. Every byte is read as one ASCII character.
+     *
+     * @param bytes buffer of ASCII characters
+     * @see #isAscii(ByteBuffer)
+     */
+    SaveFileTokenizer(ByteBuffer bytes) {
+        this.reader = null;
+        this.buffer = null;
+        this.bytes = bytes;
+        this.position = bytes.position();
+        this.limit = bytes.limit();
+        this.line = 1;
+        this.recordLine = 1;
+        this.recordColumn = 1;
+    }
+
+    /**
+     * Returns true if every remaining byte in the given buffer is an ASCII
+     * character, so that it can be read by {@link #SaveFileTokenizer(ByteBuffer)}.
+     *
+     * @param bytes buffer to check
+     * @return true if the buffer holds only ASCII characters
+     */
+    static boolean isAscii(ByteBuffer bytes) {
+        int i = bytes.position();
+        int end = bytes.limit();
+        // check eight bytes at a time for a set high bit
+        for (; i + Long.BYTES <= end; i += Long.BYTES) {
+            if ((bytes.getLong(i) & 0x8080808080808080L) != 0) {
+                return false;
+            }
+        }
+        for (; i < end; i++) {
+            if (bytes.get(i) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the next character without consuming it, or {@link #EOF}.
+     *
+     * @return next character
+     * @throws IOException if reading from the underlying reader fails
+     */
+    int peek() throws IOException {
+        if (position == limit) {
+            if (reader == null) {
+                return EOF;
+            }
+            int read = reader.read(buffer, 0, buffer.length);
+            if (read <= 0) {
+                return EOF;
+            }
+            position = 0;
+            limit = read;
+        }
+        return bytes != null ? bytes.get(position) : buffer[position];
+    }
+
+    /**
+     * Consumes and returns the next character, or {@link #EOF}.
+     *
+     * @return next character
+     * @throws IOException if reading from the underlying reader fails
+     */
+    private int next() throws IOException {
+        int c = peek();
+        if (c != EOF) {
+            position++;
+            column++;
+        }
+        return c;
+    }
+
+    /**
+     * Returns true if there are no more characters in the input.
+     *
+     * @return true at the end of the input
+     * @throws IOException if reading from the underlying reader fails
+     */
+    boolean atEndOfInput() throws IOException {
+        return peek() == EOF;
+    }
+
+    /**
+     * Returns true if the next character ends the current line.
+     *
+     * @return true at the end of a line or the end of the input
+     * @throws IOException if reading from the underlying reader fails
+     */
+    boolean atEndOfLine() throws IOException {
+        int c = peek();
+        return c == EOF || c == '\n' || c == '\r';
+    }
+
+    /**
+     * Marks the current position as the start of a new record, used when
+     * reporting errors which concern the record as a whole.
+     */
+    void beginRecord() {
+        recordLine = line;
+        recordColumn = column;
+    }
+
+    /**
+     * Returns the line of the record currently being parsed.
+     *
+     * @return record line number
+     */
+    int getRecordLine() {
+        return recordLine;
+    }
+
+    /**
+     * Returns the line of the next character to be read.
+     *
+     * @return current line number
+     */
+    int getLine() {
+        return line;
+    }
+
+    /**
+     * Returns the column of the next character to be read.
+     *
+     * @return current column number
+     */
+    int getColumn() {
+        return column;
+    }
+
+    /**
+     * Consumes the line terminator at the end of the current line.
+     * <p>
+     * Accepts "\n", "\r\n" and "\r", as {@link java.io.BufferedReader#readLine()}
+     * does. A missing terminator is allowed at the end of the input.
+     *
+     * @throws IOException if reading from the underlying reader fails
+     * @throws FileFormatException if the line has unexpected trailing characters
+     */
+    void endLine() throws IOException, FileFormatException {
+        int c = peek();
+        if (c == EOF) {
+            return;
+        }
+        if (c != '\n' && c != '\r') {
+            markToken();
+            throw error("unexpected " + describe(c) + " at end of line");
+        }
+        next();
+        if (c == '\r' && peek() == '\n') {
+            next();
+        }
+        line++;
+        column = 1;
+    }
+
+    /**
+     * Reads the remainder of the current line, not including the terminator.
+     *
+     * @return text of the rest of the line
+     * @throws IOException if reading from the underlying reader fails
+     */
+    String readLine() throws IOException {
+        markToken();
+        tokenLength = 0;
+        while (!atEndOfLine()) {
+            appendToken((char) next());
+        }
+        return new String(token, 0, tokenLength);
+    }
+
+    /**
+     * Reads the characters up to the next delimiter (':', ',', '@' or the end
+     * of the line) into the token buffer.
+     *
+     * @throws IOException if reading from the underlying reader fails
+     */
+    void readToken() throws IOException {
+        markToken();
+        tokenLength = 0;
+        while (!isDelimiter(peek())) {
+            appendToken((char) next());
+        }
+    }
+
+    /**
+     * Returns true if the last token read is exactly the given text.
+     *
+     * @param text text to compare to
+     * @return true if equal
+     */
+    boolean tokenEquals(String text) {
+        if (text.length() != tokenLength) {
+            return false;
+        }
+        for (int i = 0; i < tokenLength; i++) {
+            if (token[i] != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the text of the last token read.
+     *
+     * @return token text
+     */
+    String tokenText() {
+        return new String(token, 0, tokenLength);
+    }
+
+    /**
+     * Consumes the given separator character.
+     *
+     * @param separator character that must come next
+     * @throws IOException if reading from the underlying reader fails
+     * @throws FileFormatException if the next character is not the separator
+     */
+    void expect(char separator) throws IOException, FileFormatException {
+        if (peek() != separator) {
+            markToken();
+            throw error("expected '" + separator + "' but found "
+                    + describe(peek()));
+        }
+        next();
+    }
+
+    /**
+     * Consumes the given separator character if it comes next.
+     *
+     * @param separator character to consume
+     * @return true if the separator was consumed
+     * @throws IOException if reading from the underlying reader fails
+     */
+    boolean skip(char separator) throws IOException {
+        if (peek() == separator) {
+            next();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Reads an integer field, with the same syntax as
+     * {@link Integer#parseInt(String)}.
+     *
+     * @return value of the field
+     * @throws IOException if reading from the underlying reader fails
+     * @throws FileFormatException if the field is not a valid integer
+     */
+    int readInt() throws IOException, FileFormatException {
+        readToken();
+        int i = 0;
+        boolean negative = false;
+        if (tokenLength > 0 && (token[0] == '-' || token[0] == '+')) {
+            negative = token[0] == '-';
+            i++;
+        }
+        if (i == tokenLength || tokenLength - i > 10) {
+            throw invalidNumber("an integer");
+        }
+        long value = 0;
+        for (; i < tokenLength; i++) {
+            char c = token[i];
+            if (c < '0' || c > '9') {
+                throw invalidNumber("an integer");
+            }
+            value = value * 10 + (c - '0');
+        }
+        if (negative) {
+            value = -value;
+        }
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw invalidNumber("an integer");
+        }
+        return (int) value;
+    }
+
+    /**
+     * Reads a decimal field, with the same syntax as
+     * {@link Double#parseDouble(String)}.
+     * <p>
+     * Plain decimals with at most 15 significant digits are converted with a
+     * single exact division, which is correctly rounded. Anything else (eg.
+     * exponents) falls back to {@link Double#parseDouble(String)}.
+     *
+     * @return value of the field
+     * @throws IOException if reading from the underlying reader fails
+     * @throws FileFormatException if the field is not a valid number
+     */
+    double readDouble() throws IOException, FileFormatException {
+        readToken();
+        int i = 0;
+        boolean negative = false;
+        if (tokenLength > 0 && (token[0] == '-' || token[0] == '+')) {
+            negative = token[0] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int significantDigits = 0;
+        int fractionDigits = 0;
+        int digits = 0;
+        boolean seenPoint = false;
+        boolean simple = true;
+        for (; i < tokenLength; i++) {
+            char c = token[i];
+            if (c >= '0' && c <= '9') {
+                digits++;
+                if (seenPoint) {
+                    fractionDigits++;
+                }
+                if (mantissa != 0 || c != '0') {
+                    significantDigits++;
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (significantDigits > MAX_FAST_DIGITS) {
+                    simple = false;
+                    break;
+                }
+            } else if (c == '.' && !seenPoint) {
+                seenPoint = true;
+            } else {
+                simple = false;
+                break;
+            }
+        }
+        if (simple && digits > 0 && fractionDigits < POWERS_OF_TEN.length) {
+            double value = mantissa / POWERS_OF_TEN[fractionDigits];
+            return negative ? -value : value;
+        }
+        try {
+            return Double.parseDouble(tokenText());
+        } catch (NumberFormatException e) {
+            throw invalidNumber("a number");
+        }
+    }
+
+    /**
+     * Reads a non-empty, comma-separated list of integers.
+     *
+     * @return new array containing the integers in the list
+     * @throws IOException if reading from the underlying reader fails
+     * @throws FileFormatException if any element is not a valid integer
+     */
+    int[] readIntList() throws IOException, FileFormatException {
+        int count = 0;
+        do {
+            if (count == ints.length) {
+                ints = Arrays.copyOf(ints, count * 2);
+            }
+            ints[count++] = readInt();
+        } while (skip(','));
+        return Arrays.copyOf(ints, count);
+    }
+
+    /**
+     * Creates an exception for a problem with the last token read.
+     *
+     * @param message description of the problem
+     * @return exception positioned at the last token
+     */
+    FileFormatException error(String message) {
+        return new FileFormatException(message, tokenLine, tokenColumn);
+    }
+
+    /**
+     * Creates an exception for a problem with the current record as a whole.
+     *
+     * @param message description of the problem
+     * @return exception positioned at the start of the current record
+     */
+    FileFormatException recordError(String message) {
+        return new FileFormatException(message, recordLine, recordColumn);
+    }
+
+    /**
+     * Creates an exception describing the last token, which should have been
+     * a number.
+     */
+    private FileFormatException invalidNumber(String expected)
+            throws IOException {
+        if (tokenLength == 0) {
+            return error("expected " + expected + " but found "
+                    + describe(peek()));
+        }
+        return error("expected " + expected + " but found \""
+                + tokenText() + "\"");
+    }
+
+    private void markToken() {
+        tokenLine = line;
+        tokenColumn = column;
+    }
+
+    private void appendToken(char c) {
+        if (tokenLength == token.length) {
+            token = Arrays.copyOf(token, tokenLength * 2);
+        }
+        token[tokenLength++] = c;
+    }
+
+    private static boolean isDelimiter(int c) {
+        return c == ':' || c == ',' || c == '@'
+                || c == '\n' || c == '\r' || c == EOF;
+    }
+
+    private static String describe(int c) {
+        if (c == EOF) {
+            return "the end of the file";
+        }
+        if (c == '\n' || c == '\r') {
+            return "the end of the line";
+        }
+        return "'" + (char) c + "'";
+    }
+}
@@ -219,8 +219,7 @@ public class BuildingCanvas extends Canvas {
 
                 // Draw a coloured rectangle to represent the hazard level
                 if (room.getHazardEvaluator() != null) {
-                    double hazardPct = room.getHazardEvaluator()
-                            .evaluateHazardLevel() / 100.0;
+                    double hazardPct = room.getHazardLevel() / 100.0;
                     double fullHeight = FLOOR_HEIGHT - 2 * roomPadding;
                     double height = hazardPct * fullHeight;
                     gc.setFill(Color.ORANGE);
@@ -438,15 +438,8 @@ public class View {
                     "Please enter the file name to save to", "File name:", "");
             if (filename.isEmpty()) return;
 
-            try {
-                viewModel.save(filename.get());
-            } catch (IOException ioException) {
-                viewModel.createErrorDialog("Error saving buildings to file",
-                        ioException.getMessage());
-                return;
-            }
-            viewModel.createSuccessDialog("Saved file successfully",
-                    "Saved buildings to \"" + filename + "\" successfully.");
+            // progress and errors are reported by the save status label
+            viewModel.saveInBackground(filename.get());
         });
 
         var resetViewButton = new Button("Reset View");
@@ -465,9 +458,19 @@ public class View {
         timeElapsedLabel.setMaxHeight(Double.MAX_VALUE); // centered vertically
         timeElapsedLabel.setAlignment(Pos.CENTER);
 
+        var saveStatusLabel = new Label();
+        saveStatusLabel.textProperty().bind(viewModel.getSaveStatusProperty());
+        saveStatusLabel.setMaxHeight(Double.MAX_VALUE);
+        saveStatusLabel.setAlignment(Pos.CENTER);
+
+        var alertStatusLabel = new Label();
+        alertStatusLabel.textProperty().bind(viewModel.getAlertStatusProperty());
+        alertStatusLabel.setMaxHeight(Double.MAX_VALUE);
+        alertStatusLabel.setAlignment(Pos.CENTER);
+
         var buttonContainer = new HBox(10);
         buttonContainer.getChildren().addAll(pauseButton, saveButton,
-                resetViewButton, helpButton);
+                resetViewButton, helpButton, saveStatusLabel, alertStatusLabel);
         infoBar.setLeft(buttonContainer);
         infoBar.setRight(timeElapsedLabel);
         return infoBar;
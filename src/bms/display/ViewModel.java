@@ -1,23 +1,37 @@
 package bms.display;
 
 import bms.building.Building;
+import bms.building.BuildingSnapshot;
+import bms.building.ChangeJournal;
+import bms.building.EvacuationEngine;
+import bms.building.HazardAlert;
+import bms.building.HazardAlertEngine;
 import bms.exceptions.*;
 import bms.floor.Floor;
+import bms.hazardevaluation.HazardEvaluator;
 import bms.hazardevaluation.RuleBasedHazardEvaluator;
 import bms.hazardevaluation.WeightingBasedHazardEvaluator;
 import bms.room.Room;
 import bms.room.RoomType;
 import bms.sensors.*;
+import bms.util.AtomicFileWriter;
 import bms.util.TimedItemManager;
 import javafx.application.Platform;
 import javafx.beans.property.*;
 import javafx.scene.control.Alert;
+import javafx.scene.control.ButtonType;
 import javafx.scene.input.KeyCode;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 
 /**
  * View model for the GUI - you will need to implement a few methods here.
@@ -46,11 +60,132 @@ public class ViewModel {
     private BooleanProperty roomSelected = new SimpleBooleanProperty(false);
     private BooleanProperty noSelected = new SimpleBooleanProperty(true);
 
+    private StringProperty saveStatus = new SimpleStringProperty("");
+
+    /**
+     * Most recent hazard alert raised in any building, to be shown in the
+     * view.
+     */
+    private StringProperty alertStatus = new SimpleStringProperty("");
+
+    /**
+     * Lowest hazard level of a room which raises an alert.
+     */
+    private static final int ALERT_RAISE_LEVEL = 50;
+
+    /**
+     * Hazard level below which a room's raised alert is cleared.
+     */
+    private static final int ALERT_CLEAR_LEVEL = 30;
+
+    /**
+     * Lowest hazard level of a room which evacuates its floor, and the
+     * floors above it.
+     */
+    private static final int EVACUATION_LEVEL = 75;
+
+    /**
+     * Background thread on which saves and checkpoints are encoded and
+     * written.
+     */
+    private final ExecutorService saveExecutor =
+            Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "bms-save");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    /**
+     * Whether a background save is running. Only accessed on the JavaFX
+     * application thread.
+     */
+    private boolean saveInFlight = false;
+
+    /**
+     * File to save to once the running save finishes, or null.
+     */
+    private String queuedSave = null;
+
+    /**
+     * Number of saves and checkpoints submitted to the save thread which have
+     * not yet finished. Only accessed on the JavaFX application thread.
+     */
+    private int backgroundWrites = 0;
+
+    /**
+     * Whether the application exits once the background writes finish. Only
+     * accessed on the JavaFX application thread.
+     */
+    private boolean exitRequested = false;
+
+    /**
+     * Number of seconds to wait for background writes before asking whether
+     * to exit without them.
+     */
+    private static final int EXIT_TIMEOUT_SECONDS = 10;
+
+    /**
+     * Number of journalled changes after which a new checkpoint is written.
+     */
+    private static final int CHECKPOINT_INTERVAL = 100;
+
+    /**
+     * Journal to which changes to the buildings are recorded, or null.
+     */
+    private ChangeJournal journal = null;
+
+    /**
+     * A change to be recorded in the journal.
+     */
+    private interface JournalEntry {
+        void writeTo(ChangeJournal journal) throws IOException;
+    }
+
     /**
      * @ass2_given
      */
     public ViewModel(List<Building> buildings) {
         this.buildings = buildings;
+        for (Building building : buildings) {
+            watchBuilding(building);
+        }
+    }
+
+    /**
+     * Starts raising hazard alerts for the rooms in the given building, and
+     * the rooms added to it later, see {@link HazardAlertEngine}, and
+     * evacuating the floors of hazardous rooms, see {@link EvacuationEngine}.
+     *
+     * @param building building loaded or added to the view
+     */
+    private void watchBuilding(Building building) {
+        // kept by its alert engine, which the building's clock holds
+        new EvacuationEngine(building, EVACUATION_LEVEL, true);
+        HazardAlertEngine alerts = new HazardAlertEngine(building,
+                ALERT_RAISE_LEVEL, ALERT_CLEAR_LEVEL);
+        // raised on the thread ticking the building
+        alerts.addListener(alert -> Platform.runLater(() ->
+                showAlert(building, alert)));
+    }
+
+    /**
+     * Shows the given hazard alert in the alert status.
+     */
+    private void showAlert(Building building, HazardAlert alert) {
+        String room = building.getName() + ", room "
+                + alert.getRoom().getRoomNumber();
+        switch (alert.getType()) {
+            case HAZARD_RAISED:
+                alertStatus.setValue(room + ": hazard level "
+                        + alert.getHazardLevel());
+                break;
+            case HAZARD_CLEARED:
+                alertStatus.setValue(room + ": hazard cleared");
+                break;
+            default:
+                alertStatus.setValue(room + ": " + alert.getState());
+        }
+        registerChange();
     }
 
     /**
@@ -60,9 +195,11 @@ public class ViewModel {
      * <caption>Keyboard input table</caption>
      * <tr><th>Key</th><th>Action</th></tr>
      * <tr><td>P, p</td><td>Toggles whether the simulation is paused</td></tr>
-     * <tr><td>Q, q</td><td>Quits the application entirely</td></tr>
-     * <tr><td>S, s</td><td>Saves the simulation data to "saves/quicksave.txt",
-     * see {@link ViewModel#save(String)}
+     * <tr><td>Q, q</td><td>Quits the application entirely, once any
+     * background saves have been written, see
+     * {@link ViewModel#exitWhenSaved()}</td></tr>
+     * <tr><td>S, s</td><td>Saves the simulation data to "saves/quicksave.txt"
+     * in the background, see {@link ViewModel#saveInBackground(String)}
      * </td></tr>
      * </table>
      *
@@ -70,21 +207,17 @@ public class ViewModel {
      * @ass2
      */
     public void accept(KeyCode keyCode) throws IOException {
-        try {
-            switch (keyCode) {
-                case P:
-                    togglePause();
-                    break;
-                case Q:
-                    System.exit(0);
-                    break;
-                case S:
-                    save("saves/quicksave.txt");
-                    break;
-            }
-        } catch (IOException ignored) {
+        switch (keyCode) {
+            case P:
+                togglePause();
+                break;
+            case Q:
+                exitWhenSaved();
+                break;
+            case S:
+                saveInBackground("saves/quicksave.txt");
+                break;
         }
-
     }
 
     /**
@@ -117,6 +250,10 @@ public class ViewModel {
      * <p>
      * If an IOException occurs when writing to file, it should be propagated
      * out of this method.
+     * <p>
+     * The file is replaced atomically, see {@link AtomicFileWriter}, so a
+     * failed save leaves any previous save intact. Once the file has been
+     * written, a checkpoint is written to the journal, if there is one.
      *
      * @param filename path of file to save to
      * @throws IOException if any IOExceptions are encountered while writing to
@@ -124,14 +261,266 @@ public class ViewModel {
      * @ass2
      */
     public void save(String filename) throws IOException {
-        BufferedWriter writer = new BufferedWriter(new FileWriter("saves/quicksave.txt"));
-        String buildinglist = "";
-        for (Building building:this.buildings) {
-            buildinglist += building.encode();
+        AtomicFileWriter.write(Paths.get(filename),
+                writer -> Building.encodeBuildings(this.buildings, writer));
+        if (journal != null) {
+            journal.checkpoint(this.buildings);
         }
-        buildinglist = buildinglist.substring(0, buildinglist.length() - System.lineSeparator().length());
-        writer.write(buildinglist);
-        writer.close();
+    }
+
+    /**
+     * Saves the data used by the building management system to the given file
+     * location on a background thread, in the same format as
+     * {@link #save(String)}.
+     * <p>
+     * Must be called on the JavaFX application thread. A binary snapshot of
+     * the model is taken when the save starts, see {@link BuildingSnapshot},
+     * and the save thread encodes and writes a copy read back from it, so
+     * the saved data is the model as it was then, and the model can be
+     * changed while the save is written. A checkpoint of the same snapshot is
+     * started in the journal, if there is one, and written once the file has
+     * been saved.
+     * <p>
+     * At most one save runs at a time. Saves requested while one is running
+     * are coalesced, so that only the most recently requested file is saved,
+     * from a snapshot taken once the running save finishes.
+     * <p>
+     * Progress is reported through {@link #getSaveStatusProperty()}, and an
+     * error dialog is shown if the save fails.
+     *
+     * @param filename path of file to save to
+     */
+    public void saveInBackground(String filename) {
+        if (saveInFlight) {
+            queuedSave = filename;
+            saveStatus.setValue("Save to \"" + filename + "\" queued");
+            return;
+        }
+        byte[] snapshot;
+        ChangeJournal.PendingCheckpoint checkpoint = null;
+        try {
+            snapshot = takeSnapshot();
+            if (journal != null) {
+                checkpoint = journal.startCheckpoint(snapshot);
+            }
+        } catch (IOException e) {
+            saveStatus.setValue("Could not save to \"" + filename + "\"");
+            createErrorDialog("Error saving buildings to file",
+                    String.valueOf(e.getMessage()));
+            return;
+        }
+        saveInFlight = true;
+        backgroundWrites++;
+        saveStatus.setValue("Saving to \"" + filename + "\"...");
+        ChangeJournal.PendingCheckpoint pending = checkpoint;
+        saveExecutor.execute(() -> {
+            Exception failure = null;
+            try {
+                List<Building> buildings = BuildingSnapshot.read(
+                        new ByteArrayInputStream(snapshot));
+                try {
+                    AtomicFileWriter.write(Paths.get(filename), writer ->
+                            Building.encodeBuildings(buildings, writer));
+                } finally {
+                    // the copy must not be ticked
+                    for (Building building : buildings) {
+                        building.unregisterTimedItems();
+                    }
+                }
+                if (pending != null) {
+                    pending.write();
+                }
+            } catch (IOException | FileFormatException | RuntimeException e) {
+                failure = e;
+            }
+            Exception error = failure;
+            Platform.runLater(() -> saveFinished(filename, error));
+        });
+    }
+
+    /**
+     * Returns a binary snapshot of the buildings as they are now, see
+     * {@link BuildingSnapshot}.
+     */
+    private byte[] takeSnapshot() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BuildingSnapshot.write(this.buildings, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Called once a background save has finished, successfully or not.
+     */
+    private void saveFinished(String filename, Exception error) {
+        saveInFlight = false;
+        backgroundWrites--;
+        if (error != null) {
+            saveStatus.setValue("Could not save to \"" + filename + "\"");
+            createErrorDialog("Error saving buildings to file",
+                    String.valueOf(error.getMessage()));
+        } else {
+            saveStatus.setValue("Saved to \"" + filename + "\"");
+        }
+        if (queuedSave != null) {
+            String next = queuedSave;
+            queuedSave = null;
+            saveInBackground(next);
+        }
+        exitIfWritten();
+    }
+
+    /**
+     * Starts a checkpoint of the buildings in the journal, if there is one,
+     * and writes it on the background save thread.
+     * <p>
+     * Must be called on the JavaFX application thread. Only the binary
+     * snapshot of the model is taken on the calling thread, so the model can
+     * be changed while the checkpoint is written; changes made meanwhile are
+     * journalled after it. An error dialog is shown if the checkpoint fails.
+     */
+    private void checkpointInBackground() {
+        if (journal == null) {
+            return;
+        }
+        ChangeJournal.PendingCheckpoint checkpoint;
+        try {
+            checkpoint = journal.startCheckpoint(takeSnapshot());
+        } catch (IOException e) {
+            createErrorDialog("Error writing change journal",
+                    String.valueOf(e.getMessage()));
+            return;
+        }
+        backgroundWrites++;
+        saveExecutor.execute(() -> {
+            Exception failure = null;
+            try {
+                checkpoint.write();
+            } catch (IOException | RuntimeException e) {
+                failure = e;
+            }
+            Exception error = failure;
+            Platform.runLater(() -> checkpointFinished(error));
+        });
+    }
+
+    /**
+     * Called once a background checkpoint has finished, successfully or not.
+     */
+    private void checkpointFinished(Exception error) {
+        backgroundWrites--;
+        if (error != null) {
+            createErrorDialog("Error writing change journal",
+                    String.valueOf(error.getMessage()));
+        }
+        exitIfWritten();
+    }
+
+    /**
+     * Exits the application once the running and queued background saves and
+     * checkpoints have been written, or immediately if there are none.
+     * <p>
+     * Must be called on the JavaFX application thread, which is not blocked
+     * while waiting, so the saves can finish and report errors as usual. If
+     * they have not finished after {@value #EXIT_TIMEOUT_SECONDS} seconds,
+     * the user is asked whether to exit without them.
+     */
+    private void exitWhenSaved() {
+        if (exitRequested) {
+            return;
+        }
+        exitRequested = true;
+        exitIfWritten();
+        // still writing
+        saveStatus.setValue("Finishing saves before exiting...");
+        CompletableFuture.delayedExecutor(EXIT_TIMEOUT_SECONDS,
+                TimeUnit.SECONDS).execute(() -> Platform.runLater(
+                        this::exitTimedOut));
+    }
+
+    /**
+     * Exits the application if exiting has been requested and no background
+     * save or checkpoint is running or queued.
+     */
+    private void exitIfWritten() {
+        if (exitRequested && backgroundWrites == 0 && queuedSave == null) {
+            System.exit(0);
+        }
+    }
+
+    /**
+     * Called when the background writes have not finished in time after
+     * exiting was requested. Asks the user whether to exit without them, or
+     * to keep waiting.
+     */
+    private void exitTimedOut() {
+        if (backgroundWrites == 0 && queuedSave == null) {
+            return;
+        }
+        Alert alert = new Alert(Alert.AlertType.CONFIRMATION);
+        alert.setTitle("Exit");
+        alert.setHeaderText("Saves are still being written");
+        alert.setContentText("Exit now? Buildings which have not been saved "
+                + "yet will be lost.");
+
+        Optional<ButtonType> result = alert.showAndWait();
+        if (result.isPresent() && result.get() == ButtonType.OK) {
+            System.exit(0);
+        }
+    }
+
+    /**
+     * Sets the journal to which each change made through
+     * {@link #takeInstruction(ButtonOptions, List)} is recorded, so that the
+     * changes can be recovered if the application exits without saving.
+     * <p>
+     * A new checkpoint of the buildings is written to the journal in the
+     * background every {@value #CHECKPOINT_INTERVAL} changes, and whenever
+     * the buildings are saved.
+     *
+     * @param journal journal of changes to the buildings, or null for none
+     */
+    public void setJournal(ChangeJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Records a change which has been made to the buildings in the journal,
+     * if there is one.
+     */
+    private void journal(JournalEntry entry) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            entry.writeTo(journal);
+            if (journal.size() >= CHECKPOINT_INTERVAL) {
+                checkpointInBackground();
+            }
+        } catch (IOException e) {
+            createErrorDialog("Error writing change journal",
+                    String.valueOf(e.getMessage()));
+        }
+    }
+
+    /**
+     * Records that the given sensor was added to the selected room.
+     */
+    private void journalSensor(Sensor sensor) {
+        int building = currentBuildingIndex.get();
+        int floor = this.selectedFloor.getFloorNumber();
+        int room = this.selectedRoom.getRoomNumber();
+        journal(j -> j.addSensor(building, floor, room, sensor));
+    }
+
+    /**
+     * Records the hazard evaluator of the selected room.
+     */
+    private void journalHazardEvaluator() {
+        int building = currentBuildingIndex.get();
+        int floor = this.selectedFloor.getFloorNumber();
+        int room = this.selectedRoom.getRoomNumber();
+        HazardEvaluator evaluator = this.selectedRoom.getHazardEvaluator();
+        journal(j -> j.setHazardEvaluator(building, floor, room, evaluator));
     }
 
     /**
@@ -139,7 +528,9 @@ public class ViewModel {
      * <p>
      * If the simulation is paused, no action should be taken.
      * Otherwise, the {@link TimedItemManager#elapseOneMinute()} method should
-     * be called to  elapse one minute on all registered timed items.
+     * be called to  elapse one minute on all registered timed items. Large
+     * numbers of items are elapsed in parallel on the common fork-join pool,
+     * see {@link TimedItemManager#elapseOneMinute(ForkJoinPool)}.
      * <p>
      * The value of the internal <code>ticks</code> IntegerProperty should be
      * incremented by one, and the value of the <code>timeElapsed</code>
@@ -155,7 +546,8 @@ public class ViewModel {
             ;
         }
         if (pauseButtonText.equals(new SimpleStringProperty("Unpause"))) {
-            TimedItemManager.getInstance().elapseOneMinute();
+            TimedItemManager.getInstance().elapseOneMinute(
+                    ForkJoinPool.commonPool());
             ticks.add(1);
             timeElapsed.setValue(this.ticks.getValue() + " minutes elapsed");
             registerChange();
@@ -195,6 +587,26 @@ public class ViewModel {
         return timeElapsed;
     }
 
+    /**
+     * Returns the status of the most recent background save, to be shown in
+     * the view.
+     *
+     * @return save status property
+     */
+    public StringProperty getSaveStatusProperty() {
+        return saveStatus;
+    }
+
+    /**
+     * Returns the most recent hazard alert raised in any building, to be
+     * shown in the view.
+     *
+     * @return alert status property
+     */
+    public StringProperty getAlertStatusProperty() {
+        return alertStatus;
+    }
+
     /**
      * @ass2_given
      */
@@ -436,6 +848,9 @@ public class ViewModel {
                     e.getMessage());
             return;
         }
+        int building = currentBuildingIndex.get();
+        int floor = this.selectedFloor.getFloorNumber();
+        journal(j -> j.createMaintenanceSchedule(building, floor, roomOrder));
 
         this.registerChange();
     }
@@ -446,7 +861,10 @@ public class ViewModel {
                     "Building name must contain non-whitespace characters");
             return;
         }
-        this.buildings.add(new Building(buildingName));
+        Building building = new Building(buildingName);
+        this.buildings.add(building);
+        watchBuilding(building);
+        journal(j -> j.addBuilding(buildingName));
         this.registerChange();
     }
 
@@ -491,6 +909,9 @@ public class ViewModel {
             createErrorDialog("Could not add floor", e.getMessage());
             return;
         }
+        int building = currentBuildingIndex.get();
+        int floor = floorNum;
+        journal(j -> j.addFloor(building, floor, floorWidth, floorLength));
 
         this.registerChange();
     }
@@ -535,6 +956,9 @@ public class ViewModel {
             createErrorDialog("Could not add room", e.getMessage());
             return;
         }
+        int building = currentBuildingIndex.get();
+        int floor = currentFloor.getFloorNumber();
+        journal(j -> j.addRoom(building, floor, roomNumber, roomType, roomArea));
 
         this.registerChange();
     }
@@ -553,12 +977,17 @@ public class ViewModel {
             createErrorDialog("Could not start fire drill", e.getMessage());
             return;
         }
+        int building = currentBuildingIndex.get();
+        RoomType drillType = roomType;
+        journal(j -> j.fireDrill(building, drillType));
 
         this.registerChange();
     }
 
     private void cancelFireDrill() {
         this.getSelectedBuilding().cancelFireDrill();
+        int building = currentBuildingIndex.get();
+        journal(j -> j.cancelFireDrill(building));
         this.registerChange();
     }
 
@@ -588,6 +1017,9 @@ public class ViewModel {
             createErrorDialog("Could not renovate floor", e.getMessage());
             return;
         }
+        int building = currentBuildingIndex.get();
+        int floor = getSelectedFloor().getFloorNumber();
+        journal(j -> j.renovateFloor(building, floor, newWidth, newLength));
 
         this.registerChange();
     }
@@ -608,13 +1040,14 @@ public class ViewModel {
         }
 
         if (sensorType.equals("TemperatureSensor")) {
+            Sensor sensor = new TemperatureSensor(sensorReadings);
             try {
-                getSelectedRoom().addSensor(
-                        new TemperatureSensor(sensorReadings));
+                getSelectedRoom().addSensor(sensor);
             } catch (DuplicateSensorException e) {
                 createErrorDialog("Could not add sensor", e.getMessage());
                 return;
             }
+            journalSensor(sensor);
             this.registerChange();
             return;
         }
@@ -632,13 +1065,14 @@ public class ViewModel {
         }
 
         if (sensorType.equals("NoiseSensor")) {
+            Sensor sensor = new NoiseSensor(sensorReadings, updateFrequency);
             try {
-                getSelectedRoom().addSensor(new NoiseSensor(sensorReadings,
-                        updateFrequency));
+                getSelectedRoom().addSensor(sensor);
             } catch (DuplicateSensorException e) {
                 createErrorDialog("Could not add sensor", e.getMessage());
                 return;
             }
+            journalSensor(sensor);
             this.registerChange();
             return;
         }
@@ -655,13 +1089,15 @@ public class ViewModel {
                         "Sensor capacity must be an integer");
                 return;
             }
+            Sensor sensor = new OccupancySensor(sensorReadings,
+                    updateFrequency, capacity);
             try {
-                getSelectedRoom().addSensor(new OccupancySensor(sensorReadings,
-                        updateFrequency, capacity));
+                getSelectedRoom().addSensor(sensor);
             } catch (DuplicateSensorException e) {
                 createErrorDialog("Could not add sensor", e.getMessage());
                 return;
             }
+            journalSensor(sensor);
             this.registerChange();
             return;
         }
@@ -684,13 +1120,15 @@ public class ViewModel {
                     "Sensor variation limit must be an integer");
             return;
         }
+        Sensor sensor = new CarbonDioxideSensor(sensorReadings,
+                updateFrequency, idealValue, varLimit);
         try {
-            getSelectedRoom().addSensor(new CarbonDioxideSensor(sensorReadings,
-                    updateFrequency, idealValue, varLimit));
+            getSelectedRoom().addSensor(sensor);
         } catch (DuplicateSensorException e) {
             createErrorDialog("Could not add sensor", e.getMessage());
             return;
         }
+        journalSensor(sensor);
 
         this.registerChange();
     }
@@ -708,6 +1146,7 @@ public class ViewModel {
         if (evaluatorType.equals("Rule Based")) {
             getSelectedRoom().setHazardEvaluator(
                     new RuleBasedHazardEvaluator(hazardSensors));
+            journalHazardEvaluator();
             this.registerChange();
             return;
         }
@@ -735,6 +1174,7 @@ public class ViewModel {
                     e.getMessage());
             return;
         }
+        journalHazardEvaluator();
 
         this.registerChange();
     }
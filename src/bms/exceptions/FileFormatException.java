@@ -4,11 +4,69 @@ package bms.exceptions;
  * Exception thrown when a save file containing a list of building data is invalid.
  */
 public class FileFormatException extends Exception {
+    /**
+     * Line number (starting at 1) of the malformed record, or -1 if unknown.
+     */
+    private final int line;
+
+    /**
+     * Column number (starting at 1) of the malformed record, or -1 if unknown.
+     */
+    private final int column;
+
     /**
      * Constructs a normal FileFormatException with no error message or cause.
      */
     public FileFormatException() {
         super();
+        this.line = -1;
+        this.column = -1;
     }
 
+    /**
+     * Constructs a FileFormatException that contains a helpful message
+     * detailing why the exception occurred.
+     *
+     * @param message detail message
+     */
+    public FileFormatException(String message) {
+        super(message);
+        this.line = -1;
+        this.column = -1;
+    }
+
+    /**
+     * Constructs a FileFormatException for a malformed record at the given
+     * position in the save file.
+     * <p>
+     * The detail message is prefixed with the line and column, eg.
+     * "line 12, column 5: expected an integer".
+     *
+     * @param message detail message
+     * @param line line number of the malformed record, starting at 1
+     * @param column column number of the malformed record, starting at 1
+     */
+    public FileFormatException(String message, int line, int column) {
+        super("line " + line + ", column " + column + ": " + message);
+        this.line = line;
+        this.column = column;
+    }
+
+    /**
+     * Returns the line number of the malformed record, or -1 if unknown.
+     *
+     * @return line number, starting at 1
+     */
+    public int getLine() {
+        return line;
+    }
+
+    /**
+     * Returns the column number of the malformed record, or -1 if unknown.
+     *
+     * @return column number, starting at 1
+     */
+    public int getColumn() {
+        return column;
+    }
 }
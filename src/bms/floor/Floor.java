@@ -4,13 +4,20 @@ import bms.building.Building;
 import bms.exceptions.DuplicateRoomException;
 import bms.exceptions.FloorTooSmallException;
 import bms.exceptions.InsufficientSpaceException;
+import bms.room.FireDrillState;
 import bms.room.Room;
 import bms.room.RoomType;
+import bms.sensors.ReadingStatistics;
 import bms.util.Encodable;
 import bms.util.FireDrill;
+import bms.util.SimulationClock;
+import bms.util.TimedItem;
+import bms.util.TimedItemManager;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Represents a floor of a building.
@@ -59,6 +66,28 @@ public class Floor implements FireDrill, Encodable {
      */
     private MaintenanceSchedule maintenanceSchedule = null;
 
+    /**
+     * Clock which the floor's maintenance schedule and sensors are registered
+     * with; the global clock until the floor is added to a building.
+     */
+    private SimulationClock clock = TimedItemManager.getInstance().getClock();
+
+    /**
+     * Fire drill state of the building the floor is in, or null until the
+     * floor is added to a building.
+     */
+    private FireDrillState fireDrillState = null;
+
+    /**
+     * Whether the floor is being evacuated automatically.
+     */
+    private boolean evacuating = false;
+
+    /**
+     * Observers notified when a room is added to the floor.
+     */
+    private final List<FloorObserver> observers = new CopyOnWriteArrayList<>();
+
     /**
      * Creates a new floor with the given floor number.
      *
@@ -119,6 +148,32 @@ public class Floor implements FireDrill, Encodable {
         return new ArrayList<>(this.rooms);
     }
 
+    /**
+     * Returns the minimum, maximum, mean and number of the readings of the
+     * sensors of the given type in every room on this floor whose history is
+     * recorded, over the given number of most recent minutes.
+     *
+     * @param sensorType the type of sensor which matches the class name
+     *                   returned by the getSimpleName() method,
+     *                   e.g. "CarbonDioxideSensor" (no quotes)
+     * @param windowMinutes number of most recent minutes
+     * @return combined statistics of the rooms' readings
+     * @throws IllegalArgumentException if the window is less than one minute
+     * @see Room#getReadingStatistics(String, int)
+     */
+    public ReadingStatistics getReadingStatistics(String sensorType,
+                                                  int windowMinutes) {
+        ReadingStatistics statistics = ReadingStatistics.EMPTY;
+        for (Room room : this.rooms) {
+            ReadingStatistics roomStatistics =
+                    room.getReadingStatistics(sensorType, windowMinutes);
+            if (roomStatistics != null) {
+                statistics = statistics.combine(roomStatistics);
+            }
+        }
+        return statistics;
+    }
+
     /**
      * Returns width of the floor.
      *
@@ -261,6 +316,37 @@ public class Floor implements FireDrill, Encodable {
 
         // No problems, so add room to the list of rooms
         rooms.add(newRoom);
+        newRoom.setClock(this.clock);
+        if (this.fireDrillState != null) {
+            newRoom.setFireDrillState(this.fireDrillState);
+        }
+        if (this.evacuating) {
+            newRoom.setEvacuating(true);
+        }
+        for (FloorObserver observer : this.observers) {
+            observer.roomAdded(this, newRoom);
+        }
+    }
+
+    /**
+     * Adds an observer to be notified when a room is added to this floor.
+     * <p>
+     * Observers are called on the thread adding the room, after it has been
+     * added.
+     *
+     * @param observer observer to add
+     */
+    public void addObserver(FloorObserver observer) {
+        this.observers.add(observer);
+    }
+
+    /**
+     * Removes an observer added with {@link #addObserver(FloorObserver)}.
+     *
+     * @param observer observer to remove
+     */
+    public void removeObserver(FloorObserver observer) {
+        this.observers.remove(observer);
     }
 
     /**
@@ -297,6 +383,33 @@ public class Floor implements FireDrill, Encodable {
         }
     }
 
+    /**
+     * Returns whether this floor is currently being evacuated automatically,
+     * eg. by a {@link bms.building.EvacuationEngine}.
+     *
+     * @return whether the floor is being evacuated
+     */
+    public boolean isEvacuating() {
+        return this.evacuating;
+    }
+
+    /**
+     * Starts or ends the automatic evacuation of every room on this floor,
+     * and of any room added to it while it is being evacuated.
+     * <p>
+     * Evacuation is recorded separately from fire drills, see
+     * {@link Room#isEvacuating()}, so it neither starts nor cancels a fire
+     * drill, and {@link #cancelFireDrill()} does not end it.
+     *
+     * @param evacuating whether the floor is being evacuated
+     */
+    public void setEvacuating(boolean evacuating) {
+        this.evacuating = evacuating;
+        for (Room r : this.rooms) {
+            r.setEvacuating(evacuating);
+        }
+    }
+
     /**
      * Adds a maintenance schedule to this floor with the given room order.
      * Maintenance will be undertaken on rooms on the floor in the given order,
@@ -368,13 +481,89 @@ public class Floor implements FireDrill, Encodable {
             }
         }
 
+        removeMaintenanceSchedule();
+        this.maintenanceSchedule = new MaintenanceSchedule(roomOrder);
+        SimulationClock.moveTimedItems(List.of(this.maintenanceSchedule),
+                TimedItemManager.getInstance().getClock(), this.clock);
+    }
+
+    /**
+     * Removes the maintenance schedule from this floor, if there is one.
+     * <p>
+     * The room currently being maintained is taken out of maintenance, and
+     * the schedule stops being ticked, see
+     * {@link SimulationClock#unregisterTimedItem(TimedItem)}.
+     */
+    public void removeMaintenanceSchedule() {
         if (this.maintenanceSchedule == null) {
-            this.maintenanceSchedule = new MaintenanceSchedule(roomOrder);
+            return;
+        }
+        this.maintenanceSchedule.getCurrentRoom().setMaintenance(false);
+        this.clock.unregisterTimedItem(this.maintenanceSchedule);
+        this.maintenanceSchedule = null;
+    }
+
+    /**
+     * Returns the clock which this floor's maintenance schedule and sensors
+     * are registered with.
+     *
+     * @return clock ticking this floor's timed items
+     */
+    public SimulationClock getClock() {
+        return this.clock;
+    }
+
+    /**
+     * Moves this floor's maintenance schedule and the sensors in its rooms
+     * onto the given clock. Rooms, sensors and schedules added to the floor
+     * later are registered with the same clock.
+     * <p>
+     * Called by the building the floor is added to.
+     *
+     * @param clock clock to register the floor's timed items with
+     */
+    public void setClock(SimulationClock clock) {
+        if (this.maintenanceSchedule != null) {
+            SimulationClock.moveTimedItems(List.of(this.maintenanceSchedule),
+                    this.clock, clock);
+        }
+        for (Room room : this.rooms) {
+            room.setClock(clock);
+        }
+        this.clock = clock;
+    }
+
+    /**
+     * Gives the rooms on this floor an index in the given fire drill state,
+     * see {@link Room#setFireDrillState(FireDrillState)}. Rooms added to the
+     * floor later are given an index too.
+     * <p>
+     * Called by the building the floor is added to.
+     *
+     * @param fireDrillState fire drill state of the floor's building
+     */
+    public void setFireDrillState(FireDrillState fireDrillState) {
+        for (Room room : this.rooms) {
+            room.setFireDrillState(fireDrillState);
         }
+        this.fireDrillState = fireDrillState;
+    }
+
+    /**
+     * Returns a new list of the maintenance schedule and sensors on this
+     * floor which are ticked by the timed item manager.
+     *
+     * @return timed items owned by this floor
+     */
+    public List<TimedItem> getTimedItems() {
+        List<TimedItem> timedItems = new ArrayList<>();
         if (this.maintenanceSchedule != null) {
-            this.maintenanceSchedule.getCurrentRoom().setMaintenance(false);
-            this.maintenanceSchedule = new MaintenanceSchedule(roomOrder);
+            timedItems.add(this.maintenanceSchedule);
+        }
+        for (Room room : this.rooms) {
+            timedItems.addAll(room.getTimedItems());
         }
+        return timedItems;
     }
 
     /**
@@ -547,4 +736,43 @@ public class Floor implements FireDrill, Encodable {
         }
         return floorEncode.substring(0, floorEncode.length() - System.lineSeparator().length());
     }
+
+    /**
+     * Appends the machine-readable string representation of this floor and
+     * all of its rooms and sensors, exactly as returned by {@link #encode()}.
+     *
+     * @param out destination to append the encoded representation to
+     * @throws IOException if appending to the destination fails
+     */
+    @Override
+    public void encodeTo(Appendable out) throws IOException {
+        String lineSeparator = System.lineSeparator();
+        out.append(lineSeparator).append(Integer.toString(this.floorNumber))
+                .append(':');
+        appendMeasurement(out, this.width);
+        out.append(':');
+        appendMeasurement(out, this.length);
+        out.append(':').append(Integer.toString(this.rooms.size()));
+        if (this.maintenanceSchedule != null) {
+            out.append(':');
+            this.maintenanceSchedule.encodeTo(out);
+        }
+        for (Room room : this.rooms) {
+            out.append(lineSeparator);
+            room.encodeTo(out);
+        }
+    }
+
+    /**
+     * Appends the given measurement as encoded by {@link #encode()}: without
+     * a decimal point if it is a whole number.
+     */
+    private static void appendMeasurement(Appendable out, double measurement)
+            throws IOException {
+        if (Math.floor(measurement) == measurement) {
+            out.append(Integer.toString((int) measurement));
+        } else {
+            out.append(Double.toString(measurement));
+        }
+    }
 }
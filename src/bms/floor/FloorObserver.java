@@ -0,0 +1,17 @@
+package bms.floor;
+
+import bms.room.Room;
+
+/**
+ * Observer of rooms being added to a floor, see
+ * {@link Floor#addObserver(FloorObserver)}.
+ */
+public interface FloorObserver {
+    /**
+     * Called after the given room has been added to the given floor.
+     *
+     * @param floor floor the room was added to
+     * @param room room which was added
+     */
+    void roomAdded(Floor floor, Room room);
+}
@@ -3,9 +3,13 @@ package bms.floor;
 import bms.room.Room;
 import bms.room.RoomType;
 import bms.util.Encodable;
+import bms.util.ScheduledTimedItem;
+import bms.util.SimulationClock;
 import bms.util.TimedItem;
 import bms.util.TimedItemManager;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -13,7 +17,7 @@ import java.util.List;
  * The maintenance time for each room depends on the type of the room and its area.
  * Maintenance cannot progress whilst an evacuation is in progress.
  */
-public class MaintenanceSchedule implements TimedItem, Encodable {
+public class MaintenanceSchedule implements ScheduledTimedItem, Encodable {
 
     /**
      * room list for create maintenance schedule
@@ -35,9 +39,27 @@ public class MaintenanceSchedule implements TimedItem, Encodable {
      */
     private int currentRoomIndex = 0;
 
+    /**
+     * clock scheduling this maintenance schedule, or null if elapsed directly
+     */
+    private SimulationClock scheduler;
+
+    /**
+     * minutes elapsed by the scheduler when this schedule was last brought up to date with it
+     */
+    private long syncedAt;
+
+    /**
+     * Handle with which the scheduler finds this item in its schedule; only
+     * accessed while holding the scheduler's lock.
+     */
+    private Object schedulerHandle;
+
     /**
      * Creates a new maintenance schedule for a floor's list of rooms.
      * In this constructor, the new maintenance schedule should be registered as a timed item with the timed item manager.
+     * It is registered weakly, so that it stops being ticked once it is discarded,
+     * see TimedItemManager.registerTimedItemWeakly(TimedItem).
      *
      * The first room in the given order should be set to "in maintenance", see Room.setMaintenance(boolean).
      * Requires:
@@ -47,9 +69,9 @@ public class MaintenanceSchedule implements TimedItem, Encodable {
     public MaintenanceSchedule(List<Room> roomOrder) {
         this.roomOrder = roomOrder;
         this.timeElapsed = 0;
-        TimedItemManager.getInstance().registerTimedItem(this);
         this.currentRoom = roomOrder.get(0);
         this.currentRoom.setMaintenance(true);
+        TimedItemManager.getInstance().registerTimedItemWeakly(this);
     }
 
     /**
@@ -83,11 +105,21 @@ public class MaintenanceSchedule implements TimedItem, Encodable {
         return finalTime;
     }
 
+    /**
+     * Returns a new list containing the rooms in this schedule, in the order
+     * in which they are maintained.
+     * @return rooms in maintenance order
+     */
+    public List<Room> getRoomOrder() {
+        return new ArrayList<>(this.roomOrder);
+    }
+
     /**
      * Returns the room which is currently in the process of being maintained.
      * @return room currently in maintenance
      */
     public Room getCurrentRoom(){
+        catchUp();
         return this.currentRoom;
     }
 
@@ -96,6 +128,7 @@ public class MaintenanceSchedule implements TimedItem, Encodable {
      * @return time elapsed maintaining current room
      */
     public int getTimeElapsedCurrentRoom(){
+        catchUp();
         return this.timeElapsed;
     }
 
@@ -130,11 +163,132 @@ public class MaintenanceSchedule implements TimedItem, Encodable {
         }
     }
 
+    /**
+     * Progresses the maintenance schedule by the given number of minutes,
+     * leaving it in the same state as calling {@link #elapseOneMinute()} that
+     * many times.
+     * <p>
+     * Each room takes a fixed number of minutes to maintain, so whole passes
+     * through the room order are skipped at once, and the schedule then moves
+     * through at most one pass room by room.
+     *
+     * @param minutes number of minutes to elapse
+     * @throws IllegalArgumentException if minutes is negative
+     */
+    @Override
+    public void elapseMinutes(long minutes) {
+        if (minutes < 0) {
+            throw new IllegalArgumentException(
+                    "Number of minutes must not be negative");
+        }
+        long remaining = minutes;
+
+        // finish the current room first
+        long toFinish = Math.max(1,
+                getMaintenanceTime(this.currentRoom) - (long) this.timeElapsed);
+        if (remaining < toFinish) {
+            this.timeElapsed += (int) remaining;
+            return;
+        }
+        remaining -= toFinish;
+        moveToNextRoom();
+
+        // skip whole passes through the room order, each of which leaves
+        // every room out of maintenance except the current one; not needed
+        // when stopping in the next room, eg. when woken by a scheduler
+        long roomDuration = Math.max(1, getMaintenanceTime(this.currentRoom));
+        if (remaining >= roomDuration) {
+            long passDuration = 0;
+            for (Room room : this.roomOrder) {
+                passDuration += Math.max(1, getMaintenanceTime(room));
+            }
+            if (remaining >= passDuration) {
+                remaining %= passDuration;
+                for (Room room : this.roomOrder) {
+                    room.setMaintenance(false);
+                }
+                this.currentRoom.setMaintenance(true);
+            }
+        }
+
+        while (remaining >= roomDuration) {
+            remaining -= roomDuration;
+            moveToNextRoom();
+            roomDuration = Math.max(1, getMaintenanceTime(this.currentRoom));
+        }
+        this.timeElapsed = (int) remaining;
+    }
+
+    /**
+     * Returns the number of minutes until maintenance of the current room is
+     * completed, and the schedule moves on to the next room.
+     * @return minutes until the current room changes
+     */
+    @Override
+    public long getMinutesUntilNextChange() {
+        catchUp();
+        return Math.max(1, getMaintenanceTime(this.currentRoom) - (long) this.timeElapsed);
+    }
+
+    @Override
+    public synchronized SimulationClock getScheduler() {
+        return this.scheduler;
+    }
+
+    @Override
+    public synchronized void setScheduler(SimulationClock scheduler) {
+        catchUp();
+        this.scheduler = scheduler;
+        this.syncedAt = scheduler == null ? 0 : scheduler.getMinutesElapsed();
+    }
+
+    @Override
+    public Object getSchedulerHandle() {
+        return this.schedulerHandle;
+    }
+
+    @Override
+    public void setSchedulerHandle(Object handle) {
+        this.schedulerHandle = handle;
+    }
+
+    @Override
+    public void wake() {
+        catchUp();
+    }
+
+    /**
+     * Elapses the minutes the scheduler has elapsed since this schedule was last brought up to date with it.
+     */
+    private synchronized void catchUp() {
+        if (this.scheduler == null) {
+            return;
+        }
+        long now = this.scheduler.getMinutesElapsed();
+        if (now != this.syncedAt) {
+            long minutes = now - this.syncedAt;
+            this.syncedAt = now;
+            elapseMinutes(minutes);
+        }
+    }
+
     /**
      * Stops the in-progress maintenance of the current room and progresses to the next room.
      * The same steps should be undertaken as described in the dot point list in elapseOneMinute().
      */
     public void skipCurrentMaintenance() {
+        catchUp();
+        moveToNextRoom();
+        SimulationClock clock = getScheduler();
+        if (clock != null) {
+            clock.reschedule(this);
+        }
+    }
+
+    /**
+     * Moves maintenance on to the next room in the room order.
+     */
+    private void moveToNextRoom() {
         this.timeElapsed = 0;
         this.currentRoom.setMaintenance(false);
         this.currentRoomIndex++;
@@ -160,6 +314,7 @@ public class MaintenanceSchedule implements TimedItem, Encodable {
      */
     @Override
     public String toString() {
+        catchUp();
         return "MaintenanceSchedule: " +
                 "currentRoom=#" + this.currentRoom.getRoomNumber() +
                 ", currentElapsed=" + this.timeElapsed;
@@ -187,4 +342,21 @@ public class MaintenanceSchedule implements TimedItem, Encodable {
         }
         return encodeRoomOrder.substring(0, encodeRoomOrder.length() - 1);
     }
+
+    /**
+     * Appends the comma-separated list of room numbers in this schedule,
+     * exactly as returned by {@link #encode()}.
+     *
+     * @param out destination to append the encoded representation to
+     * @throws IOException if appending to the destination fails
+     */
+    @Override
+    public void encodeTo(Appendable out) throws IOException {
+        for (int i = 0; i < this.roomOrder.size(); i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            out.append(Integer.toString(this.roomOrder.get(i).getRoomNumber()));
+        }
+    }
 }
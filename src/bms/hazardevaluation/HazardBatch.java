@@ -0,0 +1,211 @@
+package bms.hazardevaluation;
+
+import bms.sensors.HazardSensor;
+import bms.sensors.OccupancySensor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Evaluates the hazard levels of many hazard evaluators together, eg. of
+ * every room in a building.
+ * <p>
+ * The evaluators' sensors are flattened into one array when the batch is
+ * created, with each rule-based evaluator's occupancy sensors and each
+ * weighting-based evaluator's weights recorded in arrays alongside. Each
+ * evaluation then reads every sensor's hazard level once, and computes every
+ * evaluator's level from the array of sensor levels, without the per-call
+ * type checks of the evaluators themselves.
+ * <p>
+ * The levels are exactly those the evaluators would return, as long as
+ * their sensors and weightings are not changed after the batch is created.
+ * Evaluators of other types are asked for their level as usual.
+ */
+public class HazardBatch {
+
+    /**
+     * Kind of a {@link RuleBasedHazardEvaluator}.
+     */
+    private static final byte RULE_BASED = 0;
+
+    /**
+     * Kind of a {@link WeightingBasedHazardEvaluator}.
+     */
+    private static final byte WEIGHTING_BASED = 1;
+
+    /**
+     * Kind of any other evaluator, which evaluates its own level.
+     */
+    private static final byte OTHER = 2;
+
+    /**
+     * Every evaluator's sensors, in order, as they appear in the evaluator.
+     */
+    private final HazardSensor[] sensors;
+
+    /**
+     * Index into the sensors of each evaluator's first sensor, followed by
+     * the number of sensors.
+     */
+    private final int[] start;
+
+    /**
+     * Kind of each evaluator.
+     */
+    private final byte[] kinds;
+
+    /**
+     * Each evaluator, for those of other kinds.
+     */
+    private final HazardEvaluator[] evaluators;
+
+    /**
+     * Weight of each sensor of a weighting-based evaluator, see
+     * {@link WeightingBasedHazardEvaluator#getWeights()}.
+     */
+    private final double[] weights;
+
+    /**
+     * Whether each sensor of a rule-based evaluator is an occupancy sensor.
+     */
+    private final boolean[] occupancy;
+
+    /**
+     * Creates a new batch of the given evaluators.
+     *
+     * @param evaluators hazard evaluators to evaluate together
+     */
+    public HazardBatch(List<? extends HazardEvaluator> evaluators) {
+        int size = evaluators.size();
+        this.start = new int[size + 1];
+        this.kinds = new byte[size];
+        this.evaluators = evaluators.toArray(new HazardEvaluator[0]);
+        List<HazardSensor> allSensors = new ArrayList<>();
+        List<Double> allWeights = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            HazardEvaluator evaluator = this.evaluators[i];
+            this.start[i] = allSensors.size();
+            if (evaluator instanceof RuleBasedHazardEvaluator) {
+                this.kinds[i] = RULE_BASED;
+                for (HazardSensor sensor
+                        : ((RuleBasedHazardEvaluator) evaluator).getSensors()) {
+                    allSensors.add(sensor);
+                    allWeights.add(0.0);
+                }
+            } else if (evaluator instanceof WeightingBasedHazardEvaluator) {
+                this.kinds[i] = WEIGHTING_BASED;
+                WeightingBasedHazardEvaluator weighted =
+                        (WeightingBasedHazardEvaluator) evaluator;
+                Collections.addAll(allSensors, weighted.getSensors());
+                for (double weight : weighted.getWeights()) {
+                    allWeights.add(weight);
+                }
+            } else {
+                this.kinds[i] = OTHER;
+            }
+        }
+        this.start[size] = allSensors.size();
+        this.sensors = allSensors.toArray(new HazardSensor[0]);
+        this.weights = new double[this.sensors.length];
+        this.occupancy = new boolean[this.sensors.length];
+        for (int i = 0; i < this.sensors.length; i++) {
+            this.weights[i] = allWeights.get(i);
+            this.occupancy[i] = this.sensors[i] instanceof OccupancySensor;
+        }
+    }
+
+    /**
+     * Returns the number of evaluators in this batch.
+     *
+     * @return number of evaluators
+     */
+    public int size() {
+        return this.kinds.length;
+    }
+
+    /**
+     * Returns the number of sensors read by the evaluators in this batch.
+     *
+     * @return number of sensors
+     */
+    public int getNumberOfSensors() {
+        return this.sensors.length;
+    }
+
+    /**
+     * Evaluates the current hazard level of every evaluator in this batch.
+     *
+     * @return new array of each evaluator's hazard level, in the order the
+     * evaluators were given
+     * @see HazardEvaluator#evaluateHazardLevel()
+     */
+    public int[] evaluate() {
+        int[] sensorLevels = new int[this.sensors.length];
+        for (int i = 0; i < sensorLevels.length; i++) {
+            sensorLevels[i] = this.sensors[i].getHazardLevel();
+        }
+        int[] levels = new int[this.kinds.length];
+        for (int i = 0; i < levels.length; i++) {
+            switch (this.kinds[i]) {
+                case RULE_BASED:
+                    levels[i] = evaluateRuleBased(sensorLevels,
+                            this.start[i], this.start[i + 1]);
+                    break;
+                case WEIGHTING_BASED:
+                    levels[i] = evaluateWeightingBased(sensorLevels,
+                            this.start[i], this.start[i + 1]);
+                    break;
+                default:
+                    levels[i] = this.evaluators[i].evaluateHazardLevel();
+            }
+        }
+        return levels;
+    }
+
+    /**
+     * Applies the rules of {@link RuleBasedHazardEvaluator#evaluateHazardLevel()}
+     * to the sensor levels between the given indices.
+     */
+    private int evaluateRuleBased(int[] sensorLevels, int from, int to) {
+        if (to == from) {
+            return 0;
+        }
+        if (to - from == 1) {
+            return sensorLevels[from];
+        }
+        int count = 0;
+        double totalHazard = 0.0;
+        int occupancyLevel = -1;
+        for (int i = from; i < to; i++) {
+            if (this.occupancy[i]) {
+                occupancyLevel = sensorLevels[i];
+            } else {
+                if (sensorLevels[i] == 100) {
+                    return 100;
+                }
+                count++;
+                totalHazard += sensorLevels[i];
+            }
+        }
+        if (occupancyLevel >= 0) {
+            // same arithmetic as the evaluator, so the result is identical
+            return (int) Math.round((totalHazard / count)
+                    * (float) (occupancyLevel / 100));
+        }
+        return (int) Math.round(totalHazard / count);
+    }
+
+    /**
+     * Computes the weighted average of the sensor levels between the given
+     * indices, as {@link WeightingBasedHazardEvaluator#evaluateHazardLevel()}
+     * does.
+     */
+    private int evaluateWeightingBased(int[] sensorLevels, int from, int to) {
+        double weightingResult = 0.0;
+        for (int i = from; i < to; i++) {
+            weightingResult += sensorLevels[i] * this.weights[i];
+        }
+        return (int) Math.round(weightingResult);
+    }
+}
@@ -0,0 +1,202 @@
+package bms.hazardevaluation;
+
+import bms.sensors.Sensor;
+import bms.sensors.TimedSensor;
+import bms.util.SimulationClock;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of the hazard level evaluated by a hazard evaluator, which is reused
+ * until one of the sensors it reads next changes its reading.
+ * <p>
+ * When the level is evaluated, the cache asks each sensor how many minutes
+ * remain until its reading changes, see
+ * {@link TimedSensor#getMinutesUntilNextReading()}, and keeps the level
+ * until the clock scheduling the sensors has elapsed the fewest of those
+ * minutes. Between changes, eg. for the minutes in between updates of
+ * sensors with an update frequency of five minutes, the level is returned
+ * without evaluating it again.
+ * <p>
+ * Levels are only cached while every sensor is a timed sensor scheduled by
+ * the same clock. The cache must be discarded if the evaluator, its sensors
+ * or their clock change. A live feed being attached to or removed from a
+ * sensor, see {@link TimedSensor#getFeedVersion()}, invalidates the cached
+ * level.
+ */
+public class HazardLevelCache {
+
+    /**
+     * Number of levels returned from any cache without being evaluated.
+     */
+    private static final AtomicLong hits = new AtomicLong();
+
+    /**
+     * Number of levels evaluated by any cache.
+     */
+    private static final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Evaluator whose hazard level is cached.
+     */
+    private final HazardEvaluator evaluator;
+
+    /**
+     * Sensors read by the evaluator.
+     */
+    private final List<Sensor> sensors;
+
+    /**
+     * Clock scheduling every sensor when the level was last evaluated, or
+     * null if the level is not cached.
+     */
+    private SimulationClock clock;
+
+    /**
+     * Minutes elapsed by the clock at which the cached level expires.
+     */
+    private long validUntil;
+
+    /**
+     * Sum of the sensors' feed versions when the level was last evaluated.
+     * Versions only increase, so the sum changes whenever any of them does.
+     */
+    private long feedVersions;
+
+    /**
+     * Hazard level last evaluated.
+     */
+    private int hazardLevel;
+
+    /**
+     * Creates a new, empty cache of the hazard level evaluated by the given
+     * evaluator from the given sensors.
+     *
+     * @param evaluator evaluator whose hazard level to cache
+     * @param sensors every sensor read by the evaluator
+     */
+    public HazardLevelCache(HazardEvaluator evaluator,
+                            List<? extends Sensor> sensors) {
+        this.evaluator = evaluator;
+        this.sensors = new ArrayList<>(sensors);
+    }
+
+    /**
+     * Returns the evaluator whose hazard level is cached.
+     *
+     * @return cached evaluator
+     */
+    public HazardEvaluator getEvaluator() {
+        return evaluator;
+    }
+
+    /**
+     * Returns the evaluator's current hazard level, evaluating it only if
+     * a sensor's reading has changed since it was last evaluated.
+     *
+     * @return the hazard level, between 0 and 100 (inclusive)
+     * @see HazardEvaluator#evaluateHazardLevel()
+     */
+    public synchronized int getHazardLevel() {
+        if (this.clock != null
+                && this.clock.getMinutesElapsed() < this.validUntil
+                && getFeedVersions() == this.feedVersions) {
+            hits.incrementAndGet();
+            return this.hazardLevel;
+        }
+        misses.incrementAndGet();
+        SimulationClock scheduler = getCommonClock();
+        if (scheduler == null) {
+            this.clock = null;
+            this.hazardLevel = this.evaluator.evaluateHazardLevel();
+            return this.hazardLevel;
+        }
+        // read before evaluating, so a concurrent tick or feed change only
+        // shortens the time the level is kept
+        long now = scheduler.getMinutesElapsed();
+        this.feedVersions = getFeedVersions();
+        this.hazardLevel = this.evaluator.evaluateHazardLevel();
+        long until = Integer.MAX_VALUE;
+        for (Sensor sensor : this.sensors) {
+            until = Math.min(until,
+                    ((TimedSensor) sensor).getMinutesUntilNextReading());
+        }
+        this.clock = scheduler;
+        this.validUntil = now + until;
+        return this.hazardLevel;
+    }
+
+    /**
+     * Returns the sum of the feed versions of the sensors, which are all
+     * timed sensors while the level is cached.
+     */
+    private long getFeedVersions() {
+        long sum = 0;
+        for (Sensor sensor : this.sensors) {
+            sum += ((TimedSensor) sensor).getFeedVersion();
+        }
+        return sum;
+    }
+
+    /**
+     * Returns the clock scheduling every sensor, or null if there are no
+     * sensors, or any is not a timed sensor scheduled by that clock.
+     */
+    private SimulationClock getCommonClock() {
+        SimulationClock scheduler = null;
+        for (Sensor sensor : this.sensors) {
+            if (!(sensor instanceof TimedSensor)) {
+                return null;
+            }
+            SimulationClock sensorClock = ((TimedSensor) sensor).getScheduler();
+            if (sensorClock == null
+                    || (scheduler != null && sensorClock != scheduler)) {
+                return null;
+            }
+            scheduler = sensorClock;
+        }
+        return scheduler;
+    }
+
+    /**
+     * Returns the number of hazard levels returned by any cache without
+     * being evaluated, since the statistics were last reset.
+     *
+     * @return number of cache hits
+     */
+    public static long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Returns the number of hazard levels evaluated by any cache, since the
+     * statistics were last reset.
+     *
+     * @return number of cache misses
+     */
+    public static long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Returns the fraction of hazard levels returned by any cache without
+     * being evaluated, or zero if none have been returned.
+     *
+     * @return hit rate, between 0 and 1 (inclusive)
+     */
+    public static double getHitRate() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /**
+     * Resets the hit and miss counts to zero.
+     */
+    public static void resetStatistics() {
+        hits.set(0);
+        misses.set(0);
+    }
+}
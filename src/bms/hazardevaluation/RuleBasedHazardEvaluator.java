@@ -20,6 +20,16 @@ public class RuleBasedHazardEvaluator implements HazardEvaluator{
         this.hazardSensors = sensors;
     }
 
+    /**
+     * Returns the sensors used in the hazard level calculation, eg. to
+     * evaluate them in bulk, see {@link HazardBatch}.
+     *
+     * @return sensors passed to the constructor
+     */
+    List<HazardSensor> getSensors() {
+        return this.hazardSensors;
+    }
+
     /**
      * Returns a calculated hazard level based on applying a set of rules to the
      * list of sensors passed to the constructor.
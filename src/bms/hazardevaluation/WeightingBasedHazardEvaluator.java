@@ -11,14 +11,27 @@ import java.util.*;
 public class WeightingBasedHazardEvaluator implements HazardEvaluator{
 
     /**
-     * hashmap used to construct weighting based hazrd evaluator
-     * key is hazard sensor
-     * value is integer which is the sensor's weighting
+     * Sensors monitored by the evaluator, in canonical order, ie. sorted by
+     * class name.
      */
-    private Map<HazardSensor, Integer> weightingBasedHazardEvaluator;
+    private final HazardSensor[] sensors;
+
+    /**
+     * Weighting of each sensor, divided by 100.
+     */
+    private final double[] weights;
+
+    /**
+     * Weighting of each sensor, as returned by {@link #getWeightings()}.
+     */
+    private final List<Integer> weightings;
+
     /**
      * Creates a new weighting-based hazard evaluator with the given sensors and weightings.
      * Each weighting must be between 0 and 100 inclusive, and the total sum of all weightings must equal 100.
+     * <p>
+     * The sensors and weightings are copied into arrays in canonical order,
+     * so later changes to the given map do not affect the evaluator.
      *
      * Parameters:
      * sensors - mapping of sensors to their respective weighting
@@ -39,7 +52,19 @@ public class WeightingBasedHazardEvaluator implements HazardEvaluator{
         if (sum != 100) {
             throw new IllegalArgumentException();
         }
-        this.weightingBasedHazardEvaluator = sensors;
+        List<Map.Entry<HazardSensor, Integer>> entries =
+                new ArrayList<>(sensors.entrySet());
+        entries.sort(Comparator.comparing(
+                entry -> entry.getKey().getClass().getSimpleName()));
+        this.sensors = new HazardSensor[entries.size()];
+        this.weights = new double[entries.size()];
+        List<Integer> weightingList = new ArrayList<>(entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            this.sensors[i] = entries.get(i).getKey();
+            this.weights[i] = entries.get(i).getValue() / 100.0;
+            weightingList.add(entries.get(i).getValue());
+        }
+        this.weightings = Collections.unmodifiableList(weightingList);
     }
 
     /**
@@ -56,45 +81,45 @@ public class WeightingBasedHazardEvaluator implements HazardEvaluator{
     @Override
     public int evaluateHazardLevel() {
         double weightingResult = 0.0;
-        Iterator<Map.Entry<HazardSensor, Integer>> iterator
-                = this.weightingBasedHazardEvaluator.entrySet().iterator();
-        while (iterator.hasNext()) {
-            Map.Entry<HazardSensor, Integer> entry = iterator.next();
-            weightingResult += entry.getKey().getHazardLevel() * ((double) entry.getValue() / 100.0);
+        for (int i = 0; i < this.sensors.length; i++) {
+            weightingResult += this.sensors[i].getHazardLevel() * this.weights[i];
         }
         return (int) Math.round(weightingResult);
     }
 
+    /**
+     * Returns the sensors monitored by this evaluator in canonical order,
+     * eg. to evaluate them in bulk, see {@link HazardBatch}. The array must
+     * not be modified.
+     *
+     * @return sensors sorted by class name
+     */
+    HazardSensor[] getSensors() {
+        return this.sensors;
+    }
+
+    /**
+     * Returns the weighting of each sensor returned by {@link #getSensors()},
+     * divided by 100. The array must not be modified.
+     *
+     * @return weight of each sensor
+     */
+    double[] getWeights() {
+        return this.weights;
+    }
+
     /**
      * Returns a list containing the weightings associated with all of the sensors monitored by this hazard evaluator.
+     * <p>
+     * The weightings are in canonical order, ie. sorted by the class name of
+     * their sensors, the same order in which a room keeps its sensors. The
+     * list is computed once, when the evaluator is created, and cannot be
+     * modified.
+     *
      * @return weightings
      */
     public List<Integer> getWeightings() {
-        List<Integer> weightings = new ArrayList<>();
-
-        Map<String, Integer> treeMap = new TreeMap<>();
-        Iterator<Map.Entry<HazardSensor, Integer>> iterator =
-                this.weightingBasedHazardEvaluator.entrySet().iterator();
-        while (iterator.hasNext()) {
-            Map.Entry<HazardSensor, Integer> entry = iterator.next();
-            if (entry.getKey() instanceof CarbonDioxideSensor) {
-                treeMap.put("CarbonDioxideSensor", entry.getValue());
-            }
-            if (entry.getKey() instanceof NoiseSensor) {
-                treeMap.put("NoiseSensor", entry.getValue());
-            }
-            if (entry.getKey() instanceof OccupancySensor) {
-                treeMap.put("OccupancySensor", entry.getValue());
-            }
-            if (entry.getKey() instanceof TemperatureSensor) {
-                treeMap.put("TemperatureSensor", entry.getValue());
-            }
-        }
-        for (int weighting:treeMap.values()) {
-            weightings.add(weighting);
-        }
-
-        return weightings;
+        return this.weightings;
     }
 
     /**
@@ -0,0 +1,196 @@
+package bms.room;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Fire drill status of every room in a building, kept as bitsets over a
+ * dense index of the rooms.
+ * <p>
+ * Each room added to a floor in the building is given the next index, see
+ * {@link Room#setFireDrillState(FireDrillState)}, and the rooms of each
+ * {@link RoomType} are recorded in a bitset of their own. Starting a fire
+ * drill in every room of a type is then one OR of that type's bitset into
+ * the drill bitset, and cancelling every drill is clearing it, so both take
+ * one word operation per 64 rooms rather than a call per room.
+ * <p>
+ * Rooms still start and stop their own drills, see
+ * {@link Room#setFireDrill(boolean)}, by setting their bit. Observers of a
+ * room whose drill status changes are notified as usual, after the bitsets
+ * are updated; only rooms which have observers are visited.
+ */
+public class FireDrillState {
+
+    /**
+     * Number of bits in a word of a bitset.
+     */
+    private static final int WORD_BITS = 64;
+
+    /**
+     * Rooms by index.
+     */
+    private Room[] rooms = new Room[WORD_BITS];
+
+    /**
+     * Number of rooms given an index.
+     */
+    private int size = 0;
+
+    /**
+     * Rooms with a fire drill ongoing.
+     */
+    private long[] drilling = new long[1];
+
+    /**
+     * Every room given an index.
+     */
+    private long[] all = new long[1];
+
+    /**
+     * Rooms of each type, by the type's ordinal.
+     */
+    private final long[][] ofType = new long[RoomType.values().length][1];
+
+    /**
+     * Rooms with at least one observer.
+     */
+    private long[] observed = new long[1];
+
+    /**
+     * Returns the number of rooms given an index.
+     *
+     * @return number of rooms
+     */
+    public synchronized int size() {
+        return this.size;
+    }
+
+    /**
+     * Starts a fire drill in every room of the given type.
+     *
+     * @param roomType type of room to start fire drills in; null if fire
+     *                 drills are to be started in all rooms
+     */
+    public void fireDrill(RoomType roomType) {
+        List<Room> changed;
+        synchronized (this) {
+            changed = update(roomType == null
+                    ? this.all : this.ofType[roomType.ordinal()], true);
+        }
+        notifyChanged(changed);
+    }
+
+    /**
+     * Cancels the fire drill in every room.
+     */
+    public void cancelFireDrill() {
+        List<Room> changed;
+        synchronized (this) {
+            changed = update(this.all, false);
+        }
+        notifyChanged(changed);
+    }
+
+    /**
+     * Gives the given room the next index, with its current fire drill
+     * status.
+     *
+     * @param room room to index
+     * @param fireDrill whether the room has a fire drill ongoing
+     * @param hasObservers whether the room has any observers
+     * @return room's index
+     */
+    synchronized int add(Room room, boolean fireDrill, boolean hasObservers) {
+        int index = this.size++;
+        if (index == this.rooms.length) {
+            this.rooms = Arrays.copyOf(this.rooms, index * 2);
+        }
+        this.rooms[index] = room;
+        int words = (this.size + WORD_BITS - 1) / WORD_BITS;
+        if (words > this.all.length) {
+            int length = this.all.length * 2;
+            this.drilling = Arrays.copyOf(this.drilling, length);
+            this.all = Arrays.copyOf(this.all, length);
+            this.observed = Arrays.copyOf(this.observed, length);
+            for (int i = 0; i < this.ofType.length; i++) {
+                this.ofType[i] = Arrays.copyOf(this.ofType[i], length);
+            }
+        }
+        set(this.all, index, true);
+        set(this.ofType[room.getType().ordinal()], index, true);
+        set(this.drilling, index, fireDrill);
+        set(this.observed, index, hasObservers);
+        return index;
+    }
+
+    /**
+     * Returns whether the room with the given index has a fire drill ongoing.
+     */
+    synchronized boolean isDrilling(int index) {
+        return get(this.drilling, index);
+    }
+
+    /**
+     * Sets whether the room with the given index has a fire drill ongoing.
+     *
+     * @return true if the room's status changed
+     */
+    synchronized boolean setDrilling(int index, boolean fireDrill) {
+        if (get(this.drilling, index) == fireDrill) {
+            return false;
+        }
+        set(this.drilling, index, fireDrill);
+        return true;
+    }
+
+    /**
+     * Sets whether the room with the given index has any observers.
+     */
+    synchronized void setObserved(int index, boolean hasObservers) {
+        set(this.observed, index, hasObservers);
+    }
+
+    /**
+     * Sets or clears the drill bits of the given rooms, and returns the
+     * observed rooms whose bits changed.
+     */
+    private List<Room> update(long[] mask, boolean fireDrill) {
+        List<Room> changed = null;
+        for (int word = 0; word < mask.length; word++) {
+            long before = this.drilling[word];
+            long after = fireDrill ? before | mask[word] : before & ~mask[word];
+            this.drilling[word] = after;
+            long notify = (before ^ after) & this.observed[word];
+            while (notify != 0) {
+                if (changed == null) {
+                    changed = new ArrayList<>();
+                }
+                int bit = Long.numberOfTrailingZeros(notify);
+                changed.add(this.rooms[word * WORD_BITS + bit]);
+                notify &= notify - 1;
+            }
+        }
+        return changed;
+    }
+
+    private static void notifyChanged(List<Room> changed) {
+        if (changed != null) {
+            for (Room room : changed) {
+                room.notifyObservers();
+            }
+        }
+    }
+
+    private static boolean get(long[] bits, int index) {
+        return (bits[index / WORD_BITS] & (1L << index)) != 0;
+    }
+
+    private static void set(long[] bits, int index, boolean value) {
+        if (value) {
+            bits[index / WORD_BITS] |= 1L << index;
+        } else {
+            bits[index / WORD_BITS] &= ~(1L << index);
+        }
+    }
+}
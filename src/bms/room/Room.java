@@ -3,14 +3,20 @@ package bms.room;
 import bms.exceptions.DuplicateSensorException;
 import bms.floor.Floor;
 import bms.hazardevaluation.HazardEvaluator;
+import bms.hazardevaluation.HazardLevelCache;
 import bms.hazardevaluation.RuleBasedHazardEvaluator;
 import bms.hazardevaluation.WeightingBasedHazardEvaluator;
 import bms.sensors.*;
 import bms.util.Encodable;
+import bms.util.SimulationClock;
+import bms.util.TimedItem;
+import bms.util.TimedItemManager;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Represents a room on a floor of a building.
@@ -58,10 +64,28 @@ public class Room implements Encodable {
     private static final int MIN_AREA = 5;
 
     /**
-     * Records whether there is currently a fire drill.
+     * Records whether there is currently a fire drill, until the room is
+     * given an index in its building's fire drill state.
      */
     private boolean fireDrill;
 
+    /**
+     * Fire drill state of the building the room is in, or null until the
+     * room is added to a floor in a building.
+     */
+    private FireDrillState fireDrillState;
+
+    /**
+     * Index of the room in its building's fire drill state.
+     */
+    private int fireDrillIndex = -1;
+
+    /**
+     * Records whether the room's floor is being evacuated automatically,
+     * separately from any fire drill.
+     */
+    private boolean evacuating;
+
     /**
      * record if the room is on maintenance
      */
@@ -72,6 +96,47 @@ public class Room implements Encodable {
      */
     private HazardEvaluator hazardEvaluator;
 
+    /**
+     * Cache of the hazard level evaluated by the room's hazard evaluator, or
+     * null if none has been evaluated since the evaluator or clock changed.
+     */
+    private HazardLevelCache hazardLevelCache;
+
+    /**
+     * Observers notified when the room's fire drill or maintenance status,
+     * sensors, sensors' live feeds or hazard evaluator change.
+     */
+    private final List<RoomObserver> observers = new CopyOnWriteArrayList<>();
+
+    /**
+     * Observer of the room's timed sensors, which notifies the room's
+     * observers when a live feed is attached to or removed from one.
+     */
+    private final SensorObserver sensorObserver = sensor -> notifyObservers();
+
+    /**
+     * Clock which the room's sensors are registered with; the global clock
+     * until the room is added to a floor in a building.
+     */
+    private SimulationClock clock = TimedItemManager.getInstance().getClock();
+
+    /**
+     * Histories of the readings of the room's timed sensors, in the same
+     * order as the sensors; empty if histories are not recorded.
+     */
+    private List<ReadingHistory> histories = new ArrayList<>();
+
+    /**
+     * Number of minutes of readings kept by each history, or zero if
+     * histories are not recorded.
+     */
+    private int historyMinutes = 0;
+
+    /**
+     * Number of hours of rollups kept by each history.
+     */
+    private int historyHours = 0;
+
     /**
      * Creates a new room with the given room number.
      *
@@ -139,9 +204,25 @@ public class Room implements Encodable {
      * @ass1
      */
     public boolean fireDrillOngoing() {
+        if (this.fireDrillState != null) {
+            return this.fireDrillState.isDrilling(this.fireDrillIndex);
+        }
         return this.fireDrill;
     }
 
+    /**
+     * Returns whether the room's floor is currently being evacuated
+     * automatically, eg. by a {@link bms.building.EvacuationEngine}.
+     * <p>
+     * Automatic evacuations are kept apart from fire drills, so starting or
+     * cancelling a fire drill does not affect them, nor the other way around.
+     *
+     * @return whether the room is being evacuated
+     */
+    public boolean isEvacuating() {
+        return this.evacuating;
+    }
+
     /**
      * Returns whether there is currently maintenance in progress.
      * @return current status of maintenance
@@ -173,7 +254,33 @@ public class Room implements Encodable {
      * @ass1
      */
     public void setFireDrill(boolean fireDrill) {
-        this.fireDrill = fireDrill;
+        boolean changed;
+        if (this.fireDrillState != null) {
+            changed = this.fireDrillState.setDrilling(this.fireDrillIndex,
+                    fireDrill);
+        } else {
+            changed = this.fireDrill != fireDrill;
+            this.fireDrill = fireDrill;
+        }
+        if (changed) {
+            notifyObservers();
+        }
+    }
+
+    /**
+     * Sets whether the room's floor is being evacuated automatically.
+     * <p>
+     * Called by the floor the room is on, see
+     * {@link Floor#setEvacuating(boolean)}.
+     *
+     * @param evacuating whether the room is being evacuated
+     */
+    public void setEvacuating(boolean evacuating) {
+        boolean changed = this.evacuating != evacuating;
+        this.evacuating = evacuating;
+        if (changed) {
+            notifyObservers();
+        }
     }
 
     /**
@@ -181,7 +288,11 @@ public class Room implements Encodable {
      * @param maintenance whether there is maintenance ongoing
      */
     public void setMaintenance(boolean maintenance) {
+        boolean changed = this.maintenance != maintenance;
         this.maintenance = maintenance;
+        if (changed) {
+            notifyObservers();
+        }
     }
 
     /**
@@ -198,6 +309,68 @@ public class Room implements Encodable {
      */
     public void setHazardEvaluator(HazardEvaluator hazardEvaluator) {
         this.hazardEvaluator = hazardEvaluator;
+        notifyObservers();
+    }
+
+    /**
+     * Adds an observer to be notified when this room's fire drill or
+     * maintenance status, sensors, sensors' live feeds or hazard evaluator
+     * change.
+     * <p>
+     * Observers are called on the thread making the change, eg. the thread
+     * ticking a maintenance schedule.
+     *
+     * @param observer observer to add
+     */
+    public void addObserver(RoomObserver observer) {
+        this.observers.add(observer);
+        if (this.fireDrillState != null) {
+            this.fireDrillState.setObserved(this.fireDrillIndex, true);
+        }
+    }
+
+    /**
+     * Removes an observer added with {@link #addObserver(RoomObserver)}.
+     *
+     * @param observer observer to remove
+     */
+    public void removeObserver(RoomObserver observer) {
+        this.observers.remove(observer);
+        if (this.fireDrillState != null && this.observers.isEmpty()) {
+            this.fireDrillState.setObserved(this.fireDrillIndex, false);
+        }
+    }
+
+    /**
+     * Notifies this room's observers that it has changed.
+     */
+    void notifyObservers() {
+        for (RoomObserver observer : this.observers) {
+            observer.roomChanged(this);
+        }
+    }
+
+    /**
+     * Returns the hazard level evaluated by this room's hazard evaluator.
+     * <p>
+     * The level is cached until one of the room's sensors next changes its
+     * reading, see {@link HazardLevelCache}, so it can be asked for often,
+     * eg. whenever the building is redrawn.
+     *
+     * @return the hazard level, between 0 and 100 (inclusive); or 0 if the
+     * room has no hazard evaluator
+     */
+    public int getHazardLevel() {
+        HazardEvaluator evaluator = this.hazardEvaluator;
+        if (evaluator == null) {
+            return 0;
+        }
+        HazardLevelCache cache = this.hazardLevelCache;
+        if (cache == null || cache.getEvaluator() != evaluator) {
+            cache = new HazardLevelCache(evaluator, this.sensors);
+            this.hazardLevelCache = cache;
+        }
+        return cache.getHazardLevel();
     }
 
     /**
@@ -244,6 +417,175 @@ public class Room implements Encodable {
         sensors.add(sensor);
         sensors.sort(Comparator.comparing(s -> s.getClass().getSimpleName()));
         this.hazardEvaluator = null;
+        if (sensor instanceof TimedItem) {
+            SimulationClock.moveTimedItems(List.of((TimedItem) sensor),
+                    TimedItemManager.getInstance().getClock(), this.clock);
+        }
+        if (sensor instanceof TimedSensor) {
+            ((TimedSensor) sensor).addObserver(this.sensorObserver);
+        }
+        if (this.historyMinutes > 0 && sensor instanceof TimedSensor) {
+            addHistory((TimedSensor) sensor);
+        }
+        notifyObservers();
+    }
+
+    /**
+     * Removes a sensor from the room, and stops it from being ticked, see
+     * {@link SimulationClock#unregisterTimedItem(TimedItem)}.
+     * <p>
+     * As when adding a sensor, removing a sensor removes any hazard evaluator
+     * currently in the room.
+     *
+     * @param sensor the sensor to remove from the room
+     * @return true if the sensor was in the room; false otherwise
+     */
+    public boolean removeSensor(Sensor sensor) {
+        if (!sensors.remove(sensor)) {
+            return false;
+        }
+        if (sensor instanceof TimedItem) {
+            this.clock.unregisterTimedItem((TimedItem) sensor);
+        }
+        if (sensor instanceof TimedSensor) {
+            ((TimedSensor) sensor).removeObserver(this.sensorObserver);
+        }
+        ReadingHistory history = getHistory(sensor);
+        if (history != null) {
+            this.histories.remove(history);
+            this.clock.unregisterTimedItem(history);
+        }
+        this.hazardEvaluator = null;
+        notifyObservers();
+        return true;
+    }
+
+    /**
+     * Starts recording the history of the readings of each timed sensor in
+     * this room, and of any added later, see {@link ReadingHistory}.
+     * <p>
+     * Does nothing if histories are already being recorded.
+     *
+     * @param minuteCapacity number of most recent minutes of readings to keep
+     * @param hourCapacity number of most recent hours of rollups to keep
+     * @throws IllegalArgumentException if either capacity is less than one
+     */
+    public void recordHistory(int minuteCapacity, int hourCapacity) {
+        if (minuteCapacity < 1 || hourCapacity < 1) {
+            throw new IllegalArgumentException(
+                    "History must keep at least one minute and one hour");
+        }
+        if (this.historyMinutes > 0) {
+            return;
+        }
+        this.historyMinutes = minuteCapacity;
+        this.historyHours = hourCapacity;
+        for (Sensor sensor : this.sensors) {
+            if (sensor instanceof TimedSensor) {
+                addHistory((TimedSensor) sensor);
+            }
+        }
+    }
+
+    /**
+     * Returns the minimum, maximum, mean and number of the readings of this
+     * room's sensor of the given type in the given number of most recent
+     * minutes, see {@link ReadingHistory#getStatistics(int)}.
+     *
+     * @param sensorType the type of sensor which matches the class name
+     *                   returned by the getSimpleName() method,
+     *                   e.g. "CarbonDioxideSensor" (no quotes)
+     * @param windowMinutes number of most recent minutes
+     * @return statistics of the sensor's readings; or null if there is no
+     * such sensor, or its history is not recorded
+     * @throws IllegalArgumentException if the window is less than one minute
+     */
+    public ReadingStatistics getReadingStatistics(String sensorType,
+                                                  int windowMinutes) {
+        ReadingHistory history = getHistory(getSensor(sensorType));
+        return history == null ? null : history.getStatistics(windowMinutes);
+    }
+
+    /**
+     * Returns the history of the given sensor's readings, or null if it is
+     * not recorded.
+     */
+    private ReadingHistory getHistory(Sensor sensor) {
+        for (ReadingHistory history : this.histories) {
+            if (history.getSensor() == sensor) {
+                return history;
+            }
+        }
+        return null;
+    }
+
+    private void addHistory(TimedSensor sensor) {
+        ReadingHistory history = new ReadingHistory(sensor,
+                this.historyMinutes, this.historyHours);
+        this.histories.add(history);
+        SimulationClock.moveTimedItems(List.of(history),
+                TimedItemManager.getInstance().getClock(), this.clock);
+    }
+
+    /**
+     * Returns the clock which this room's sensors are registered with.
+     *
+     * @return clock ticking this room's sensors
+     */
+    public SimulationClock getClock() {
+        return this.clock;
+    }
+
+    /**
+     * Moves this room's sensors onto the given clock, see
+     * {@link SimulationClock#moveTimedItems(java.util.Collection,
+     * SimulationClock, SimulationClock)}. Sensors added to the room later are
+     * registered with the same clock.
+     * <p>
+     * Called by the floor the room is added to.
+     *
+     * @param clock clock to register the room's sensors with
+     */
+    public void setClock(SimulationClock clock) {
+        SimulationClock.moveTimedItems(getTimedItems(), this.clock, clock);
+        this.clock = clock;
+        this.hazardLevelCache = null;
+    }
+
+    /**
+     * Gives this room an index in the given fire drill state, which then
+     * records whether the room has a fire drill ongoing. Does nothing if the
+     * room already has an index in a fire drill state.
+     * <p>
+     * Called by the floor the room is added to, once the floor is in a
+     * building.
+     *
+     * @param fireDrillState fire drill state of the room's building
+     */
+    public void setFireDrillState(FireDrillState fireDrillState) {
+        if (this.fireDrillState != null) {
+            return;
+        }
+        this.fireDrillIndex = fireDrillState.add(this, this.fireDrill,
+                !this.observers.isEmpty());
+        this.fireDrillState = fireDrillState;
+    }
+
+    /**
+     * Returns a new list of the sensors in this room, and the histories of
+     * their readings, which are ticked by the timed item manager.
+     *
+     * @return timed items owned by this room
+     */
+    public List<TimedItem> getTimedItems() {
+        List<TimedItem> timedItems = new ArrayList<>();
+        for (Sensor sensor : this.sensors) {
+            if (sensor instanceof TimedItem) {
+                timedItems.add((TimedItem) sensor);
+            }
+        }
+        timedItems.addAll(this.histories);
+        return timedItems;
     }
 
     /**
@@ -253,8 +595,9 @@ public class Room implements Encodable {
      *
      * If there is a TemperatureSensor in the room and it reports a hazard level of 100,
      * the room state is always EVACUATE since the room is on fire.
-     * If there is currently a fire drill in progress, the room state is always EVACUATE.
-     * If there is maintenance in progress and there is no fire drill or fire alarm,
+     * If there is currently a fire drill in progress, or the room's floor is
+     * being evacuated automatically, the room state is always EVACUATE.
+     * If there is maintenance in progress and there is no fire drill, evacuation or fire alarm,
      * the room state is MAINTENANCE.
      * Otherwise, the room state is OPEN.
      * @return current room status
@@ -267,7 +610,7 @@ public class Room implements Encodable {
                 }
             }
         }
-        if (fireDrill) {
+        if (fireDrillOngoing() || this.evacuating) {
             return RoomState.EVACUATE;
         }
         if (maintenance) {
@@ -433,15 +776,65 @@ public class Room implements Encodable {
             }
             if (this.getHazardEvaluator() instanceof WeightingBasedHazardEvaluator) {
                 roomEncode += System.lineSeparator();
+                List<Integer> weightings = ((WeightingBasedHazardEvaluator)
+                        this.getHazardEvaluator()).getWeightings();
                 for (int i = 0; i < this.getSensors().size(); i++) {
                     roomEncode += ((TimedSensor) this.getSensors().get(i)).encode();
                     roomEncode += "@";
-                    roomEncode += ((WeightingBasedHazardEvaluator)
-                            this.getHazardEvaluator()).getWeightings().get(i);
+                    roomEncode += weightings.get(i);
                     roomEncode += System.lineSeparator();
                 }
             }
         }
         return roomEncode.substring(0, roomEncode.length() - System.lineSeparator().length());
     }
+
+    /**
+     * Appends the machine-readable string representation of this room and
+     * all of its sensors, exactly as returned by {@link #encode()}.
+     *
+     * @param out destination to append the encoded representation to
+     * @throws IOException if appending to the destination fails
+     */
+    @Override
+    public void encodeTo(Appendable out) throws IOException {
+        HazardEvaluator evaluator = this.getHazardEvaluator();
+        if (evaluator != null && !(evaluator instanceof RuleBasedHazardEvaluator)
+                && !(evaluator instanceof WeightingBasedHazardEvaluator)) {
+            // encode() trims other evaluators' names, so reproduce it exactly
+            out.append(encode());
+            return;
+        }
+        String lineSeparator = System.lineSeparator();
+        out.append(Integer.toString(this.roomNumber)).append(':')
+                .append(this.type.toString()).append(':');
+        appendMeasurement(out, this.getArea());
+        out.append(':').append(Integer.toString(this.sensors.size()));
+        if (evaluator != null) {
+            out.append(':').append(evaluator.toString());
+        }
+        List<Integer> weightings = evaluator instanceof WeightingBasedHazardEvaluator
+                ? ((WeightingBasedHazardEvaluator) evaluator).getWeightings()
+                : null;
+        for (int i = 0; i < this.sensors.size(); i++) {
+            out.append(lineSeparator);
+            ((TimedSensor) this.sensors.get(i)).encodeTo(out);
+            if (weightings != null) {
+                out.append('@').append(weightings.get(i).toString());
+            }
+        }
+    }
+
+    /**
+     * Appends the given measurement as encoded by {@link #encode()}: without
+     * a decimal point if it is a whole number.
+     */
+    private static void appendMeasurement(Appendable out, double measurement)
+            throws IOException {
+        if (Math.floor(measurement) == measurement) {
+            out.append(Integer.toString((int) measurement));
+        } else {
+            out.append(Double.toString(measurement));
+        }
+    }
 }
@@ -0,0 +1,17 @@
+package bms.room;
+
+/**
+ * Observer of changes to a room which may change its hazard level or state
+ * other than its sensors' readings, eg. a fire drill starting, see
+ * {@link Room#addObserver(RoomObserver)}.
+ */
+public interface RoomObserver {
+    /**
+     * Called after the given room's fire drill or maintenance status, sensors
+     * or hazard evaluator have changed, or a live feed has been attached to
+     * or removed from one of its sensors.
+     *
+     * @param room room which changed
+     */
+    void roomChanged(Room room);
+}
@@ -3,7 +3,10 @@ package bms.sensors;
 import bms.floor.Floor;
 import bms.util.Encodable;
 
+import java.io.IOException;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A sensor that measures levels of carbon dioxide (CO2) in the air, in parts
@@ -24,6 +27,34 @@ public class CarbonDioxideSensor extends TimedSensor implements HazardSensor, Co
      */
     private int variationLimit;
 
+    /**
+     * Highest reading in the table of hazard levels; every higher reading has
+     * a hazard level of 100.
+     */
+    private static final int TABLE_MAX_PPM = 4999;
+
+    /**
+     * Hazard level of each reading up to {@link #TABLE_MAX_PPM}, so that the
+     * thresholds are not compared on every call.
+     */
+    private static final LevelTable HAZARD_TABLE = LevelTable.of(0,
+            TABLE_MAX_PPM, CarbonDioxideSensor::computeHazardLevel);
+
+    /**
+     * Tables of the comfort level of each reading within the variation limit
+     * of an ideal value, by ideal value and variation limit, shared by every
+     * sensor with both.
+     */
+    private static final Map<Long, LevelTable> COMFORT_TABLES =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Comfort level of each reading within this sensor's variation limit of
+     * its ideal value, or null if there are too many such readings; every
+     * other reading has a comfort level of 0.
+     */
+    private final LevelTable comfortTable;
+
     /**
      * Creates a new carbon dioxide sensor with the given sensor readings,
      * update frequency, ideal CO2 value and acceptable variation limit.
@@ -67,6 +98,13 @@ public class CarbonDioxideSensor extends TimedSensor implements HazardSensor, Co
 
         this.idealValue = idealValue;
         this.variationLimit = variationLimit;
+        long key = ((long) idealValue << 32) | variationLimit;
+        // computeIfAbsent stores no null, so oversized tables are retried
+        this.comfortTable = COMFORT_TABLES.computeIfAbsent(key, k ->
+                LevelTable.of(idealValue - variationLimit + 1,
+                        idealValue + variationLimit - 1, reading ->
+                                computeComfortLevel(reading, idealValue,
+                                        variationLimit)));
     }
 
     /**
@@ -113,7 +151,29 @@ public class CarbonDioxideSensor extends TimedSensor implements HazardSensor, Co
      */
     @Override
     public int getHazardLevel() {
-        final int currentReading = this.getCurrentReading();
+        return hazardLevel(this.getCurrentReading());
+    }
+
+    /**
+     * Returns the hazard level of a carbon dioxide sensor with the given
+     * reading, as for {@link #getHazardLevel()}.
+     *
+     * @param currentReading current carbon dioxide reading
+     * @return hazard level, 0 to 100
+     */
+    static int hazardLevel(int currentReading) {
+        int level = LevelTable.lookup(HAZARD_TABLE, currentReading);
+        return level >= 0 ? level : computeHazardLevel(currentReading);
+    }
+
+    /**
+     * Computes the hazard level of the given reading from its thresholds,
+     * without looking it up.
+     *
+     * @param currentReading current carbon dioxide reading
+     * @return hazard level, 0 to 100
+     */
+    static int computeHazardLevel(int currentReading) {
         if (currentReading < 1000) {
             return 0;
         }
@@ -153,11 +213,28 @@ public class CarbonDioxideSensor extends TimedSensor implements HazardSensor, Co
      */
     @Override
     public int getComfortLevel() {
-        int difference = Math.abs(getCurrentReading() - getIdealValue());
-        if (difference >= getVariationLimit()) {
+        int reading = getCurrentReading();
+        int level = LevelTable.lookup(this.comfortTable, reading);
+        return level >= 0 ? level
+                : computeComfortLevel(reading, getIdealValue(), getVariationLimit());
+    }
+
+    /**
+     * Computes the comfort level of a carbon dioxide sensor with the given
+     * reading, ideal value and variation limit, as for
+     * {@link #getComfortLevel()}, without looking it up.
+     *
+     * @param currentReading current carbon dioxide reading
+     * @param idealValue ideal carbon dioxide value
+     * @param variationLimit variation limit from the ideal value
+     * @return comfort level, 0 to 100
+     */
+    static int computeComfortLevel(int currentReading, int idealValue, int variationLimit) {
+        int difference = Math.abs(currentReading - idealValue);
+        if (difference >= variationLimit) {
             return 0;
         }
-        double comfortLevelDouble = (1 - ((float) difference) / ((float) getVariationLimit()));
+        double comfortLevelDouble = (1 - ((float) difference) / ((float) variationLimit));
         int comfortLevel = (int) Math.round(comfortLevelDouble * 100);
         return comfortLevel;
     }
@@ -251,4 +328,20 @@ public class CarbonDioxideSensor extends TimedSensor implements HazardSensor, Co
         return carbonDioxideSensorEncode + super.encode() + ":" + this.getUpdateFrequency() + ":"
                 + this.idealValue + ":" + this.variationLimit;
     }
+
+    /**
+     * Appends the machine-readable string representation of this sensor,
+     * exactly as returned by {@link #encode()}.
+     *
+     * @param out destination to append the encoded representation to
+     * @throws IOException if appending to the destination fails
+     */
+    @Override
+    public void encodeTo(Appendable out) throws IOException {
+        out.append("CarbonDioxideSensor:");
+        super.encodeTo(out);
+        out.append(':').append(Integer.toString(this.getUpdateFrequency()))
+                .append(':').append(Integer.toString(this.idealValue))
+                .append(':').append(Integer.toString(this.variationLimit));
+    }
 }
@@ -0,0 +1,82 @@
+package bms.sensors;
+
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Table of the hazard or comfort level of each reading in a range, so that a
+ * sensor's level can be looked up instead of computed from its reading.
+ * <p>
+ * Levels are between 0 and 100, so are stored one per byte. Readings outside
+ * the table's range fall back to the sensor's formula, which is cheap there,
+ * eg. a level which is 0 or 100 past a limit.
+ * <p>
+ * Sensor types whose levels depend only on the reading keep one table of
+ * each level. Carbon dioxide and occupancy sensors' levels also depend on
+ * their ideal value and variation limit, or capacity, so each sensor looks
+ * its levels up in tables shared by the sensors with the same parameters.
+ * The saving is largest for the noise sensor's relative loudness; see
+ * SensorLevelBenchmark in the tests.
+ */
+final class LevelTable {
+
+    /**
+     * Largest number of readings in a table.
+     */
+    static final int MAX_SIZE = 8192;
+
+    /**
+     * Lowest reading in the table.
+     */
+    private final int min;
+
+    /**
+     * Level of each reading, from the lowest.
+     */
+    private final byte[] levels;
+
+    private LevelTable(int min, byte[] levels) {
+        this.min = min;
+        this.levels = levels;
+    }
+
+    /**
+     * Returns a table of the levels of the readings from min to max
+     * inclusive, computed by the given formula.
+     *
+     * @param min lowest reading in the table
+     * @param max highest reading in the table
+     * @param level formula for the level of a reading, between 0 and 100
+     * @return new table, or null if the range is empty or has more than
+     * {@link #MAX_SIZE} readings
+     */
+    static LevelTable of(int min, int max, IntUnaryOperator level) {
+        long size = (long) max - min + 1;
+        if (size < 1 || size > MAX_SIZE) {
+            return null;
+        }
+        byte[] levels = new byte[(int) size];
+        for (int i = 0; i < levels.length; i++) {
+            levels[i] = (byte) level.applyAsInt(min + i);
+        }
+        return new LevelTable(min, levels);
+    }
+
+    /**
+     * Returns the level of the given reading in the given table.
+     *
+     * @param table table to look in, or null
+     * @param reading reading to look up
+     * @return level of the reading, or -1 if the table is null or does not
+     * contain the reading
+     */
+    static int lookup(LevelTable table, int reading) {
+        if (table == null) {
+            return -1;
+        }
+        int index = reading - table.min;
+        if (index < 0 || index >= table.levels.length) {
+            return -1;
+        }
+        return table.levels[index];
+    }
+}
@@ -2,6 +2,8 @@ package bms.sensors;
 
 import bms.util.Encodable;
 
+import java.io.IOException;
+
 /**
  * A sensor that measures the noise levels in a room.
  * @ass1
@@ -15,6 +17,25 @@ public class NoiseSensor extends TimedSensor implements HazardSensor, ComfortSen
      */
     private static final int referenceDB = 70;
 
+    /**
+     * Highest reading in the tables of levels; every louder reading has a
+     * hazard level of 100 and a comfort level of 0.
+     */
+    private static final int TABLE_MAX_DB = 127;
+
+    /**
+     * Hazard level of each reading up to {@link #TABLE_MAX_DB}, so that the
+     * relative loudness is not computed on every call.
+     */
+    private static final LevelTable HAZARD_TABLE =
+            LevelTable.of(0, TABLE_MAX_DB, NoiseSensor::computeHazardLevel);
+
+    /**
+     * Comfort level of each reading up to {@link #TABLE_MAX_DB}.
+     */
+    private static final LevelTable COMFORT_TABLE =
+            LevelTable.of(0, TABLE_MAX_DB, NoiseSensor::computeComfortLevel);
+
     /**
      * Creates a new noise sensor with the given sensor readings and update
      * frequency.
@@ -50,7 +71,18 @@ public class NoiseSensor extends TimedSensor implements HazardSensor, ComfortSen
      * @ass1
      */
     public double calculateRelativeLoudness() {
-        return Math.pow(2, (this.getCurrentReading() - referenceDB) / 10.0);
+        return relativeLoudness(this.getCurrentReading());
+    }
+
+    /**
+     * Returns the relative loudness of the given noise reading, as for
+     * {@link #calculateRelativeLoudness()}.
+     *
+     * @param reading noise reading in decibels
+     * @return relative loudness
+     */
+    static double relativeLoudness(int reading) {
+        return Math.pow(2, (reading - referenceDB) / 10.0);
     }
 
     /**
@@ -73,7 +105,30 @@ public class NoiseSensor extends TimedSensor implements HazardSensor, ComfortSen
      */
     @Override
     public int getHazardLevel() {
-        double relativeLoudnessMult100 = this.calculateRelativeLoudness() * 100;
+        return hazardLevel(this.getCurrentReading());
+    }
+
+    /**
+     * Returns the hazard level of a noise sensor with the given reading, as
+     * for {@link #getHazardLevel()}.
+     *
+     * @param reading noise reading in decibels
+     * @return hazard level, 0 to 100
+     */
+    static int hazardLevel(int reading) {
+        int level = LevelTable.lookup(HAZARD_TABLE, reading);
+        return level >= 0 ? level : computeHazardLevel(reading);
+    }
+
+    /**
+     * Computes the hazard level of the given reading from its relative
+     * loudness, without looking it up.
+     *
+     * @param reading noise reading in decibels
+     * @return hazard level, 0 to 100
+     */
+    static int computeHazardLevel(int reading) {
+        double relativeLoudnessMult100 = relativeLoudness(reading) * 100;
         return (int) Math.min(Math.floor(relativeLoudnessMult100), 100);
     }
 
@@ -93,10 +148,34 @@ public class NoiseSensor extends TimedSensor implements HazardSensor, ComfortSen
      * @return level of comfort at sensor location, 0 to 100
      */
     public int getComfortLevel() {
-        if (1.0 <= calculateRelativeLoudness()) {
+        return comfortLevel(getCurrentReading());
+    }
+
+    /**
+     * Returns the comfort level of a noise sensor with the given reading, as
+     * for {@link #getComfortLevel()}.
+     *
+     * @param reading noise reading in decibels
+     * @return comfort level, 0 to 100
+     */
+    static int comfortLevel(int reading) {
+        int level = LevelTable.lookup(COMFORT_TABLE, reading);
+        return level >= 0 ? level : computeComfortLevel(reading);
+    }
+
+    /**
+     * Computes the comfort level of the given reading from its relative
+     * loudness, without looking it up.
+     *
+     * @param reading noise reading in decibels
+     * @return comfort level, 0 to 100
+     */
+    static int computeComfortLevel(int reading) {
+        double relativeLoudness = relativeLoudness(reading);
+        if (1.0 <= relativeLoudness) {
             return 0;
         }
-        return (int) Math.floor((1.0 - calculateRelativeLoudness()) * 100);
+        return (int) Math.floor((1.0 - relativeLoudness) * 100);
     }
 
     /**
@@ -144,4 +223,18 @@ public class NoiseSensor extends TimedSensor implements HazardSensor, ComfortSen
         String noiseSensorEncode = "NoiseSensor:";
         return noiseSensorEncode + super.encode() + ":" + this.getUpdateFrequency();
     }
+
+    /**
+     * Appends the machine-readable string representation of this sensor,
+     * exactly as returned by {@link #encode()}.
+     *
+     * @param out destination to append the encoded representation to
+     * @throws IOException if appending to the destination fails
+     */
+    @Override
+    public void encodeTo(Appendable out) throws IOException {
+        out.append("NoiseSensor:");
+        super.encodeTo(out);
+        out.append(':').append(Integer.toString(this.getUpdateFrequency()));
+    }
 }
@@ -1,5 +1,9 @@
 package bms.sensors;
 
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * A sensor that measures the number of people in a room.
  * @ass1
@@ -10,6 +14,26 @@ public class OccupancySensor extends TimedSensor implements HazardSensor, Comfor
      */
     private int capacity;
 
+    /**
+     * Tables of the hazard and comfort levels of each reading below a
+     * capacity, by capacity, shared by every sensor with that capacity.
+     */
+    private static final Map<Integer, LevelTable[]> TABLES =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Hazard level of each reading below this sensor's capacity, so that the
+     * occupancy ratio is not computed on every call; every reading at or
+     * above the capacity has a hazard level of 100.
+     */
+    private final LevelTable hazardTable;
+
+    /**
+     * Comfort level of each reading below this sensor's capacity; every
+     * reading at or above the capacity has a comfort level of 0.
+     */
+    private final LevelTable comfortTable;
+
     /**
      * Creates a new occupancy sensor with the given sensor readings, update
      * frequency and capacity.
@@ -32,6 +56,15 @@ public class OccupancySensor extends TimedSensor implements HazardSensor, Comfor
         }
 
         this.capacity = capacity;
+        LevelTable[] tables = TABLES.computeIfAbsent(capacity, max ->
+                new LevelTable[]{
+                        LevelTable.of(0, max - 1, reading ->
+                                computeHazardLevel(reading, max)),
+                        LevelTable.of(0, max - 1, reading ->
+                                computeComfortLevel(reading, max))
+                });
+        this.hazardTable = tables[0];
+        this.comfortTable = tables[1];
     }
 
     /**
@@ -65,12 +98,24 @@ public class OccupancySensor extends TimedSensor implements HazardSensor, Comfor
      */
     @Override
     public int getHazardLevel() {
-        final int currentReading = this.getCurrentReading();
+        int reading = this.getCurrentReading();
+        int level = LevelTable.lookup(this.hazardTable, reading);
+        return level >= 0 ? level : computeHazardLevel(reading, this.capacity);
+    }
 
-        if (currentReading >= this.capacity) {
+    /**
+     * Computes the hazard level of an occupancy sensor with the given reading
+     * and capacity, as for {@link #getHazardLevel()}, without looking it up.
+     *
+     * @param currentReading current number of occupants
+     * @param capacity maximum capacity of the room
+     * @return hazard level, 0 to 100
+     */
+    static int computeHazardLevel(int currentReading, int capacity) {
+        if (currentReading >= capacity) {
             return 100;
         }
-        double occupancyRatio = ((double) currentReading) / this.capacity;
+        double occupancyRatio = ((double) currentReading) / capacity;
         double occupancyPct = 100 * occupancyRatio;
         return (int) Math.round(occupancyPct);
     }
@@ -93,11 +138,26 @@ public class OccupancySensor extends TimedSensor implements HazardSensor, Comfor
      */
     @Override
     public int getComfortLevel() {
-        if (getCurrentReading() >= this.capacity) {
+        int reading = getCurrentReading();
+        int level = LevelTable.lookup(this.comfortTable, reading);
+        return level >= 0 ? level : computeComfortLevel(reading, this.capacity);
+    }
+
+    /**
+     * Computes the comfort level of an occupancy sensor with the given
+     * reading and capacity, as for {@link #getComfortLevel()}, without
+     * looking it up.
+     *
+     * @param currentReading current number of occupants
+     * @param capacity maximum capacity of the room
+     * @return comfort level, 0 to 100
+     */
+    static int computeComfortLevel(int currentReading, int capacity) {
+        if (currentReading >= capacity) {
             return 0;
         }
         return Math.round((((float)
-                (this.capacity - getCurrentReading())) / ((float) this.capacity)) * 100);
+                (capacity - currentReading)) / ((float) capacity)) * 100);
     }
 
     /**
@@ -184,4 +244,19 @@ public class OccupancySensor extends TimedSensor implements HazardSensor, Comfor
         return occupancySensorEncode + super.encode() + ":" + this.getUpdateFrequency() + ":"
                 + this.capacity;
     }
+
+    /**
+     * Appends the machine-readable string representation of this sensor,
+     * exactly as returned by {@link #encode()}.
+     *
+     * @param out destination to append the encoded representation to
+     * @throws IOException if appending to the destination fails
+     */
+    @Override
+    public void encodeTo(Appendable out) throws IOException {
+        out.append("OccupancySensor:");
+        super.encodeTo(out);
+        out.append(':').append(Integer.toString(this.getUpdateFrequency()))
+                .append(':').append(Integer.toString(this.capacity));
+    }
 }
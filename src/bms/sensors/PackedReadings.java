@@ -0,0 +1,176 @@
+package bms.sensors;
+
+import java.util.Arrays;
+
+/**
+ * Immutable, bit-packed sequence of non-negative sensor readings.
+ * <p>
+ * Each reading is stored as its difference from the smallest reading, in
+ * just enough bits to hold the largest difference, so a day-long trace of
+ * readings between eg. 0 and 255 takes a quarter of the space of an
+ * {@code int[]}. Any reading can still be read in constant time.
+ * <p>
+ * Packed readings are compared by their contents, so that identical traces
+ * can be interned, see {@link ReadingPatternPool#intern(PackedReadings)}.
+ */
+final class PackedReadings {
+
+    /**
+     * Smallest number of readings worth packing.
+     */
+    static final int MIN_LENGTH = 64;
+
+    /**
+     * Largest number of bits per reading worth packing, ie. at which packing
+     * at least halves the size of the readings.
+     */
+    static final int MAX_BITS = 16;
+
+    /**
+     * Number of readings.
+     */
+    private final int length;
+
+    /**
+     * Smallest reading, which every stored difference is relative to.
+     */
+    private final int min;
+
+    /**
+     * Number of bits in which each difference is stored.
+     */
+    private final int bits;
+
+    /**
+     * Differences from the smallest reading, packed end to end.
+     */
+    private final long[] words;
+
+    /**
+     * Hash code of the readings.
+     */
+    private final int hash;
+
+    private PackedReadings(int length, int min, int bits, long[] words) {
+        this.length = length;
+        this.min = min;
+        this.bits = bits;
+        this.words = words;
+        this.hash = 31 * (31 * length + min) + Arrays.hashCode(words);
+    }
+
+    /**
+     * Packs the given readings, if they are long enough and close enough
+     * together for packing to at least halve their size.
+     *
+     * @param readings non-negative readings to pack
+     * @return packed readings, or null if they are not worth packing
+     */
+    static PackedReadings packIfSmaller(int[] readings) {
+        if (readings.length < MIN_LENGTH) {
+            return null;
+        }
+        int min = Integer.MAX_VALUE;
+        int max = 0;
+        for (int reading : readings) {
+            min = Math.min(min, reading);
+            max = Math.max(max, reading);
+        }
+        int bits = 32 - Integer.numberOfLeadingZeros(max - min);
+        if (bits > MAX_BITS) {
+            return null;
+        }
+        long[] words = new long[(int) (((long) readings.length * bits + 63) / 64)];
+        for (int i = 0; i < readings.length && bits > 0; i++) {
+            long difference = readings[i] - min;
+            long bit = (long) i * bits;
+            int word = (int) (bit >>> 6);
+            int offset = (int) (bit & 63);
+            words[word] |= difference << offset;
+            if (offset + bits > 64) {
+                words[word + 1] |= difference >>> (64 - offset);
+            }
+        }
+        return new PackedReadings(readings.length, min, bits, words);
+    }
+
+    /**
+     * Returns the number of readings.
+     *
+     * @return number of readings
+     */
+    int length() {
+        return length;
+    }
+
+    /**
+     * Returns the reading at the given index.
+     *
+     * @param index index of the reading, from zero
+     * @return reading at the index
+     */
+    int get(int index) {
+        if (bits == 0) {
+            return min;
+        }
+        long bit = (long) index * bits;
+        int word = (int) (bit >>> 6);
+        int offset = (int) (bit & 63);
+        long value = words[word] >>> offset;
+        if (offset + bits > 64) {
+            value |= words[word + 1] << (64 - offset);
+        }
+        return min + (int) (value & ((1L << bits) - 1));
+    }
+
+    /**
+     * Returns a new array of the readings.
+     *
+     * @return unpacked readings
+     */
+    int[] toArray() {
+        int[] readings = new int[length];
+        for (int i = 0; i < length; i++) {
+            readings[i] = get(i);
+        }
+        return readings;
+    }
+
+    /**
+     * Returns the number of bytes taken by the packed readings, not counting
+     * object headers.
+     *
+     * @return size of the packed readings
+     */
+    long getPackedBytes() {
+        return 8L * words.length;
+    }
+
+    /**
+     * Returns true if the given object is packed readings holding the same
+     * readings as these.
+     *
+     * @param obj other object to compare equality
+     * @return true if equal, false otherwise
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof PackedReadings)) {
+            return false;
+        }
+        PackedReadings other = (PackedReadings) obj;
+        // readings are always packed the same way, so equal readings have
+        // equal fields
+        return hash == other.hash && length == other.length
+                && min == other.min && bits == other.bits
+                && Arrays.equals(words, other.words);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
@@ -0,0 +1,214 @@
+package bms.sensors;
+
+import bms.util.TimedItem;
+import bms.util.TimedItemManager;
+
+/**
+ * History of the readings of a single timed sensor.
+ * <p>
+ * The history records the sensor's reading every minute. It keeps the most
+ * recent readings in a bounded ring with one bucket per minute, and rolls
+ * every reading up into a second ring with one bucket per hour, holding the
+ * minimum, maximum, sum and number of readings in that hour. Both rings are
+ * updated as each minute is recorded, so a query only visits the buckets in
+ * its window, see {@link #getStatistics(int)}.
+ * <p>
+ * Like sensors, a history is registered weakly with the
+ * {@link TimedItemManager} when it is created, and must then be moved onto
+ * the clock which schedules its sensor, eg. by the room which owns both.
+ */
+public class ReadingHistory implements TimedItem {
+
+    /**
+     * Number of minutes in each hourly bucket.
+     */
+    private static final int MINUTES_PER_HOUR = 60;
+
+    /**
+     * Sensor whose readings are recorded.
+     */
+    private final TimedSensor sensor;
+
+    /**
+     * Most recent readings, indexed by minute modulo the ring's length.
+     */
+    private final int[] minuteReadings;
+
+    /**
+     * Smallest reading in each hour, indexed by hour modulo the ring's length.
+     */
+    private final int[] hourMin;
+
+    /**
+     * Largest reading in each hour.
+     */
+    private final int[] hourMax;
+
+    /**
+     * Sum of the readings in each hour.
+     */
+    private final long[] hourSum;
+
+    /**
+     * Number of readings recorded in each hour.
+     */
+    private final int[] hourCount;
+
+    /**
+     * Number of minutes since the history was created, including minutes
+     * skipped over without being recorded.
+     */
+    private long minutes = 0;
+
+    /**
+     * Number of consecutive minutes which have been recorded, up to the most
+     * recent. Minutes skipped over during a long jump are not recorded.
+     */
+    private long recorded = 0;
+
+    /**
+     * Creates a new, empty history of the given sensor's readings, keeping
+     * the given number of minutes of readings and of hours of rollups.
+     *
+     * @param sensor sensor whose readings to record
+     * @param minuteCapacity number of most recent minutes of readings to keep
+     * @param hourCapacity number of most recent hours of rollups to keep
+     * @throws IllegalArgumentException if either capacity is less than one
+     */
+    public ReadingHistory(TimedSensor sensor, int minuteCapacity, int hourCapacity) {
+        if (minuteCapacity < 1 || hourCapacity < 1) {
+            throw new IllegalArgumentException(
+                    "History must keep at least one minute and one hour");
+        }
+        this.sensor = sensor;
+        this.minuteReadings = new int[minuteCapacity];
+        this.hourMin = new int[hourCapacity];
+        this.hourMax = new int[hourCapacity];
+        this.hourSum = new long[hourCapacity];
+        this.hourCount = new int[hourCapacity];
+        TimedItemManager.getInstance().registerTimedItemWeakly(this);
+    }
+
+    /**
+     * Returns the sensor whose readings are recorded.
+     *
+     * @return recorded sensor
+     */
+    public TimedSensor getSensor() {
+        return sensor;
+    }
+
+    /**
+     * Records the sensor's current reading.
+     */
+    @Override
+    public synchronized void elapseOneMinute() {
+        record(sensor.getCurrentReading());
+    }
+
+    /**
+     * Records the sensor's reading for each of the given number of minutes
+     * which is still within the history's hourly rollups, and skips over any
+     * older minutes.
+     *
+     * @param minutes number of minutes to elapse
+     * @throws IllegalArgumentException if minutes is negative
+     */
+    @Override
+    public synchronized void elapseMinutes(long minutes) {
+        if (minutes < 0) {
+            throw new IllegalArgumentException(
+                    "Number of minutes must not be negative");
+        }
+        long kept = Math.min(minutes, (long) hourSum.length * MINUTES_PER_HOUR);
+        if (kept < minutes) {
+            this.minutes += minutes - kept;
+            this.recorded = 0;
+            if (this.minutes % MINUTES_PER_HOUR != 0) {
+                // part of the first recorded hour was skipped
+                clearHour(this.minutes / MINUTES_PER_HOUR);
+            }
+        }
+        for (long ago = kept - 1; ago >= 0; ago--) {
+            record(sensor.getReadingMinutesAgo((int) ago));
+        }
+    }
+
+    /**
+     * Returns the minimum, maximum, mean and number of the readings recorded
+     * in the given number of most recent minutes.
+     * <p>
+     * Windows no longer than the number of minutes of readings kept are
+     * exact, and visit one bucket per minute. Longer windows are rounded up
+     * to whole hours, counting the current hour as one, and visit one bucket
+     * per hour. Minutes which have not been recorded, eg. before the history
+     * was created, are not counted.
+     *
+     * @param windowMinutes number of most recent minutes
+     * @return statistics of the readings in the window
+     * @throws IllegalArgumentException if the window is less than one minute
+     */
+    public synchronized ReadingStatistics getStatistics(int windowMinutes) {
+        if (windowMinutes < 1) {
+            throw new IllegalArgumentException(
+                    "Window must be at least one minute");
+        }
+        if (windowMinutes <= minuteReadings.length) {
+            long count = Math.min(windowMinutes, recorded);
+            if (count == 0) {
+                return ReadingStatistics.EMPTY;
+            }
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+            long sum = 0;
+            for (long minute = minutes - count; minute < minutes; minute++) {
+                int reading = minuteReadings[(int) (minute % minuteReadings.length)];
+                min = Math.min(min, reading);
+                max = Math.max(max, reading);
+                sum += reading;
+            }
+            return new ReadingStatistics(min, max, sum, count);
+        }
+
+        long currentHour = (minutes - 1) / MINUTES_PER_HOUR;
+        long hours = Math.min((windowMinutes + MINUTES_PER_HOUR - 1) / MINUTES_PER_HOUR,
+                hourSum.length);
+        ReadingStatistics statistics = ReadingStatistics.EMPTY;
+        for (long hour = currentHour; hour > currentHour - hours && hour >= 0; hour--) {
+            int slot = (int) (hour % hourSum.length);
+            if (hourCount[slot] > 0) {
+                statistics = statistics.combine(new ReadingStatistics(hourMin[slot],
+                        hourMax[slot], hourSum[slot], hourCount[slot]));
+            }
+        }
+        return statistics;
+    }
+
+    private void record(int reading) {
+        long minute = this.minutes;
+        if (minute % MINUTES_PER_HOUR == 0) {
+            clearHour(minute / MINUTES_PER_HOUR);
+        }
+        minuteReadings[(int) (minute % minuteReadings.length)] = reading;
+        int slot = (int) ((minute / MINUTES_PER_HOUR) % hourSum.length);
+        if (hourCount[slot] == 0) {
+            hourMin[slot] = reading;
+            hourMax[slot] = reading;
+        } else {
+            hourMin[slot] = Math.min(hourMin[slot], reading);
+            hourMax[slot] = Math.max(hourMax[slot], reading);
+        }
+        hourSum[slot] += reading;
+        hourCount[slot]++;
+        this.minutes++;
+        this.recorded++;
+    }
+
+    private void clearHour(long hour) {
+        int slot = (int) (hour % hourSum.length);
+        hourMin[slot] = 0;
+        hourMax[slot] = 0;
+        hourSum[slot] = 0;
+        hourCount[slot] = 0;
+    }
+}
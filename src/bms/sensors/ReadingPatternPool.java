@@ -0,0 +1,238 @@
+package bms.sensors;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Singleton pool of the reading patterns of timed sensors.
+ * <p>
+ * Many sensors in a large estate have exactly the same readings, eg. every
+ * temperature sensor in a building's offices. Each timed sensor's readings are
+ * interned with this pool when the sensor is created, so that sensors with
+ * identical readings share a single array rather than holding a copy each.
+ * Sensors never modify their readings, and only hand out copies of them, so
+ * the shared arrays are never changed. Readings which are packed, see
+ * {@link PackedReadings}, are interned the same way, so that sensors with
+ * identical day-long traces share one packed copy.
+ * <p>
+ * The pool refers to its arrays weakly, so patterns are dropped once no
+ * sensor uses them. All methods are thread safe.
+ */
+public class ReadingPatternPool {
+
+    /**
+     * Approximate number of bytes taken by the header of an array, on top of
+     * its elements.
+     */
+    private static final int ARRAY_HEADER_BYTES = 16;
+
+    /**
+     * Singleton instance.
+     */
+    private static final ReadingPatternPool instance = new ReadingPatternPool();
+
+    /**
+     * Canonical array of each pattern in the pool.
+     */
+    private final Map<Pattern, Pattern> patterns = new HashMap<>();
+
+    /**
+     * Queue to which patterns are added once their arrays have been garbage
+     * collected.
+     */
+    private final ReferenceQueue<int[]> collected = new ReferenceQueue<>();
+
+    /**
+     * Canonical instance of each pattern of packed readings in the pool.
+     */
+    private final Map<PackedReadings, WeakReference<PackedReadings>> packedPatterns =
+            new WeakHashMap<>();
+
+    /**
+     * Number of arrays which have been interned.
+     */
+    private long lookups = 0;
+
+    /**
+     * Number of arrays interned which matched a pattern already in the pool.
+     */
+    private long hits = 0;
+
+    /**
+     * Bytes which would have been taken by arrays replaced by a pattern
+     * already in the pool.
+     */
+    private long bytesSaved = 0;
+
+    /**
+     * Readings of a pattern, compared by their contents.
+     * <p>
+     * Patterns in the pool refer to their arrays weakly; the pattern used to
+     * look an array up refers to it strongly.
+     */
+    private static final class Pattern extends WeakReference<int[]> {
+        private final int hash;
+        private final int[] lookup;
+
+        private Pattern(int[] readings, ReferenceQueue<int[]> queue) {
+            super(readings, queue);
+            this.hash = Arrays.hashCode(readings);
+            this.lookup = queue == null ? readings : null;
+        }
+
+        private int[] readings() {
+            return lookup != null ? lookup : get();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Pattern)) {
+                return false;
+            }
+            Pattern other = (Pattern) obj;
+            int[] readings = readings();
+            return hash == other.hash && readings != null
+                    && Arrays.equals(readings, other.readings());
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private ReadingPatternPool() {
+    }
+
+    /**
+     * Returns the singleton instance of the pool.
+     *
+     * @return singleton instance
+     */
+    public static ReadingPatternPool getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns the pool's array holding the same readings as the given array,
+     * adding a copy of the given array to the pool if there is none.
+     * <p>
+     * The returned array is shared, and must not be modified.
+     *
+     * @param readings readings to intern
+     * @return canonical array of the given readings
+     */
+    public synchronized int[] intern(int[] readings) {
+        removeCollected();
+        lookups++;
+        Pattern pooled = patterns.get(new Pattern(readings, null));
+        int[] canonical = pooled == null ? null : pooled.get();
+        if (canonical != null) {
+            hits++;
+            bytesSaved += ARRAY_HEADER_BYTES + 4L * readings.length;
+            return canonical;
+        }
+        canonical = Arrays.copyOf(readings, readings.length);
+        Pattern pattern = new Pattern(canonical, collected);
+        patterns.put(pattern, pattern);
+        return canonical;
+    }
+
+    /**
+     * Returns the pool's packed readings holding the same readings as the
+     * given packed readings, adding the given packed readings to the pool if
+     * there are none.
+     *
+     * @param readings packed readings to intern
+     * @return canonical packed readings
+     */
+    synchronized PackedReadings intern(PackedReadings readings) {
+        lookups++;
+        WeakReference<PackedReadings> pooled = packedPatterns.get(readings);
+        PackedReadings canonical = pooled == null ? null : pooled.get();
+        if (canonical != null) {
+            hits++;
+            bytesSaved += ARRAY_HEADER_BYTES + readings.getPackedBytes();
+            return canonical;
+        }
+        packedPatterns.put(readings, new WeakReference<>(readings));
+        return readings;
+    }
+
+    /**
+     * Returns the number of distinct patterns currently in the pool, packed
+     * or not.
+     *
+     * @return number of patterns
+     */
+    public synchronized int size() {
+        removeCollected();
+        return patterns.size() + packedPatterns.size();
+    }
+
+    /**
+     * Returns the number of arrays which have been interned.
+     *
+     * @return number of lookups
+     */
+    public synchronized long getLookups() {
+        return lookups;
+    }
+
+    /**
+     * Returns the number of arrays interned which matched a pattern already
+     * in the pool.
+     *
+     * @return number of hits
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the proportion of arrays interned which matched a pattern
+     * already in the pool, or zero if none have been interned.
+     *
+     * @return hit rate, 0 to 1
+     */
+    public synchronized double getHitRate() {
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * Returns an estimate of the number of bytes saved by sharing arrays,
+     * ie. the size of the arrays which matched a pattern already in the pool.
+     *
+     * @return bytes saved
+     */
+    public synchronized long getBytesSaved() {
+        return bytesSaved;
+    }
+
+    /**
+     * Resets the pool's statistics to zero, eg. before loading a file to
+     * find how much sharing saves for that file alone.
+     */
+    public synchronized void resetStatistics() {
+        lookups = 0;
+        hits = 0;
+        bytesSaved = 0;
+    }
+
+    /**
+     * Removes patterns whose arrays have been garbage collected.
+     */
+    private void removeCollected() {
+        Object pattern;
+        while ((pattern = collected.poll()) != null) {
+            patterns.remove(pattern);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package bms.sensors;
+
+/**
+ * Minimum, maximum, mean and number of a set of sensor readings, eg. over a
+ * window of time, see {@link ReadingHistory#getStatistics(int)}.
+ */
+public class ReadingStatistics {
+
+    /**
+     * Statistics of no readings.
+     */
+    public static final ReadingStatistics EMPTY =
+            new ReadingStatistics(0, 0, 0, 0);
+
+    /**
+     * Smallest reading, or zero if there are none.
+     */
+    private final int min;
+
+    /**
+     * Largest reading, or zero if there are none.
+     */
+    private final int max;
+
+    /**
+     * Sum of the readings.
+     */
+    private final long sum;
+
+    /**
+     * Number of readings.
+     */
+    private final long count;
+
+    /**
+     * Creates statistics of readings with the given minimum, maximum, sum and
+     * number.
+     *
+     * @param min smallest reading
+     * @param max largest reading
+     * @param sum sum of the readings
+     * @param count number of readings
+     */
+    public ReadingStatistics(int min, int max, long sum, long count) {
+        this.min = min;
+        this.max = max;
+        this.sum = sum;
+        this.count = count;
+    }
+
+    /**
+     * Returns the smallest reading, or zero if there are none.
+     *
+     * @return minimum reading
+     */
+    public int getMin() {
+        return min;
+    }
+
+    /**
+     * Returns the largest reading, or zero if there are none.
+     *
+     * @return maximum reading
+     */
+    public int getMax() {
+        return max;
+    }
+
+    /**
+     * Returns the sum of the readings.
+     *
+     * @return sum of readings
+     */
+    public long getSum() {
+        return sum;
+    }
+
+    /**
+     * Returns the number of readings.
+     *
+     * @return number of readings
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the mean of the readings, or zero if there are none.
+     *
+     * @return mean reading
+     */
+    public double getMean() {
+        return count == 0 ? 0 : (double) sum / count;
+    }
+
+    /**
+     * Returns the statistics of the readings in both this and the given set
+     * of readings, eg. to combine the statistics of several rooms.
+     *
+     * @param other statistics of other readings
+     * @return combined statistics
+     */
+    public ReadingStatistics combine(ReadingStatistics other) {
+        if (other.count == 0) {
+            return this;
+        }
+        if (this.count == 0) {
+            return other;
+        }
+        return new ReadingStatistics(Math.min(min, other.min),
+                Math.max(max, other.max), sum + other.sum, count + other.count);
+    }
+
+    /**
+     * Returns the human-readable string representation of these statistics.
+     * <p>
+     * The format of the string to return is
+     * "ReadingStatistics: min='min', max='max', mean='mean', count='count'"
+     * without the single quotes, with the mean to two decimal places.
+     *
+     * @return string representation of these statistics
+     */
+    @Override
+    public String toString() {
+        return String.format("ReadingStatistics: min=%d, max=%d, mean=%.2f, count=%d",
+                min, max, getMean(), count);
+    }
+}
@@ -0,0 +1,171 @@
+package bms.sensors;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Feed of live readings for a timed sensor, see
+ * {@link TimedSensor#setFeed(SensorFeed)}.
+ * <p>
+ * Readings are offered by a single producer thread, eg. one reading from a
+ * device or a {@link SensorFeedReplay}, into a lock-free ring buffer. They
+ * are published by the thread which ticks the sensor's clock, at the start of
+ * each minute, when the latest reading offered becomes the sensor's current
+ * reading. Publishing never blocks the producer, and reading the published
+ * value never blocks either.
+ * <p>
+ * If readings are offered faster than they are published, the ring buffer
+ * fills up, and each further reading overwrites the oldest one still
+ * pending, so the latest reading offered is always the one published.
+ */
+public class SensorFeed {
+
+    /**
+     * Readings offered but not yet published, indexed by sequence number
+     * modulo the capacity.
+     */
+    private final int[] buffer;
+
+    /**
+     * Capacity of the buffer less one, for taking sequence numbers modulo
+     * the capacity.
+     */
+    private final int mask;
+
+    /**
+     * Sequence number of the next reading to be offered. Written only by the
+     * producer.
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Sequence number of the next reading to be published. Advanced by the
+     * consumer as it publishes, and by the producer when it discards the
+     * oldest pending reading, so only ever updated by compare-and-set.
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * Number of pending readings discarded to make room for newer ones
+     * because the buffer was full. Written only by the producer.
+     */
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * Latest reading published.
+     */
+    private volatile int published;
+
+    /**
+     * Creates a new feed whose ring buffer holds at least the given number of
+     * readings, and whose published reading is initially the given one.
+     *
+     * @param capacity minimum number of readings held between publications
+     * @param initialReading reading published until the first is offered
+     * @throws IllegalArgumentException if capacity is less than one or more
+     * than 2^30, or the initial reading is negative
+     */
+    public SensorFeed(int capacity, int initialReading) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException(
+                    "Capacity must be between 1 and 2^30");
+        }
+        if (initialReading < 0) {
+            throw new IllegalArgumentException("Readings must be non-negative");
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.buffer = new int[size];
+        this.mask = size - 1;
+        this.published = initialReading;
+    }
+
+    /**
+     * Offers a reading to the feed. Must only be called by the feed's single
+     * producer thread.
+     * <p>
+     * If the buffer is full, the oldest pending reading is discarded to make
+     * room, so the reading offered is always added.
+     *
+     * @param reading reading to offer
+     * @return true if the reading was added without discarding another;
+     * false if the oldest pending reading was dropped because the buffer is
+     * full
+     * @throws IllegalArgumentException if the reading is negative
+     */
+    public boolean offer(int reading) {
+        if (reading < 0) {
+            throw new IllegalArgumentException("Readings must be non-negative");
+        }
+        long sequence = tail.get();
+        boolean added = true;
+        long start;
+        while (sequence - (start = head.get()) > mask) {
+            // fails only if the consumer has just freed the slot
+            if (head.compareAndSet(start, start + 1)) {
+                dropped.lazySet(dropped.get() + 1);
+                added = false;
+                break;
+            }
+        }
+        buffer[(int) sequence & mask] = reading;
+        // publishes the write to the buffer along with the new tail
+        tail.lazySet(sequence + 1);
+        return added;
+    }
+
+    /**
+     * Takes every reading offered since the last publication, and publishes
+     * the latest of them. Called by the thread ticking the sensor, so must
+     * not be called by more than one thread at once.
+     *
+     * @return number of readings taken
+     */
+    int publish() {
+        while (true) {
+            long start = head.get();
+            long end = tail.get();
+            if (end == start) {
+                return 0;
+            }
+            int reading = buffer[(int) (end - 1) & mask];
+            // frees the slots for the producer only after they have been
+            // read; fails if the producer has since discarded the oldest
+            // reading, which may also have overwritten the one read
+            if (head.compareAndSet(start, end)) {
+                this.published = reading;
+                return (int) (end - start);
+            }
+        }
+    }
+
+    /**
+     * Returns the latest reading published.
+     *
+     * @return published reading
+     */
+    public int getPublishedReading() {
+        return published;
+    }
+
+    /**
+     * Returns the number of readings offered which have not yet been
+     * published.
+     *
+     * @return number of pending readings
+     */
+    public int getPending() {
+        return (int) (tail.get() - head.get());
+    }
+
+    /**
+     * Returns the number of pending readings which have been dropped to make
+     * room for newer ones because the buffer was full.
+     *
+     * @return number of dropped readings
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+}
@@ -0,0 +1,120 @@
+package bms.sensors;
+
+import bms.exceptions.FileFormatException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stand-in for a live device feed, which replays readings recorded in a file
+ * into a list of {@link SensorFeed}s.
+ * <p>
+ * Each line of the file holds the index of a feed in the list and a reading
+ * for it, separated by a colon, eg. "12:450". Readings are offered to their
+ * feeds as fast as possible, from the thread which runs the replay, which is
+ * then the single producer for every feed in the list.
+ */
+public class SensorFeedReplay implements Runnable {
+
+    /**
+     * Feeds to replay readings into, by index.
+     */
+    private final List<SensorFeed> feeds;
+
+    /**
+     * Feed index of each recorded reading.
+     */
+    private final int[] indices;
+
+    /**
+     * Recorded readings.
+     */
+    private final int[] readings;
+
+    /**
+     * Number of times to replay the recorded readings.
+     */
+    private final int repeats;
+
+    /**
+     * Number of readings offered so far.
+     */
+    private volatile long offered = 0;
+
+    /**
+     * Creates a new replay of the readings recorded in the given file.
+     *
+     * @param file file of recorded readings
+     * @param feeds feeds to replay readings into, by index
+     * @param repeats number of times to replay the recorded readings
+     * @throws IOException if the file cannot be read
+     * @throws FileFormatException if a line is not a feed index and a
+     * non-negative reading, or the index is not in the list of feeds
+     */
+    public SensorFeedReplay(Path file, List<SensorFeed> feeds, int repeats)
+            throws IOException, FileFormatException {
+        this.feeds = new ArrayList<>(feeds);
+        this.repeats = repeats;
+        List<int[]> lines = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file,
+                StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] pair = line.split(":");
+                if (pair.length != 2) {
+                    throw new FileFormatException();
+                }
+                try {
+                    int index = Integer.parseInt(pair[0]);
+                    int reading = Integer.parseInt(pair[1]);
+                    if (index < 0 || index >= feeds.size() || reading < 0) {
+                        throw new FileFormatException();
+                    }
+                    lines.add(new int[]{index, reading});
+                } catch (NumberFormatException e) {
+                    throw new FileFormatException();
+                }
+            }
+        }
+        this.indices = new int[lines.size()];
+        this.readings = new int[lines.size()];
+        for (int i = 0; i < lines.size(); i++) {
+            this.indices[i] = lines.get(i)[0];
+            this.readings[i] = lines.get(i)[1];
+        }
+    }
+
+    /**
+     * Offers every recorded reading to its feed, as many times as requested,
+     * stopping early if the thread is interrupted.
+     */
+    @Override
+    public void run() {
+        long count = 0;
+        for (int repeat = 0; repeat < repeats; repeat++) {
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            for (int i = 0; i < indices.length; i++) {
+                feeds.get(indices[i]).offer(readings[i]);
+            }
+            count += indices.length;
+            this.offered = count;
+        }
+    }
+
+    /**
+     * Returns the number of readings offered so far, including any which
+     * full feeds dropped to make room for newer ones.
+     *
+     * @return number of readings offered
+     */
+    public long getOffered() {
+        return offered;
+    }
+}
@@ -0,0 +1,16 @@
+package bms.sensors;
+
+/**
+ * Observer of changes to a timed sensor which change how its readings are
+ * produced, rather than its readings themselves, see
+ * {@link TimedSensor#addObserver(SensorObserver)}.
+ */
+public interface SensorObserver {
+    /**
+     * Called after the given sensor's live feed has been attached or
+     * removed.
+     *
+     * @param sensor sensor which changed
+     */
+    void feedChanged(TimedSensor sensor);
+}
@@ -1,11 +1,36 @@
 package bms.sensors;
 
+import java.io.IOException;
+
 /**
  * A sensor that measures ambient temperature in a room.
  * @ass1
  */
 public class TemperatureSensor extends TimedSensor implements HazardSensor, ComfortSensor {
 
+    /**
+     * Lowest and highest readings in the tables of levels; every reading
+     * outside them has a comfort level of 0, and a hazard level of 0 below
+     * and 100 above.
+     */
+    private static final int TABLE_MIN_DEGREES = -50;
+    private static final int TABLE_MAX_DEGREES = 100;
+
+    /**
+     * Hazard level of each reading in the table's range, so that the
+     * thresholds are not compared on every call.
+     */
+    private static final LevelTable HAZARD_TABLE = LevelTable.of(
+            TABLE_MIN_DEGREES, TABLE_MAX_DEGREES,
+            TemperatureSensor::computeHazardLevel);
+
+    /**
+     * Comfort level of each reading in the table's range.
+     */
+    private static final LevelTable COMFORT_TABLE = LevelTable.of(
+            TABLE_MIN_DEGREES, TABLE_MAX_DEGREES,
+            TemperatureSensor::computeComfortLevel);
+
     /**
      * Creates a new temperature sensor with the given sensor readings and
      * update frequency.
@@ -35,7 +60,30 @@ public class TemperatureSensor extends TimedSensor implements HazardSensor, Comf
      */
     @Override
     public int getHazardLevel() {
-        if (this.getCurrentReading() >= 68) {
+        return hazardLevel(this.getCurrentReading());
+    }
+
+    /**
+     * Returns the hazard level of a temperature sensor with the given
+     * reading, as for {@link #getHazardLevel()}.
+     *
+     * @param reading current temperature reading
+     * @return hazard level, 0 or 100
+     */
+    static int hazardLevel(int reading) {
+        int level = LevelTable.lookup(HAZARD_TABLE, reading);
+        return level >= 0 ? level : computeHazardLevel(reading);
+    }
+
+    /**
+     * Computes the hazard level of the given reading from its threshold,
+     * without looking it up.
+     *
+     * @param reading current temperature reading
+     * @return hazard level, 0 or 100
+     */
+    static int computeHazardLevel(int reading) {
+        if (reading >= 68) {
             return 100;
         }
         return 0;
@@ -59,16 +107,39 @@ public class TemperatureSensor extends TimedSensor implements HazardSensor, Comf
      */
     @Override
     public int getComfortLevel() {
-        if (getCurrentReading() >= 20 && getCurrentReading() <= 26) {
+        return comfortLevel(getCurrentReading());
+    }
+
+    /**
+     * Returns the comfort level of a temperature sensor with the given
+     * reading, as for {@link #getComfortLevel()}.
+     *
+     * @param currentReading current temperature reading
+     * @return comfort level, 0 to 100
+     */
+    static int comfortLevel(int currentReading) {
+        int level = LevelTable.lookup(COMFORT_TABLE, currentReading);
+        return level >= 0 ? level : computeComfortLevel(currentReading);
+    }
+
+    /**
+     * Computes the comfort level of the given reading from its distance to
+     * the comfortable range, without looking it up.
+     *
+     * @param currentReading current temperature reading
+     * @return comfort level, 0 to 100
+     */
+    static int computeComfortLevel(int currentReading) {
+        if (currentReading >= 20 && currentReading <= 26) {
             return 100;
         }
-        if (getCurrentReading() <= 15 || getCurrentReading() >= 31) {
+        if (currentReading <= 15 || currentReading >= 31) {
             return 0;
         }
-        if (getCurrentReading() < 20) {
-            return 100 - 20 * (20 - getCurrentReading());
+        if (currentReading < 20) {
+            return 100 - 20 * (20 - currentReading);
         } else {
-            return 100 - 20 * (getCurrentReading() - 26);
+            return 100 - 20 * (currentReading - 26);
         }
     }
 
@@ -117,4 +188,16 @@ public class TemperatureSensor extends TimedSensor implements HazardSensor, Comf
         return temperatureSensorEncode + super.encode();
     }
 
+    /**
+     * Appends the machine-readable string representation of this sensor,
+     * exactly as returned by {@link #encode()}.
+     *
+     * @param out destination to append the encoded representation to
+     * @throws IOException if appending to the destination fails
+     */
+    @Override
+    public void encodeTo(Appendable out) throws IOException {
+        out.append("TemperatureSensor:");
+        super.encodeTo(out);
+    }
 }
@@ -1,32 +1,67 @@
 package bms.sensors;
 
 import bms.util.Encodable;
+import bms.util.ScheduledTimedItem;
+import bms.util.SimulationClock;
 import bms.util.TimedItem;
 import bms.util.TimedItemManager;
 
+import java.io.IOException;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * An abstract class to represent a sensor that iterates through observed values
  * on a timer.
  */
-public abstract class TimedSensor implements TimedItem, Sensor, Encodable {
+public abstract class TimedSensor implements ScheduledTimedItem, Sensor, Encodable {
 
     /**
      * Data array representing the readings observed by the sensor.
      * <p>
-     * Readings taken one minute apart.
+     * Readings taken one minute apart. Shared with other sensors with the
+     * same readings, see {@link ReadingPatternPool}, so never modified.
+     * Null if the readings are packed.
      */
     private int[] sensorReadings;
 
     /**
-     * The current sensor reading observed by the sensor.
+     * Long sequences of readings which are close together, eg. day-long
+     * traces, packed into fewer bits per reading; null if not packed. Shared
+     * with other sensors with the same readings, like the unpacked readings.
      */
-    private int currentReading;
+    private PackedReadings packedReadings;
+
+    /**
+     * The number of readings the sensor iterates through.
+     */
+    private int numberOfReadings;
+
+    /**
+     * Feed of live readings which replace the sensor's own readings; null if
+     * the sensor replays its own readings.
+     */
+    private volatile SensorFeed feed;
+
+    /**
+     * Number of times a live feed has been attached to or removed from the
+     * sensor.
+     */
+    private volatile int feedVersion;
+
+    /**
+     * Observers notified when a live feed is attached or removed.
+     */
+    private final List<SensorObserver> observers = new CopyOnWriteArrayList<>();
 
     /**
      * The amount of time in minutes that the sensor has been running
-     * (according to the system, not real life).
+     * (according to the system, not real life), not counting minutes elapsed
+     * by the scheduler since {@link #syncedAt}.
+     * <p>
+     * The current sensor reading is derived from the time elapsed whenever
+     * it is read, so nothing else changes as time passes.
      */
     private int timeElapsed;
 
@@ -36,6 +71,24 @@ public abstract class TimedSensor implements TimedItem, Sensor, Encodable {
      */
     private int updateFrequency;
 
+    /**
+     * Clock which is scheduling this sensor, or null if it is elapsed
+     * directly.
+     */
+    private SimulationClock scheduler;
+
+    /**
+     * Minutes elapsed by the scheduler when it started scheduling this
+     * sensor.
+     */
+    private long syncedAt;
+
+    /**
+     * Handle with which the scheduler finds this item in its schedule; only
+     * accessed while holding the scheduler's lock.
+     */
+    private Object schedulerHandle;
+
     /**
      * Creates a new timed sensor, using the provided list of sensor readings.
      * These represent "raw" data values, and have different meanings depending
@@ -51,7 +104,14 @@ public abstract class TimedSensor implements TimedItem, Sensor, Encodable {
      * constructor must return the first element of the given array.
      * <p>
      * The sensor should be registered as a timed item, see
-     * {@link TimedItemManager#registerTimedItem(TimedItem)}.
+     * {@link TimedItemManager#registerTimedItem(TimedItem)}. It is registered
+     * weakly, see {@link TimedItemManager#registerTimedItemWeakly(TimedItem)},
+     * so that it stops being ticked once it is discarded.
+     * <p>
+     * The readings are interned with the {@link ReadingPatternPool}, so that
+     * sensors with the same readings share them, or packed into fewer bits if
+     * there are many of them close together. Either way, later changes to
+     * the given array do not affect the sensor.
      *
      * @param sensorReadings a non-empty array of sensor readings
      * @param updateFrequency indicates how often the sensor readings updates,
@@ -77,33 +137,150 @@ public abstract class TimedSensor implements TimedItem, Sensor, Encodable {
                         "All sensor readings must be non-negative");
             }
         }
-        this.sensorReadings = sensorReadings;
-        this.currentReading = sensorReadings[0];
+        PackedReadings packed = PackedReadings.packIfSmaller(sensorReadings);
+        if (packed != null) {
+            this.packedReadings = ReadingPatternPool.getInstance().intern(packed);
+        } else {
+            this.sensorReadings = ReadingPatternPool.getInstance().intern(sensorReadings);
+        }
+        this.numberOfReadings = sensorReadings.length;
         this.updateFrequency = updateFrequency;
         this.timeElapsed = 0;
-        TimedItemManager.getInstance().registerTimedItem(this);
+        TimedItemManager.getInstance().registerTimedItemWeakly(this);
     }
 
     /**
      * Returns the current sensor reading observed by the sensor.
+     * <p>
+     * If the sensor has a live feed, this is the reading last published by
+     * the feed.
      *
      * @return the current sensor reading
      * @ass1
      */
     public int getCurrentReading() {
-        return this.currentReading;
+        SensorFeed liveFeed = this.feed;
+        if (liveFeed != null) {
+            return liveFeed.getPublishedReading();
+        }
+        return getReadingAt(getTimeElapsed());
+    }
+
+    /**
+     * Returns the reading this sensor had the given number of minutes ago,
+     * or its current reading if it has a live feed, whose past readings are
+     * not kept.
+     *
+     * @param minutes number of minutes ago
+     * @return reading the given number of minutes ago, or the first reading
+     * if the sensor was not yet running then
+     */
+    int getReadingMinutesAgo(int minutes) {
+        SensorFeed liveFeed = this.feed;
+        if (liveFeed != null) {
+            return liveFeed.getPublishedReading();
+        }
+        int timeElapsed = getTimeElapsed();
+        return getReadingAt(minutes < timeElapsed ? timeElapsed - minutes : 0);
+    }
+
+    /**
+     * Returns the reading of this sensor's own readings at the given time
+     * elapsed.
+     */
+    private int getReadingAt(int timeElapsed) {
+        // calculate the time taken before wrapping around to the starting value
+        // again
+        int rotationDuration = this.numberOfReadings
+                * this.updateFrequency;
+
+        // calculate the time remaining in the current rotation
+        int timeRemainingInRotation = timeElapsed % rotationDuration;
+
+        // index is time remaining in the current rotation divided by the update
+        // frequency
+        int index = timeRemainingInRotation / this.updateFrequency;
+
+        return getReading(index);
+    }
+
+    /**
+     * Returns a copy of the readings that this sensor iterates through.
+     *
+     * @return new array of this sensor's readings
+     */
+    public int[] getSensorReadings() {
+        if (this.packedReadings != null) {
+            return this.packedReadings.toArray();
+        }
+        return Arrays.copyOf(this.sensorReadings, this.sensorReadings.length);
+    }
+
+    /**
+     * Returns this sensor's readings, which may be shared with other sensors
+     * and must not be modified.
+     *
+     * @return interned array of this sensor's readings, or a new array if
+     * they are packed
+     */
+    int[] getSharedReadings() {
+        if (this.packedReadings != null) {
+            return this.packedReadings.toArray();
+        }
+        return this.sensorReadings;
+    }
+
+    /**
+     * Returns the interned pattern of this sensor's readings: its packed
+     * readings if they are packed, or its shared array otherwise. Sensors
+     * with the same readings return the same instance.
+     *
+     * @return canonical packed readings or array of this sensor's readings
+     */
+    Object getReadingPattern() {
+        if (this.packedReadings != null) {
+            return this.packedReadings;
+        }
+        return this.sensorReadings;
+    }
+
+    /**
+     * Returns true if this sensor's readings are packed.
+     *
+     * @return whether the readings are packed
+     */
+    boolean hasPackedReadings() {
+        return this.packedReadings != null;
+    }
+
+    /**
+     * Returns the reading at the given index of this sensor's readings.
+     */
+    private int getReading(int index) {
+        if (this.packedReadings != null) {
+            return this.packedReadings.get(index);
+        }
+        return this.sensorReadings[index];
     }
 
     /**
      * Returns the number of minutes that have elapsed since the sensor was
      * instantiated. Should return 0 immediately after the constructor is
      * called.
+     * <p>
+     * While the sensor is scheduled by a clock, this includes the minutes the
+     * clock has elapsed since it started scheduling the sensor.
      *
      * @return the sensor's time elapsed in minutes
      * @ass1
      */
-    public int getTimeElapsed() {
-        return timeElapsed;
+    public synchronized int getTimeElapsed() {
+        if (this.scheduler == null) {
+            return this.timeElapsed;
+        }
+        // wraps around exactly as repeated increments would
+        return (int) (this.timeElapsed
+                + (this.scheduler.getMinutesElapsed() - this.syncedAt));
     }
 
     /**
@@ -129,22 +306,195 @@ public abstract class TimedSensor implements TimedItem, Sensor, Encodable {
      * again at the beginning of the array (in other words it wraps around).
      * @ass1
      * */
-    public void elapseOneMinute() {
+    public synchronized void elapseOneMinute() {
         this.timeElapsed++;
+        if (this.feed != null && this.timeElapsed % this.updateFrequency == 0) {
+            this.feed.publish();
+        }
+    }
 
-        // calculate the time taken before wrapping around to the starting value
-        // again
-        int rotationDuration = this.sensorReadings.length
-                * this.updateFrequency;
+    /**
+     * Increments the time elapsed (in minutes) by the given number of
+     * minutes, leaving the sensor with the reading it would have after
+     * calling {@link #elapseOneMinute()} that many times.
+     * <p>
+     * The reading depends only on the time elapsed, so this takes constant
+     * time.
+     *
+     * @param minutes number of minutes to elapse
+     * @throws IllegalArgumentException if minutes is negative
+     */
+    @Override
+    public synchronized void elapseMinutes(long minutes) {
+        if (minutes < 0) {
+            throw new IllegalArgumentException(
+                    "Number of minutes must not be negative");
+        }
+        if (minutes == 0) {
+            return;
+        }
+        int before = this.timeElapsed;
+        // wraps around exactly as repeated increments would
+        this.timeElapsed = (int) (this.timeElapsed + minutes);
+        if (this.feed != null && (minutes >= this.updateFrequency
+                || this.timeElapsed / this.updateFrequency
+                != before / this.updateFrequency)) {
+            this.feed.publish();
+        }
+    }
 
-        // calculate the time remaining in the current rotation
-        int timeRemainingInRotation =  this.timeElapsed % rotationDuration;
+    /**
+     * Returns {@link ScheduledTimedItem#DERIVED}, since the reading is
+     * derived from the scheduler's time whenever it is read, and so elapsing
+     * a scheduled sensor only costs the scheduler's own tick.
+     * <p>
+     * If the sensor has a live feed, returns the number of minutes until the
+     * feed's next reading is published instead, ie. until the time elapsed
+     * is next a multiple of the update frequency.
+     *
+     * @return {@link ScheduledTimedItem#DERIVED}, or minutes until the next
+     * live reading
+     */
+    @Override
+    public long getMinutesUntilNextChange() {
+        if (this.feed == null) {
+            return DERIVED;
+        }
+        return this.updateFrequency
+                - Math.floorMod(getTimeElapsed(), this.updateFrequency);
+    }
 
-        // index is time remaining in the current rotation divided by the update
-        // frequency
-        int index = timeRemainingInRotation / this.updateFrequency;
+    /**
+     * Returns the number of minutes until this sensor's current reading next
+     * changes, eg. to know how long a value derived from it stays valid.
+     * <p>
+     * Upcoming readings equal to the current reading are skipped over. If
+     * the sensor has a live feed, whose readings are not known in advance,
+     * returns the number of minutes until the feed next publishes a reading.
+     *
+     * @return minutes until the reading changes, or
+     * {@link Integer#MAX_VALUE} if all of the sensor's readings are the same
+     */
+    public synchronized int getMinutesUntilNextReading() {
+        int timeElapsed = getTimeElapsed();
+        int untilUpdate = this.updateFrequency
+                - Math.floorMod(timeElapsed, this.updateFrequency);
+        if (this.feed != null) {
+            return untilUpdate;
+        }
+        int index = (timeElapsed % (this.numberOfReadings * this.updateFrequency))
+                / this.updateFrequency;
+        int current = getReading(index);
+        for (int step = 1; step < this.numberOfReadings; step++) {
+            if (getReading((index + step) % this.numberOfReadings) != current) {
+                return untilUpdate + (step - 1) * this.updateFrequency;
+            }
+        }
+        return Integer.MAX_VALUE;
+    }
 
-        this.currentReading = this.sensorReadings[index];
+    /**
+     * Returns the feed of live readings which replace this sensor's own
+     * readings, or null if the sensor replays its own readings.
+     *
+     * @return live feed, or null
+     */
+    public SensorFeed getFeed() {
+        return this.feed;
+    }
+
+    /**
+     * Replaces this sensor's own readings with live readings from the given
+     * feed, or goes back to replaying its own readings if the feed is null.
+     * <p>
+     * The latest reading offered to the feed is published whenever the
+     * sensor's time elapsed reaches a multiple of its update frequency, ie.
+     * when its own readings would otherwise be updated, and is returned by
+     * {@link #getCurrentReading()} until the next is published. A feed must
+     * only be used by one sensor.
+     * <p>
+     * The sensor's own readings are still used for equality and encoding.
+     * Values derived from the sensor's readings, eg. a cached hazard level,
+     * are invalidated, see {@link #getFeedVersion()}, and the sensor's
+     * observers are notified.
+     *
+     * @param feed live feed, or null
+     */
+    public void setFeed(SensorFeed feed) {
+        SimulationClock clock;
+        synchronized (this) {
+            this.feed = feed;
+            this.feedVersion++;
+            clock = this.scheduler;
+        }
+        if (clock != null) {
+            // live sensors are woken to publish their readings
+            clock.reschedule(this);
+        }
+        for (SensorObserver observer : this.observers) {
+            observer.feedChanged(this);
+        }
+    }
+
+    /**
+     * Returns the number of times a live feed has been attached to or
+     * removed from this sensor, so that a value derived from its readings
+     * can tell whether it was derived before the latest change.
+     *
+     * @return feed version, which only ever increases
+     */
+    public int getFeedVersion() {
+        return this.feedVersion;
+    }
+
+    /**
+     * Adds an observer to be notified when a live feed is attached to or
+     * removed from this sensor.
+     * <p>
+     * Observers are called on the thread attaching the feed.
+     *
+     * @param observer observer to add
+     */
+    public void addObserver(SensorObserver observer) {
+        this.observers.add(observer);
+    }
+
+    /**
+     * Removes an observer added with {@link #addObserver(SensorObserver)}.
+     *
+     * @param observer observer to remove
+     */
+    public void removeObserver(SensorObserver observer) {
+        this.observers.remove(observer);
+    }
+
+    @Override
+    public synchronized SimulationClock getScheduler() {
+        return this.scheduler;
+    }
+
+    @Override
+    public synchronized void setScheduler(SimulationClock scheduler) {
+        this.timeElapsed = getTimeElapsed();
+        this.scheduler = scheduler;
+        this.syncedAt = scheduler == null ? 0 : scheduler.getMinutesElapsed();
+    }
+
+    @Override
+    public Object getSchedulerHandle() {
+        return this.schedulerHandle;
+    }
+
+    @Override
+    public void setSchedulerHandle(Object handle) {
+        this.schedulerHandle = handle;
+    }
+
+    @Override
+    public synchronized void wake() {
+        if (this.feed != null) {
+            this.feed.publish();
+        }
     }
 
     /**
@@ -166,7 +516,25 @@ public abstract class TimedSensor implements TimedItem, Sensor, Encodable {
         TimedSensor otherTimedSensor = (TimedSensor) obj;
         return this.getClass().equals(otherTimedSensor.getClass())
                 && this.getUpdateFrequency() == otherTimedSensor.getUpdateFrequency()
-                && Arrays.equals(this.sensorReadings, otherTimedSensor.sensorReadings);
+                && readingsEqual(otherTimedSensor);
+    }
+
+    /**
+     * Returns true if this sensor has the same readings as the given one.
+     */
+    private boolean readingsEqual(TimedSensor other) {
+        if (this.sensorReadings != null && other.sensorReadings != null) {
+            return Arrays.equals(this.sensorReadings, other.sensorReadings);
+        }
+        if (this.numberOfReadings != other.numberOfReadings) {
+            return false;
+        }
+        for (int i = 0; i < this.numberOfReadings; i++) {
+            if (getReading(i) != other.getReading(i)) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -199,7 +567,7 @@ public abstract class TimedSensor implements TimedItem, Sensor, Encodable {
     public String toString() {
         return String.format("TimedSensor: freq=%d, readings=%s",
                 this.updateFrequency,
-                String.join(",", Arrays.stream(this.sensorReadings)
+                String.join(",", Arrays.stream(getSharedReadings())
                         .mapToObj(String::valueOf)
                         .toArray(String[]::new)));
     }
@@ -218,10 +586,27 @@ public abstract class TimedSensor implements TimedItem, Sensor, Encodable {
     @Override
     public String encode() {
         StringBuilder readings = new StringBuilder();
-        for (int i:sensorReadings) {
-            readings.append(i);
+        for (int i = 0; i < numberOfReadings; i++) {
+            readings.append(getReading(i));
             readings.append(",");
         }
         return readings.substring(0, readings.length() - 1);
     }
+
+    /**
+     * Appends the comma-separated list of this sensor's readings, exactly as
+     * returned by {@link TimedSensor#encode()}.
+     *
+     * @param out destination to append the encoded representation to
+     * @throws IOException if appending to the destination fails
+     */
+    @Override
+    public void encodeTo(Appendable out) throws IOException {
+        for (int i = 0; i < numberOfReadings; i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            out.append(Integer.toString(getReading(i)));
+        }
+    }
 }
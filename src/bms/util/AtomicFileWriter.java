@@ -0,0 +1,143 @@
+package bms.util;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+
+/**
+ * Writes files atomically, so that a crash part way through writing leaves
+ * either the old file or the complete new file, never a partial one.
+ * <p>
+ * The contents are written to a temporary file in the same directory as the
+ * target, forced to disk, and then renamed over the target. Where the file
+ * system has POSIX permissions, the temporary file is given the existing
+ * target's permissions first, so that replacing a file keeps them.
+ */
+public final class AtomicFileWriter {
+
+    /**
+     * Produces the text of a file.
+     */
+    public interface Content {
+        /**
+         * Writes the text of the file to the given writer.
+         *
+         * @param writer buffered writer to the temporary file
+         * @throws IOException if writing fails
+         */
+        void writeTo(Writer writer) throws IOException;
+    }
+
+    /**
+     * Produces the bytes of a file.
+     */
+    public interface BinaryContent {
+        /**
+         * Writes the bytes of the file to the given stream.
+         *
+         * @param out stream to the temporary file, which must not be closed
+         * @throws IOException if writing fails
+         */
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    private AtomicFileWriter() {
+    }
+
+    /**
+     * Replaces the file at the given path with the text produced by the given
+     * content, using the platform's default charset.
+     * <p>
+     * If writing fails, the temporary file is deleted and any existing file
+     * at the target path is left unchanged.
+     *
+     * @param target path of the file to write
+     * @param content produces the text of the file
+     * @throws IOException if writing, syncing or renaming the file fails
+     */
+    public static void write(Path target, Content content) throws IOException {
+        writeBytes(target, out -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out));
+            content.writeTo(writer);
+            writer.flush();
+        });
+    }
+
+    /**
+     * Replaces the file at the given path with the bytes produced by the
+     * given content.
+     * <p>
+     * If writing fails, the temporary file is deleted and any existing file
+     * at the target path is left unchanged.
+     *
+     * @param target path of the file to write
+     * @param content produces the bytes of the file
+     * @throws IOException if writing, syncing or renaming the file fails
+     */
+    public static void writeBytes(Path target, BinaryContent content)
+            throws IOException {
+        Path absolute = target.toAbsolutePath();
+        Path directory = absolute.getParent();
+        Path temp = Files.createTempFile(directory,
+                "." + absolute.getFileName(), ".tmp");
+        boolean moved = false;
+        try {
+            copyPermissions(absolute, temp);
+            try (FileOutputStream out = new FileOutputStream(temp.toFile())) {
+                content.writeTo(out);
+                out.getFD().sync();
+            }
+            try {
+                Files.move(temp, absolute, StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING);
+            }
+            moved = true;
+            syncDirectory(directory);
+        } finally {
+            if (!moved) {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    /**
+     * Gives the temporary file the permissions of the file it will replace,
+     * rather than the owner-only permissions it was created with, where the
+     * file system has POSIX permissions and the target exists.
+     */
+    private static void copyPermissions(Path target, Path temp)
+            throws IOException {
+        PosixFileAttributeView targetView = Files.getFileAttributeView(target,
+                PosixFileAttributeView.class);
+        if (targetView == null || !Files.exists(target)) {
+            return;
+        }
+        Files.getFileAttributeView(temp, PosixFileAttributeView.class)
+                .setPermissions(targetView.readAttributes().permissions());
+    }
+
+    /**
+     * Forces the rename of the file in the given directory to disk, where the
+     * platform supports it.
+     */
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory,
+                StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // not supported on all platforms; the rename itself has completed
+        }
+    }
+}
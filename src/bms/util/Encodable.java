@@ -1,5 +1,7 @@
 package bms.util;
 
+import java.io.IOException;
+
 /**
  * A type that can be encoded to a machine-readable string representation, useful for saving objects to files.
  */
@@ -9,4 +11,20 @@ public interface Encodable {
      * @return encoded String representation
      */
     String encode();
+
+    /**
+     * Appends the String representation of the current state of this object
+     * to the given destination, exactly as returned by {@link #encode()}.
+     * <p>
+     * The default implementation appends the result of {@link #encode()}.
+     * Implementations should override this to write their representation
+     * directly, without building intermediate strings; subclasses which
+     * override {@code encode()} must then override this method as well.
+     *
+     * @param out destination to append the encoded representation to
+     * @throws IOException if appending to the destination fails
+     */
+    default void encodeTo(Appendable out) throws IOException {
+        out.append(encode());
+    }
 }
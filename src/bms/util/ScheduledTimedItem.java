@@ -0,0 +1,68 @@
+package bms.util;
+
+/**
+ * Timed item whose state only changes at predictable times, so that a
+ * {@link SimulationClock} can schedule it on a timing wheel and elapse it
+ * only when a change is due, rather than every minute.
+ * <p>
+ * While scheduled, the item's count of minutes elapsed still increases every
+ * minute, so the item must bring itself up to date with its scheduler's
+ * time, see {@link SimulationClock#getMinutesElapsed()}, whenever it is read
+ * or woken.
+ */
+public interface ScheduledTimedItem extends TimedItem {
+
+    /**
+     * Returned by {@link #getMinutesUntilNextChange()} by items whose whole
+     * state is derived from their scheduler's time whenever it is read, so
+     * that they never need to be woken.
+     */
+    long DERIVED = Long.MAX_VALUE;
+
+    /**
+     * Returns the number of minutes until elapsing this item next changes
+     * any of its state other than its count of minutes elapsed.
+     *
+     * @return minutes until the next change, at least one; or
+     * {@link #DERIVED} if the item never needs to be woken
+     */
+    long getMinutesUntilNextChange();
+
+    /**
+     * Returns the clock which is scheduling this item, or null if it is
+     * elapsed directly.
+     *
+     * @return this item's scheduler
+     */
+    SimulationClock getScheduler();
+
+    /**
+     * Brings this item up to date with its current scheduler, if any, and
+     * then makes it follow the given scheduler's time instead.
+     *
+     * @param scheduler clock scheduling this item from now on, or null
+     */
+    void setScheduler(SimulationClock scheduler);
+
+    /**
+     * Returns the handle last given to {@link #setSchedulerHandle(Object)}.
+     *
+     * @return the scheduler's handle of this item, or null
+     */
+    Object getSchedulerHandle();
+
+    /**
+     * Keeps the handle with which this item's scheduler finds the item in its
+     * schedule, eg. when it is rescheduled, so that it need not search for it.
+     * Only called by the scheduler, while holding its lock.
+     *
+     * @param handle the scheduler's handle of this item, or null
+     */
+    void setSchedulerHandle(Object handle);
+
+    /**
+     * Brings this item up to date with its scheduler's time. Called by the
+     * scheduler when a change is due.
+     */
+    void wake();
+}
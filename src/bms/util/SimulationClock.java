@@ -0,0 +1,562 @@
+package bms.util;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Predicate;
+
+/**
+ * Clock which ticks its own set of registered timed items.
+ * <p>
+ * Each {@link bms.building.Building} owns a clock, which the maintenance
+ * schedules and sensors in the building are registered with, so that
+ * buildings can be paused, run at different rates, or ticked independently.
+ * Building clocks are themselves registered with the global
+ * {@link TimedItemManager}, which is backed by a clock of its own.
+ * <p>
+ * A clock ticks its items in the order they were registered. Items can be
+ * registered weakly, in which case they are only ticked for as long as
+ * something else refers to them. Unregistering an item takes constant time;
+ * the registration is removed by the next tick.
+ * <p>
+ * A {@link ScheduledTimedItem} is not elapsed every minute. It is kept on a
+ * {@link TimingWheel} instead, and woken only at the minutes when its state
+ * is due to change, so that a tick takes time proportional to the number of
+ * items which change rather than the number registered. Between wakes, such
+ * items bring themselves up to date with the clock whenever they are read.
+ * Items which derive all of their state from the clock's time, such as timed
+ * sensors, are never woken at all, so elapsing them costs nothing beyond
+ * advancing the clock.
+ * <p>
+ * All methods are thread safe, and ticks of different clocks can run
+ * concurrently on different threads.
+ */
+public class SimulationClock implements TimedItem {
+
+    /**
+     * Largest number of timed items advanced by a single task when the
+     * clock is ticked in parallel.
+     */
+    private static final int SHARD_SIZE = 4096;
+
+    /**
+     * List of timed items currently registered with the clock, including
+     * some which are waiting to be removed.
+     */
+    private List<Registration> timedItems = new ArrayList<>();
+
+    /**
+     * Registrations of scheduled timed items, each due at the minute the
+     * item's state next changes.
+     */
+    private final TimingWheel<Registration> wheel = new TimingWheel<>();
+
+    /**
+     * Registrations of scheduled timed items which derive their state from
+     * the clock's time, and are never woken.
+     */
+    private final Set<Registration> derived = new HashSet<>();
+
+    /**
+     * Timed items which have been unregistered, but whose registrations have
+     * not yet been removed from {@link #timedItems}.
+     */
+    private Set<TimedItem> unregistered =
+            Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * Queue to which the registrations of weakly registered items are added
+     * once the items have been garbage collected.
+     */
+    private final ReferenceQueue<TimedItem> collected = new ReferenceQueue<>();
+
+    /**
+     * Whether ticks are currently ignored.
+     */
+    private boolean paused = false;
+
+    /**
+     * Number of minutes elapsed by this clock for each minute elapsed by
+     * whatever ticks it.
+     */
+    private int rate = 1;
+
+    /**
+     * Number of minutes this clock has elapsed. Read without locking by
+     * scheduled items, which may be read while the clock is being ticked.
+     */
+    private volatile long minutesElapsed = 0;
+
+    /**
+     * Registration of a single timed item, which refers to the item weakly,
+     * and also strongly unless it was registered weakly.
+     */
+    private static final class Registration extends WeakReference<TimedItem> {
+        /**
+         * Keeps a strongly registered item reachable; null if weak.
+         */
+        private final TimedItem strong;
+
+        /**
+         * Handle of a scheduled item's registration on the wheel, or null if
+         * it is not on the wheel.
+         */
+        private TimingWheel.Timer<Registration> timer;
+
+        private Registration(TimedItem timedItem, boolean weak,
+                             ReferenceQueue<TimedItem> queue) {
+            super(timedItem, queue);
+            this.strong = weak ? null : timedItem;
+        }
+    }
+
+    /**
+     * Creates a new running clock with no registered items, which elapses
+     * one minute per tick.
+     */
+    public SimulationClock() {
+    }
+
+    /**
+     * Registers a timed item with this clock, so that it is elapsed each time
+     * the clock is.
+     *
+     * @param timedItem a timed item to register with the clock
+     */
+    public synchronized void registerTimedItem(TimedItem timedItem) {
+        register(timedItem, false);
+    }
+
+    /**
+     * Registers a timed item with this clock without keeping it reachable.
+     * <p>
+     * The item is ticked in the same way as one registered with
+     * {@link #registerTimedItem(TimedItem)}, until nothing but the clock
+     * refers to it. It is then unregistered once it is garbage collected.
+     *
+     * @param timedItem a timed item to register with the clock
+     */
+    public synchronized void registerTimedItemWeakly(TimedItem timedItem) {
+        register(timedItem, true);
+    }
+
+    /**
+     * Unregisters a timed item, so that this clock no longer elapses it.
+     * <p>
+     * Does nothing if the item is not registered. A scheduled item is brought
+     * up to date with the clock, and stops following it, straight away.
+     *
+     * @param timedItem a timed item to unregister from the clock
+     */
+    public synchronized void unregisterTimedItem(TimedItem timedItem) {
+        unschedule(timedItem);
+        this.unregistered.add(timedItem);
+        removeUnregisteredIfMany();
+    }
+
+    /**
+     * Unregisters each of the given timed items, as for
+     * {@link #unregisterTimedItem(TimedItem)}.
+     *
+     * @param timedItems timed items to unregister from the clock
+     */
+    public synchronized void unregisterTimedItems(
+            Collection<? extends TimedItem> timedItems) {
+        for (TimedItem timedItem : timedItems) {
+            unschedule(timedItem);
+        }
+        this.unregistered.addAll(timedItems);
+        removeUnregisteredIfMany();
+    }
+
+    /**
+     * Returns the number of timed items currently registered with the clock,
+     * not counting weakly registered items which have been garbage collected.
+     * <p>
+     * This takes time proportional to the number of registered items.
+     *
+     * @return number of registered items
+     */
+    public synchronized int getNumberOfTimedItems() {
+        while (collected.poll() != null) {
+            // collected items are found by the scan below, even if the
+            // garbage collector has yet to queue them
+        }
+        removeUnregistered(true);
+        return this.timedItems.size() + this.wheel.size() + this.derived.size();
+    }
+
+    /**
+     * Wakes the given scheduled item at the minute its state is now due to
+     * change, rather than when it was previously due, eg. after it has been
+     * changed other than by elapsing it, or if it now needs to be woken after
+     * deriving its state from the clock, or the other way around.
+     * <p>
+     * Does nothing if this clock is not scheduling the item. The item's
+     * registration is found from its handle, see
+     * {@link ScheduledTimedItem#getSchedulerHandle()}, so this takes constant
+     * time.
+     *
+     * @param timedItem scheduled item whose next change has moved
+     */
+    public synchronized void reschedule(ScheduledTimedItem timedItem) {
+        if (timedItem.getScheduler() != this
+                || !(timedItem.getSchedulerHandle() instanceof Registration)) {
+            return;
+        }
+        Registration registration = (Registration) timedItem.getSchedulerHandle();
+        if (registration.get() != timedItem) {
+            return;
+        }
+        if (registration.timer != null) {
+            this.wheel.cancel(registration.timer);
+            registration.timer = null;
+        } else if (!this.derived.remove(registration)) {
+            return;
+        }
+        schedule(registration, timedItem);
+    }
+
+    /**
+     * Returns true if ticks of this clock are currently ignored.
+     *
+     * @return whether the clock is paused
+     */
+    public synchronized boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * Pauses or resumes this clock. While paused, elapsing time on the clock
+     * has no effect on it or its registered items.
+     *
+     * @param paused whether the clock should be paused
+     */
+    public synchronized void setPaused(boolean paused) {
+        this.paused = paused;
+    }
+
+    /**
+     * Returns the number of minutes this clock elapses for each minute
+     * elapsed on it.
+     *
+     * @return rate of the clock
+     */
+    public synchronized int getRate() {
+        return rate;
+    }
+
+    /**
+     * Sets the number of minutes this clock elapses for each minute elapsed
+     * on it, so that eg. a building can be simulated faster than the others.
+     * <p>
+     * Items are elapsed with {@link TimedItem#elapseMinutes(long)} when the
+     * rate is more than one, so they jump directly to their new states.
+     *
+     * @param rate minutes to elapse per minute
+     * @throws IllegalArgumentException if rate is less than one
+     */
+    public synchronized void setRate(int rate) {
+        if (rate < 1) {
+            throw new IllegalArgumentException("Rate must be at least 1");
+        }
+        this.rate = rate;
+    }
+
+    /**
+     * Returns the number of minutes this clock has elapsed, taking its rate
+     * into account and not counting time while it was paused.
+     *
+     * @return minutes elapsed
+     */
+    public long getMinutesElapsed() {
+        return minutesElapsed;
+    }
+
+    /**
+     * Elapses {@link #getRate()} minutes on each registered timed item,
+     * unless the clock is paused.
+     * <p>
+     * If called from a fork-join pool, eg. while a parent clock is ticked in
+     * parallel, large numbers of items are shared between the pool's threads.
+     */
+    @Override
+    public synchronized void elapseOneMinute() {
+        elapse(1, null);
+    }
+
+    /**
+     * Elapses the given number of minutes, multiplied by {@link #getRate()},
+     * on each registered timed item, unless the clock is paused.
+     *
+     * @param minutes number of minutes to elapse
+     * @throws IllegalArgumentException if minutes is negative
+     */
+    @Override
+    public synchronized void elapseMinutes(long minutes) {
+        checkMinutes(minutes);
+        elapse(minutes, null);
+    }
+
+    /**
+     * Elapses {@link #getRate()} minutes on each registered timed item,
+     * sharing the items between the threads of the given pool, unless the
+     * clock is paused.
+     * <p>
+     * The registered items are split into shards of consecutive items, at
+     * least four per thread of the pool, and each shard is advanced by one
+     * task. Registered clocks with many items share them between the pool's
+     * threads in turn. Every item is still elapsed exactly
+     * once, and this method returns only once all of them have been, so the
+     * next tick cannot start until this one has finished.
+     * <p>
+     * Timed items must not depend on each other's state while being elapsed.
+     *
+     * @param pool pool whose threads advance the shards
+     */
+    public synchronized void elapseOneMinute(ForkJoinPool pool) {
+        elapse(1, pool);
+    }
+
+    /**
+     * Elapses the given number of minutes, multiplied by {@link #getRate()},
+     * on each registered timed item, sharing the items between the threads of
+     * the given pool as for {@link #elapseOneMinute(ForkJoinPool)}.
+     *
+     * @param minutes number of minutes to elapse
+     * @param pool pool whose threads advance the shards
+     * @throws IllegalArgumentException if minutes is negative
+     */
+    public synchronized void elapseMinutes(long minutes, ForkJoinPool pool) {
+        checkMinutes(minutes);
+        elapse(minutes, pool);
+    }
+
+    /**
+     * Elapses the registered items, on the given pool if it is not null, or
+     * on the current pool if this thread belongs to one.
+     */
+    private void elapse(long minutes, ForkJoinPool pool) {
+        if (paused || minutes == 0) {
+            return;
+        }
+        minutes = Math.multiplyExact(minutes, (long) rate);
+        long before = minutesElapsed;
+        long now = Math.addExact(before, minutes);
+        minutesElapsed = now;
+        removeUnregistered(false);
+        this.wheel.advance(before, now, registration -> {
+            TimedItem timedItem = registration.get();
+            if (timedItem == null) {
+                return -1;
+            }
+            ScheduledTimedItem scheduled = (ScheduledTimedItem) timedItem;
+            if (scheduled.getScheduler() != this) {
+                // unregistered, and awaiting removal
+                return -1;
+            }
+            scheduled.wake();
+            long next = scheduled.getMinutesUntilNextChange();
+            if (next == ScheduledTimedItem.DERIVED) {
+                registration.timer = null;
+                this.derived.add(registration);
+                return -1;
+            }
+            return now + next;
+        });
+        int size = this.timedItems.size();
+        if (pool != null) {
+            pool.invoke(new Shard(this.timedItems, 0, size, minutes,
+                    shardSize(size, pool)));
+        } else if (size > SHARD_SIZE && ForkJoinTask.inForkJoinPool()) {
+            new Shard(this.timedItems, 0, size, minutes,
+                    shardSize(size, ForkJoinTask.getPool())).invoke();
+        } else {
+            elapse(this.timedItems, 0, size, minutes);
+        }
+    }
+
+    /**
+     * Returns the number of items per shard which gives each thread of the
+     * given pool about four shards, up to {@link #SHARD_SIZE}.
+     */
+    private static int shardSize(int size, ForkJoinPool pool) {
+        int shards = 4 * pool.getParallelism();
+        return Math.max(1, Math.min(SHARD_SIZE, (size + shards - 1) / shards));
+    }
+
+    /**
+     * Moves the given timed items from one clock to another, eg. when a room
+     * is added to a floor in a building with its own clock.
+     * <p>
+     * Items are registered with the global clock of the
+     * {@link TimedItemManager} weakly, so that discarded items are collected,
+     * and with any other clock normally.
+     *
+     * @param timedItems timed items to move
+     * @param from clock the items are currently registered with
+     * @param to clock to register the items with
+     */
+    public static void moveTimedItems(Collection<? extends TimedItem> timedItems,
+                                      SimulationClock from, SimulationClock to) {
+        if (from == to || timedItems.isEmpty()) {
+            return;
+        }
+        from.unregisterTimedItems(timedItems);
+        boolean weak = to == TimedItemManager.getInstance().getClock();
+        synchronized (to) {
+            for (TimedItem timedItem : timedItems) {
+                to.register(timedItem, weak);
+            }
+        }
+    }
+
+    private static void checkMinutes(long minutes) {
+        if (minutes < 0) {
+            throw new IllegalArgumentException(
+                    "Number of minutes must not be negative");
+        }
+    }
+
+    private void register(TimedItem timedItem, boolean weak) {
+        boolean anyCollected = false;
+        while (collected.poll() != null) {
+            anyCollected = true;
+        }
+        // an unregistered item's old registration must go before it is
+        // registered again
+        if (anyCollected || this.unregistered.contains(timedItem)) {
+            removeUnregistered(true);
+        }
+        Registration registration = new Registration(timedItem, weak, collected);
+        if (timedItem instanceof ScheduledTimedItem) {
+            ScheduledTimedItem scheduled = (ScheduledTimedItem) timedItem;
+            scheduled.setScheduler(this);
+            scheduled.setSchedulerHandle(registration);
+            schedule(registration, scheduled);
+        } else {
+            this.timedItems.add(registration);
+        }
+    }
+
+    /**
+     * Adds the given item's registration to the wheel at the minute the item
+     * next changes, or to the derived items if it never needs waking.
+     */
+    private void schedule(Registration registration, ScheduledTimedItem timedItem) {
+        long next = timedItem.getMinutesUntilNextChange();
+        if (next == ScheduledTimedItem.DERIVED) {
+            this.derived.add(registration);
+        } else {
+            registration.timer = this.wheel.schedule(registration,
+                    this.minutesElapsed + next);
+        }
+    }
+
+    /**
+     * Stops the given item following this clock, if it is scheduled by it.
+     */
+    private void unschedule(TimedItem timedItem) {
+        if (timedItem instanceof ScheduledTimedItem
+                && ((ScheduledTimedItem) timedItem).getScheduler() == this) {
+            ((ScheduledTimedItem) timedItem).setScheduler(null);
+            ((ScheduledTimedItem) timedItem).setSchedulerHandle(null);
+        }
+    }
+
+    /**
+     * Removes registrations of unregistered items once they are at least half
+     * of all registrations, so that unregistering takes amortised constant
+     * time.
+     */
+    private void removeUnregisteredIfMany() {
+        if (this.unregistered.size() > (this.timedItems.size()
+                + this.wheel.size() + this.derived.size()) / 2) {
+            removeUnregistered(true);
+        }
+    }
+
+    /**
+     * Removes the registrations of unregistered items, and of weakly
+     * registered items which have been garbage collected.
+     *
+     * @param always whether to scan the registrations even if no items are
+     *               known to have been unregistered or collected
+     */
+    private void removeUnregistered(boolean always) {
+        boolean anyCollected = false;
+        while (collected.poll() != null) {
+            anyCollected = true;
+        }
+        if (!always && !anyCollected && this.unregistered.isEmpty()) {
+            return;
+        }
+        Set<TimedItem> removed = this.unregistered;
+        Predicate<Registration> isRemoved = registration -> {
+            TimedItem registered = registration.get();
+            return registered == null || removed.contains(registered);
+        };
+        this.timedItems.removeIf(isRemoved);
+        this.wheel.removeIf(isRemoved);
+        this.derived.removeIf(isRemoved);
+        if (!removed.isEmpty()) {
+            this.unregistered = Collections.newSetFromMap(new IdentityHashMap<>());
+        }
+    }
+
+    private static void elapse(List<Registration> timedItems, int start, int end,
+                               long minutes) {
+        for (int i = start; i < end; i++) {
+            TimedItem timedItem = timedItems.get(i).get();
+            if (timedItem == null) {
+                continue;
+            }
+            if (minutes == 1) {
+                timedItem.elapseOneMinute();
+            } else {
+                timedItem.elapseMinutes(minutes);
+            }
+        }
+    }
+
+    /**
+     * Task which elapses a range of timed items, splitting itself in half
+     * until each range is at most the given shard size.
+     */
+    private static final class Shard extends RecursiveAction {
+        private final List<Registration> timedItems;
+        private final int start;
+        private final int end;
+        private final long minutes;
+        private final int shardSize;
+
+        private Shard(List<Registration> timedItems, int start, int end,
+                      long minutes, int shardSize) {
+            this.timedItems = timedItems;
+            this.start = start;
+            this.end = end;
+            this.minutes = minutes;
+            this.shardSize = shardSize;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= shardSize) {
+                elapse(timedItems, start, end, minutes);
+                return;
+            }
+            int middle = (start + end) >>> 1;
+            invokeAll(new Shard(timedItems, start, middle, minutes, shardSize),
+                    new Shard(timedItems, middle, end, minutes, shardSize));
+        }
+    }
+}
@@ -12,4 +12,25 @@ public interface TimedItem {
      * @ass1
      */
     void elapseOneMinute();
+
+    /**
+     * Moves this item forward by the given number of minutes, leaving it in
+     * the same state as calling {@link #elapseOneMinute()} that many times.
+     * <p>
+     * The default implementation calls {@code elapseOneMinute()} once for
+     * each minute. Items whose state after a number of minutes can be
+     * calculated directly should override this method to do so.
+     *
+     * @param minutes number of minutes to elapse
+     * @throws IllegalArgumentException if minutes is negative
+     */
+    default void elapseMinutes(long minutes) {
+        if (minutes < 0) {
+            throw new IllegalArgumentException(
+                    "Number of minutes must not be negative");
+        }
+        for (long i = 0; i < minutes; i++) {
+            elapseOneMinute();
+        }
+    }
 }
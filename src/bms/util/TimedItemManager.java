@@ -1,7 +1,7 @@
 package bms.util;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Singleton class which manages all the timed items.
@@ -14,6 +14,16 @@ import java.util.List;
  * {@link TimedItemManager#registerTimedItem(TimedItem)} ()} and passing itself,
  * the manager will ensure that its {@code elapseOneMinute()} method is called
  * at regular intervals.
+ * <p>
+ * Items registered with {@link #registerTimedItemWeakly(TimedItem)} are only
+ * ticked for as long as something else refers to them, so that discarded
+ * items can be garbage collected. Any item can be stopped straight away with
+ * {@link #unregisterTimedItem(TimedItem)}.
+ * <p>
+ * The manager is a facade for a global {@link SimulationClock}. Each building
+ * has a clock of its own, which is registered with the manager, and the
+ * sensors and maintenance schedules in a building are moved onto its clock
+ * when they are added to it.
  * @ass1
  */
 public class TimedItemManager implements TimedItem {
@@ -23,16 +33,16 @@ public class TimedItemManager implements TimedItem {
     private static TimedItemManager instance = new TimedItemManager();
 
     /**
-     * List of timed items currently registered with the manager.
+     * Global clock with which timed items are registered.
      */
-    private List<TimedItem> timedItems;
+    private final SimulationClock clock;
 
     /**
      * Creates a new timed item manager with an empty list of registered items.
      * @ass1
      */
     private TimedItemManager() {
-        this.timedItems = new ArrayList<>();
+        this.clock = new SimulationClock();
     }
 
     /**
@@ -45,17 +55,74 @@ public class TimedItemManager implements TimedItem {
         return instance;
     }
 
+    /**
+     * Returns the global clock which backs this manager.
+     *
+     * @return global clock
+     */
+    public SimulationClock getClock() {
+        return clock;
+    }
+
     /**
      * Registers a timed item with the manager.
      * <p>
      * After calling this method, the manager will call the given timed item's
      * {@code elapseOneMinute()} method at regular intervals.
+     * <p>
+     * Timed items may be registered from several threads at once, eg. while
+     * buildings are being loaded in parallel.
      *
      * @param timedItem a timed item to register with the manager
      * @ass1
      */
     public void registerTimedItem(TimedItem timedItem) {
-        this.timedItems.add(timedItem);
+        clock.registerTimedItem(timedItem);
+    }
+
+    /**
+     * Registers a timed item with the manager without keeping it reachable,
+     * see {@link SimulationClock#registerTimedItemWeakly(TimedItem)}.
+     *
+     * @param timedItem a timed item to register with the manager
+     */
+    public void registerTimedItemWeakly(TimedItem timedItem) {
+        clock.registerTimedItemWeakly(timedItem);
+    }
+
+    /**
+     * Unregisters a timed item, so that the manager no longer calls its
+     * {@code elapseOneMinute()} method.
+     * <p>
+     * Does nothing if the item is not registered.
+     *
+     * @param timedItem a timed item to unregister from the manager
+     */
+    public void unregisterTimedItem(TimedItem timedItem) {
+        clock.unregisterTimedItem(timedItem);
+    }
+
+    /**
+     * Unregisters each of the given timed items, as for
+     * {@link #unregisterTimedItem(TimedItem)}.
+     *
+     * @param timedItems timed items to unregister from the manager
+     */
+    public void unregisterTimedItems(Collection<? extends TimedItem> timedItems) {
+        clock.unregisterTimedItems(timedItems);
+    }
+
+    /**
+     * Returns the number of timed items currently registered with the
+     * manager, not counting weakly registered items which have been garbage
+     * collected. Each building's clock counts as a single item.
+     * <p>
+     * This takes time proportional to the number of registered items.
+     *
+     * @return number of registered items
+     */
+    public int getNumberOfTimedItems() {
+        return clock.getNumberOfTimedItems();
     }
 
     /**
@@ -64,8 +131,46 @@ public class TimedItemManager implements TimedItem {
      */
     @Override
     public void elapseOneMinute() {
-        for (TimedItem timedItem : this.timedItems) {
-            timedItem.elapseOneMinute();
-        }
+        clock.elapseOneMinute();
+    }
+
+    /**
+     * Calls {@code elapseMinutes(minutes)} on each registered timed item, so
+     * that each item jumps directly to its state after the given number of
+     * minutes where it is able to.
+     *
+     * @param minutes number of minutes to elapse
+     * @throws IllegalArgumentException if minutes is negative
+     */
+    @Override
+    public void elapseMinutes(long minutes) {
+        clock.elapseMinutes(minutes);
+    }
+
+    /**
+     * Calls {@code elapseOneMinute()} on each registered timed item, sharing
+     * the items between the threads of the given pool, see
+     * {@link SimulationClock#elapseOneMinute(ForkJoinPool)}.
+     * <p>
+     * Building clocks with many items share them between the pool's threads
+     * in turn.
+     *
+     * @param pool pool whose threads advance the items
+     */
+    public void elapseOneMinute(ForkJoinPool pool) {
+        clock.elapseOneMinute(pool);
+    }
+
+    /**
+     * Calls {@code elapseMinutes(minutes)} on each registered timed item,
+     * sharing the items between the threads of the given pool, as for
+     * {@link #elapseOneMinute(ForkJoinPool)}.
+     *
+     * @param minutes number of minutes to elapse
+     * @param pool pool whose threads advance the items
+     * @throws IllegalArgumentException if minutes is negative
+     */
+    public void elapseMinutes(long minutes, ForkJoinPool pool) {
+        clock.elapseMinutes(minutes, pool);
     }
 }
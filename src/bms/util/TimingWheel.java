@@ -0,0 +1,200 @@
+package bms.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Hashed timing wheel of values which are each due at a given minute.
+ * <p>
+ * Values are kept in one of {@link #SLOTS} slots, by their due minute modulo
+ * the number of slots. Advancing the wheel by a minute only visits the slot
+ * for that minute, and values due in later rounds of the wheel are left where
+ * they are. Advancing by at least a whole round visits every slot once.
+ *
+ * @param <T> type of the scheduled values
+ */
+final class TimingWheel<T> {
+
+    /**
+     * Number of slots in the wheel, which covers the few minutes between
+     * sensor reading changes and most rooms' maintenance times in one round.
+     */
+    static final int SLOTS = 64;
+
+    /**
+     * Called for each value which falls due as the wheel is advanced. The
+     * visitor must not cancel values itself, but return a negative number.
+     *
+     * @param <T> type of the scheduled values
+     */
+    interface Visitor<T> {
+        /**
+         * Handles a value which has fallen due.
+         *
+         * @param value value which has fallen due
+         * @return minute at which the value is next due, after the minute
+         * the wheel has been advanced to; or a negative number to remove the
+         * value from the wheel
+         */
+        long due(T value);
+    }
+
+    /**
+     * A value and the minute at which it is due, which is kept as the value's
+     * handle in the wheel for as long as it stays scheduled.
+     *
+     * @param <T> type of the scheduled value
+     */
+    static final class Timer<T> {
+        private final T value;
+        private long due;
+        private boolean cancelled = false;
+
+        private Timer(T value, long due) {
+            this.value = value;
+            this.due = due;
+        }
+    }
+
+    /**
+     * Timers in each slot, including cancelled timers which have not yet
+     * been removed.
+     */
+    private final List<List<Timer<T>>> slots = new ArrayList<>(SLOTS);
+
+    /**
+     * Number of values in the wheel.
+     */
+    private int size = 0;
+
+    /**
+     * Number of cancelled timers which are still in a slot.
+     */
+    private int cancelled = 0;
+
+    TimingWheel() {
+        for (int i = 0; i < SLOTS; i++) {
+            slots.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Returns the number of values in the wheel.
+     *
+     * @return number of scheduled values
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Schedules a value to fall due at the given minute.
+     *
+     * @param value value to schedule
+     * @param due minute at which the value falls due
+     * @return handle with which the value can be cancelled, which stays
+     * valid while the value is rescheduled by {@link #advance(long, long,
+     * Visitor)}
+     */
+    Timer<T> schedule(T value, long due) {
+        Timer<T> timer = new Timer<>(value, due);
+        slots.get(slot(due)).add(timer);
+        size++;
+        return timer;
+    }
+
+    /**
+     * Removes the value with the given handle from the wheel, in constant
+     * time. Does nothing if it has already been removed.
+     *
+     * @param timer handle returned when the value was scheduled
+     */
+    void cancel(Timer<T> timer) {
+        if (timer.cancelled) {
+            return;
+        }
+        timer.cancelled = true;
+        size--;
+        // cancelled timers are dropped when their slot is next visited, or
+        // all at once if they outnumber the values
+        if (++cancelled > size) {
+            removeIf(value -> false);
+        }
+    }
+
+    /**
+     * Advances the wheel from one minute to a later one, passing each value
+     * due at a minute after {@code from} and up to {@code to} to the given
+     * visitor.
+     *
+     * @param from minute the wheel was last advanced to
+     * @param to minute to advance the wheel to
+     * @param visitor handles values which fall due
+     */
+    void advance(long from, long to, Visitor<T> visitor) {
+        long minutes = to - from;
+        if (minutes >= SLOTS) {
+            for (int i = 0; i < SLOTS; i++) {
+                visit(i, to, visitor);
+            }
+            return;
+        }
+        for (long minute = from + 1; minute <= to; minute++) {
+            visit(slot(minute), to, visitor);
+        }
+    }
+
+    /**
+     * Removes every value matching the given predicate from the wheel.
+     *
+     * @param filter predicate matching values to remove
+     */
+    void removeIf(Predicate<? super T> filter) {
+        for (List<Timer<T>> slot : slots) {
+            slot.removeIf(timer -> {
+                if (timer.cancelled) {
+                    return true;
+                }
+                if (filter.test(timer.value)) {
+                    timer.cancelled = true;
+                    size--;
+                    return true;
+                }
+                return false;
+            });
+        }
+        cancelled = 0;
+    }
+
+    private void visit(int index, long to, Visitor<T> visitor) {
+        List<Timer<T>> slot = slots.get(index);
+        if (slot.isEmpty()) {
+            return;
+        }
+        // values may be rescheduled into the slot being visited
+        slots.set(index, new ArrayList<>());
+        for (Timer<T> timer : slot) {
+            if (timer.cancelled) {
+                cancelled--;
+                continue;
+            }
+            if (timer.due > to) {
+                slots.get(index).add(timer);
+                continue;
+            }
+            long due = visitor.due(timer.value);
+            if (due >= 0) {
+                timer.due = due;
+                slots.get(slot(due)).add(timer);
+            } else {
+                timer.cancelled = true;
+                size--;
+            }
+        }
+    }
+
+    private static int slot(long minute) {
+        return (int) Math.floorMod(minute, (long) SLOTS);
+    }
+}
@@ -0,0 +1,103 @@
+package bms.building;
+
+import bms.floor.Floor;
+import bms.hazardevaluation.RuleBasedHazardEvaluator;
+import bms.room.Room;
+import bms.room.RoomType;
+import bms.sensors.HazardSensor;
+import bms.sensors.NoiseSensor;
+import bms.sensors.OccupancySensor;
+import bms.sensors.TemperatureSensor;
+
+import java.io.BufferedWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares saving by concatenating {@link Building#encode()} strings with
+ * streaming through {@link Building#encodeBuildings(List, Appendable)}, for
+ * models of 1k to 1M sensors.
+ * <p>
+ * Concatenation is skipped for the largest models, where it takes minutes.
+ * Run with: java -Xmx4g bms.building.BuildingEncodeBenchmark
+ */
+public class BuildingEncodeBenchmark {
+
+    private static final int SENSORS_PER_ROOM = 2;
+    private static final int ROOMS_PER_FLOOR = 100;
+    private static final int FLOORS_PER_BUILDING = 10;
+    private static final int MAX_CONCATENATED_SENSORS = 100_000;
+
+    public static void main(String[] args) throws Exception {
+        for (int numSensors = 1000; numSensors <= 1_000_000; numSensors *= 10) {
+            List<Building> buildings = createCampus(numSensors);
+            long streamTime = Long.MAX_VALUE;
+            for (int i = 0; i < 10; i++) {
+                long start = System.nanoTime();
+                stream(buildings);
+                streamTime = Math.min(streamTime, System.nanoTime() - start);
+            }
+
+            String concatenated = "skipped";
+            if (numSensors <= MAX_CONCATENATED_SENSORS) {
+                concatenate(buildings);
+                long start = System.nanoTime();
+                concatenate(buildings);
+                concatenated = String.format("%.2f ms", (System.nanoTime() - start) / 1e6);
+            }
+            System.out.printf("%8d sensors: encodeBuildings (best of 10) %9.2f ms (%.1f ns/sensor),"
+                            + " concatenation %s%n", numSensors, streamTime / 1e6,
+                    (double) streamTime / numSensors, concatenated);
+        }
+    }
+
+    private static void stream(List<Building> buildings) throws Exception {
+        try (Writer writer = new BufferedWriter(Writer.nullWriter())) {
+            Building.encodeBuildings(buildings, writer);
+        }
+    }
+
+    private static void concatenate(List<Building> buildings) throws Exception {
+        try (Writer writer = new BufferedWriter(Writer.nullWriter())) {
+            String buildinglist = "";
+            for (Building building : buildings) {
+                buildinglist += building.encode();
+            }
+            writer.write(buildinglist.substring(0,
+                    buildinglist.length() - System.lineSeparator().length()));
+        }
+    }
+
+    /**
+     * Creates buildings of 10 floors of 100 rooms, each with a noise and
+     * temperature sensor or an occupancy and temperature sensor.
+     */
+    private static List<Building> createCampus(int numSensors) throws Exception {
+        List<Building> buildings = new ArrayList<>();
+        int sensors = 0;
+        for (int b = 0; sensors < numSensors; b++) {
+            Building building = new Building("Building " + b);
+            for (int f = 1; f <= FLOORS_PER_BUILDING && sensors < numSensors; f++) {
+                Floor floor = new Floor(f, 100, 50.5);
+                building.addFloor(floor);
+                for (int r = 0; r < ROOMS_PER_FLOOR && sensors < numSensors; r++) {
+                    Room room = new Room(f * 1000 + r, RoomType.STUDY, 20.25);
+                    floor.addRoom(room);
+                    List<HazardSensor> hazardSensors = new ArrayList<>();
+                    hazardSensors.add(r % 2 == 0
+                            ? new NoiseSensor(new int[]{55, 62, 69, 63}, 3)
+                            : new OccupancySensor(new int[]{4, 6, 12, 20, 18}, 2, 30));
+                    hazardSensors.add(new TemperatureSensor(new int[]{21, 22, 23, 24}));
+                    for (HazardSensor sensor : hazardSensors) {
+                        room.addSensor(sensor);
+                    }
+                    room.setHazardEvaluator(new RuleBasedHazardEvaluator(hazardSensors));
+                    sensors += SENSORS_PER_ROOM;
+                }
+            }
+            buildings.add(building);
+        }
+        return buildings;
+    }
+}
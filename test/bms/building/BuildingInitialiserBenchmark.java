@@ -0,0 +1,105 @@
+package bms.building;
+
+import bms.sensors.ReadingPatternPool;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+/**
+ * Compares the load time and allocation of the building loaders on a
+ * generated campus save file.
+ * <p>
+ * Allocation is measured on the calling thread only, so it does not include
+ * the work done by the parallel loader's worker threads.
+ * <p>
+ * Run with: java bms.building.BuildingInitialiserBenchmark [numRooms]
+ */
+public class BuildingInitialiserBenchmark {
+
+    private static final int WARMUP_RUNS = 5;
+    private static final int MEASURED_RUNS = 10;
+
+    private interface Loader {
+        List<Building> load(String filename) throws Exception;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int numRooms = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        File file = File.createTempFile("campus", ".txt");
+        file.deleteOnExit();
+        writeCampus(file, numRooms);
+        System.out.printf("%d rooms, %d KB%n", numRooms, file.length() / 1024);
+
+        ReadingPatternPool pool = ReadingPatternPool.getInstance();
+        pool.resetStatistics();
+        BuildingInitialiser.loadBuildings(file.getPath());
+        System.out.printf("reading patterns: %d sensors, %.1f%% shared, %d KB saved%n",
+                pool.getLookups(), 100 * pool.getHitRate(),
+                pool.getBytesSaved() / 1024);
+
+        run("loadBuildings", BuildingInitialiser::loadBuildings, file);
+        run("loadBuildingsStreaming",
+                BuildingInitialiser::loadBuildingsStreaming, file);
+        run("loadBuildingsMapped",
+                BuildingInitialiser::loadBuildingsMapped, file);
+        run("loadBuildingsParallel",
+                BuildingInitialiser::loadBuildingsParallel, file);
+    }
+
+    private static void run(String name, Loader loader, File file)
+            throws Exception {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            loader.load(file.getPath());
+        }
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long allocated = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            loader.load(file.getPath());
+        }
+        long elapsed = System.nanoTime() - start;
+        allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+        System.out.printf("%-24s %8.2f ms/load %10d KB allocated/load%n", name,
+                elapsed / 1e6 / MEASURED_RUNS,
+                allocated / 1024 / MEASURED_RUNS);
+    }
+
+    /**
+     * Writes a save file of buildings with 10 floors of 100 rooms each,
+     * until the given number of rooms is reached.
+     */
+    static void writeCampus(File file, int numRooms) throws IOException {
+        final int roomsPerFloor = 100;
+        final int floorsPerBuilding = 10;
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+            int written = 0;
+            for (int b = 0; written < numRooms; b++) {
+                writer.write("Building " + b + "\n" + floorsPerBuilding + "\n");
+                for (int f = 1; f <= floorsPerBuilding; f++) {
+                    int rooms = Math.max(0, Math.min(roomsPerFloor,
+                            numRooms - written));
+                    writer.write(f + ":100:50.5:" + rooms + "\n");
+                    for (int r = 0; r < rooms; r++, written++) {
+                        int roomNumber = f * 1000 + r;
+                        if (r % 2 == 0) {
+                            writer.write(roomNumber + ":STUDY:20.25:3:RuleBased\n");
+                            writer.write("CarbonDioxideSensor:690,740,810,1020,1100:3:700:300\n");
+                            writer.write("NoiseSensor:55,62,69,63:3\n");
+                            writer.write("TemperatureSensor:21,22,23,24,24,23\n");
+                        } else {
+                            writer.write(roomNumber + ":OFFICE:30:2:WeightingBased\n");
+                            writer.write("OccupancySensor:4,6,12,20,18:2:30@40\n");
+                            writer.write("TemperatureSensor:20,21,22@60\n");
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
@@ -9,7 +9,11 @@ import bms.hazardevaluation.HazardEvaluator;
 import bms.hazardevaluation.WeightingBasedHazardEvaluator;
 import org.junit.Test;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -249,4 +253,70 @@ public class BuildingInitialiserTest {
         Building building2 = buildingList.get(1);
         assertEquals(0, building2.getFloors().size());
     }
+
+    @Test
+    public void testStreamingLoadMatchesLoadBuildings() throws IOException, FileFormatException {
+        assertEquals(BuildingInitialiser.loadBuildings("saves/uqstlucia.txt"),
+                BuildingInitialiser.loadBuildingsStreaming("saves/uqstlucia.txt"));
+    }
+
+    @Test
+    public void testStreamingReportsErrorPosition() throws IOException {
+        File file = File.createTempFile("bms", ".txt");
+        file.deleteOnExit();
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write("Building\n1\n1:10:10:1\n101:STUDY:20:1\nNoiseSensor:55,6x,69:3\n");
+        }
+        try {
+            BuildingInitialiser.loadBuildingsStreaming(file.getPath());
+            fail("expected FileFormatException");
+        } catch (FileFormatException e) {
+            assertEquals(5, e.getLine());
+            assertEquals(16, e.getColumn());
+        }
+    }
+
+    @Test
+    public void testParallelLoadMatchesStreaming() throws IOException, FileFormatException {
+        assertEquals(BuildingInitialiser.loadBuildingsStreaming("saves/uqstlucia.txt"),
+                BuildingInitialiser.loadBuildingsParallel("saves/uqstlucia.txt"));
+    }
+
+    @Test
+    public void testParallelReportsEarliestError() throws IOException {
+        File file = File.createTempFile("bms", ".txt");
+        file.deleteOnExit();
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write("First\n1\n1:10:10:0\n");
+            writer.write("Second\n1\n1:10:10:1\n101:STUDY:20:1\nNoiseSensor:55,6x,69:3\n");
+            writer.write("Third\nx\n");
+        }
+        try {
+            BuildingInitialiser.loadBuildingsParallel(file.getPath());
+            fail("expected FileFormatException");
+        } catch (FileFormatException e) {
+            assertEquals(8, e.getLine());
+            assertEquals(16, e.getColumn());
+        }
+    }
+
+    @Test
+    public void testMappedLoadMatchesStreaming() throws IOException, FileFormatException {
+        assertEquals(BuildingInitialiser.loadBuildingsStreaming("saves/uqstlucia.txt"),
+                BuildingInitialiser.loadBuildingsMapped("saves/uqstlucia.txt"));
+    }
+
+    @Test
+    public void testMappedLoadNonAsciiName() throws IOException, FileFormatException {
+        File file = File.createTempFile("bms", ".txt");
+        file.deleteOnExit();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write("B\u00e2timent\n1\n1:10:10:1\n101:STUDY:20:1\nNoiseSensor:55,60,69:3\n"
+                    .getBytes(StandardCharsets.UTF_8));
+        }
+        List<Building> buildings = BuildingInitialiser.loadBuildingsMapped(file.getPath());
+        List<Building> expected = BuildingInitialiser.loadBuildingsStreaming(file.getPath());
+        assertEquals(expected, buildings);
+        assertEquals(expected.get(0).getName(), buildings.get(0).getName());
+    }
 }
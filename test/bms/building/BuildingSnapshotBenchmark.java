@@ -0,0 +1,61 @@
+package bms.building;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Compares the size and speed of binary snapshots with the text save format,
+ * on a generated campus save file.
+ * <p>
+ * Run with: java bms.building.BuildingSnapshotBenchmark [numRooms]
+ */
+public class BuildingSnapshotBenchmark {
+
+    private static final int RUNS = 10;
+
+    public static void main(String[] args) throws Exception {
+        // 40000 rooms holds 100000 sensors
+        int numRooms = args.length > 0 ? Integer.parseInt(args[0]) : 40000;
+        File file = File.createTempFile("campus", ".txt");
+        file.deleteOnExit();
+        BuildingInitialiserBenchmark.writeCampus(file, numRooms);
+        List<Building> buildings = BuildingInitialiser.loadBuildingsStreaming(file.getPath());
+
+        byte[] text = null;
+        byte[] snapshot = null;
+        for (int warmup = 0; warmup < 2; warmup++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < RUNS; i++) {
+                StringBuilder save = new StringBuilder();
+                for (Building building : buildings) {
+                    save.append(building.encode());
+                }
+                text = save.toString().getBytes(StandardCharsets.UTF_8);
+            }
+            long textTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < RUNS; i++) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                BuildingSnapshot.write(buildings, out);
+                snapshot = out.toByteArray();
+            }
+            long writeTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < RUNS; i++) {
+                BuildingSnapshot.read(new ByteArrayInputStream(snapshot));
+            }
+            long readTime = System.nanoTime() - start;
+
+            System.out.printf("text save   %8.2f ms %10d bytes%n",
+                    textTime / 1e6 / RUNS, text.length);
+            System.out.printf("snapshot    %8.2f ms %10d bytes (write)%n",
+                    writeTime / 1e6 / RUNS, snapshot.length);
+            System.out.printf("snapshot    %8.2f ms (read)%n", readTime / 1e6 / RUNS);
+        }
+    }
+}
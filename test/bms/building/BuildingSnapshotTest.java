@@ -0,0 +1,80 @@
+package bms.building;
+
+import bms.exceptions.FileFormatException;
+import bms.floor.Floor;
+import bms.room.Room;
+import bms.room.RoomType;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BuildingSnapshotTest {
+
+    @Test
+    public void testRoundTrip() throws IOException, FileFormatException {
+        List<Building> buildings = BuildingInitialiser.loadBuildings("saves/uqstlucia.txt");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BuildingSnapshot.write(buildings, out);
+
+        List<Building> restored = BuildingSnapshot.read(
+                new ByteArrayInputStream(out.toByteArray()));
+        assertEquals(buildings, restored);
+        // also compares hazard evaluators, weightings and maintenance schedules
+        for (int i = 0; i < buildings.size(); i++) {
+            assertEquals(buildings.get(i).encode(), restored.get(i).encode());
+        }
+    }
+
+    @Test
+    public void testRoundTripKeepsFireDrills() throws Exception {
+        Building building = new Building("Drills");
+        building.addFloor(new Floor(1, 10, 10));
+        Floor floor = building.getFloorByNumber(1);
+        floor.addRoom(new Room(101, RoomType.STUDY, 10));
+        floor.addRoom(new Room(102, RoomType.OFFICE, 10));
+        building.fireDrill(RoomType.STUDY);
+        List<Building> buildings = new ArrayList<>();
+        buildings.add(building);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BuildingSnapshot.write(buildings, out);
+
+        Floor restored = BuildingSnapshot.read(new ByteArrayInputStream(
+                out.toByteArray())).get(0).getFloorByNumber(1);
+        assertTrue(restored.getRoomByNumber(101).fireDrillOngoing());
+        assertFalse(restored.getRoomByNumber(102).fireDrillOngoing());
+    }
+
+    @Test
+    public void testReadsVersionOne() throws IOException, FileFormatException {
+        assertTrue(BuildingSnapshot.read(new ByteArrayInputStream(
+                "BMSS\u0001\u0000".getBytes())).isEmpty());
+    }
+
+    @Test
+    public void testRejectsBadMagic() throws IOException {
+        try {
+            BuildingSnapshot.read(new ByteArrayInputStream("BMSX\u0001\u0000".getBytes()));
+            fail("expected FileFormatException");
+        } catch (FileFormatException expected) {
+        }
+    }
+
+    @Test
+    public void testRejectsTruncatedSnapshot() throws IOException, FileFormatException {
+        List<Building> buildings = BuildingInitialiser.loadBuildings("saves/uqstlucia.txt");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BuildingSnapshot.write(buildings, out);
+        byte[] bytes = out.toByteArray();
+        try {
+            BuildingSnapshot.read(new ByteArrayInputStream(bytes, 0, bytes.length - 1));
+            fail("expected FileFormatException");
+        } catch (FileFormatException expected) {
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package bms.building;
+
+import bms.exceptions.FileFormatException;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BuildingTest {
+
+    @Test
+    public void testEncodeToMatchesEncode() throws IOException, FileFormatException {
+        List<Building> buildings = BuildingInitialiser.loadBuildings("saves/uqstlucia.txt");
+        for (Building building : buildings) {
+            StringBuilder encoded = new StringBuilder();
+            building.encodeTo(encoded);
+            assertEquals(building.encode(), encoded.toString());
+        }
+    }
+
+    @Test
+    public void testEncodeBuildingsMatchesSaveFile() throws IOException, FileFormatException {
+        List<Building> buildings = BuildingInitialiser.loadBuildings("saves/uqstlucia.txt");
+        String expected = "";
+        for (Building building : buildings) {
+            expected += building.encode();
+        }
+        expected = expected.substring(0, expected.length() - System.lineSeparator().length());
+
+        StringBuilder encoded = new StringBuilder();
+        Building.encodeBuildings(buildings, encoded);
+        assertEquals(expected, encoded.toString());
+    }
+}
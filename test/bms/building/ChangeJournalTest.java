@@ -0,0 +1,204 @@
+package bms.building;
+
+import bms.exceptions.*;
+import bms.floor.Floor;
+import bms.hazardevaluation.RuleBasedHazardEvaluator;
+import bms.hazardevaluation.WeightingBasedHazardEvaluator;
+import bms.room.Room;
+import bms.room.RoomType;
+import bms.sensors.*;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class ChangeJournalTest {
+
+    /**
+     * Makes a series of changes to the given buildings, recording each in the
+     * given journal.
+     */
+    private static void makeChanges(List<Building> buildings, ChangeJournal journal)
+            throws Exception {
+        buildings.add(new Building("Annex"));
+        journal.addBuilding("Annex");
+        int b = buildings.size() - 1;
+        Building annex = buildings.get(b);
+
+        annex.addFloor(new Floor(1, 20, 10));
+        journal.addFloor(b, 1, 20, 10);
+        annex.addFloor(new Floor(2, 15, 10));
+        journal.addFloor(b, 2, 15, 10);
+
+        Floor floor = annex.getFloorByNumber(1);
+        floor.addRoom(new Room(101, RoomType.LABORATORY, 50));
+        journal.addRoom(b, 1, 101, RoomType.LABORATORY, 50);
+        floor.addRoom(new Room(102, RoomType.OFFICE, 30.5));
+        journal.addRoom(b, 1, 102, RoomType.OFFICE, 30.5);
+
+        Room lab = floor.getRoomByNumber(101);
+        Sensor co2 = new CarbonDioxideSensor(new int[]{700, 800, 900}, 3, 600, 300);
+        lab.addSensor(co2);
+        journal.addSensor(b, 1, 101, co2);
+        Sensor temperature = new TemperatureSensor(new int[]{20, 22, 25});
+        lab.addSensor(temperature);
+        journal.addSensor(b, 1, 101, temperature);
+
+        Map<HazardSensor, Integer> weightings = new HashMap<>();
+        weightings.put((HazardSensor) co2, 70);
+        weightings.put((HazardSensor) temperature, 30);
+        lab.setHazardEvaluator(new WeightingBasedHazardEvaluator(weightings));
+        journal.setHazardEvaluator(b, 1, 101, lab.getHazardEvaluator());
+
+        Room office = floor.getRoomByNumber(102);
+        Sensor occupancy = new OccupancySensor(new int[]{1, 5, 9}, 2, 10);
+        office.addSensor(occupancy);
+        journal.addSensor(b, 1, 102, occupancy);
+        List<HazardSensor> hazardSensors = new ArrayList<>();
+        hazardSensors.add((HazardSensor) occupancy);
+        office.setHazardEvaluator(new RuleBasedHazardEvaluator(hazardSensors));
+        journal.setHazardEvaluator(b, 1, 102, office.getHazardEvaluator());
+
+        List<Room> roomOrder = new ArrayList<>();
+        roomOrder.add(office);
+        roomOrder.add(lab);
+        floor.createMaintenanceSchedule(roomOrder);
+        journal.createMaintenanceSchedule(b, 1, roomOrder);
+
+        annex.renovateFloor(2, 15, 12);
+        journal.renovateFloor(b, 2, 15, 12);
+    }
+
+    private static void assertSameBuildings(List<Building> expected,
+                                            List<Building> actual) {
+        assertEquals(expected, actual);
+        // also compares sensors, hazard evaluators and maintenance schedules
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).encode(), actual.get(i).encode());
+        }
+    }
+
+    @Test
+    public void testRecoverReplaysChanges() throws Exception {
+        Path directory = Files.createTempDirectory("bms").resolve("journal");
+        List<Building> buildings = BuildingInitialiser.loadBuildings("saves/uqstlucia.txt");
+        try (ChangeJournal journal = ChangeJournal.open(directory, buildings)) {
+            makeChanges(buildings, journal);
+            assertTrue(journal.size() > 0);
+        }
+
+        assertTrue(ChangeJournal.exists(directory));
+        assertSameBuildings(buildings, ChangeJournal.recover(directory));
+    }
+
+    @Test
+    public void testCheckpointReplacesJournal() throws Exception {
+        Path directory = Files.createTempDirectory("bms").resolve("journal");
+        List<Building> buildings = BuildingInitialiser.loadBuildings("saves/uqstlucia.txt");
+        try (ChangeJournal journal = ChangeJournal.open(directory, buildings)) {
+            makeChanges(buildings, journal);
+            journal.checkpoint(buildings);
+            assertEquals(0, journal.size());
+            buildings.add(new Building("Shed"));
+            journal.addBuilding("Shed");
+        }
+
+        // only the latest checkpoint and its journal remain
+        assertEquals(2, directory.toFile().list().length);
+        assertSameBuildings(buildings, ChangeJournal.recover(directory));
+    }
+
+    @Test
+    public void testStartedCheckpointKeepsLaterChanges() throws Exception {
+        Path directory = Files.createTempDirectory("bms").resolve("journal");
+        List<Building> buildings = BuildingInitialiser.loadBuildings("saves/uqstlucia.txt");
+        try (ChangeJournal journal = ChangeJournal.open(directory, buildings)) {
+            makeChanges(buildings, journal);
+            ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+            BuildingSnapshot.write(buildings, snapshot);
+            ChangeJournal.PendingCheckpoint checkpoint =
+                    journal.startCheckpoint(snapshot.toByteArray());
+            assertEquals(0, journal.size());
+
+            // changed before the checkpoint is written
+            buildings.add(new Building("Shed"));
+            journal.addBuilding("Shed");
+            assertSameBuildings(buildings, ChangeJournal.recover(directory));
+
+            checkpoint.write();
+            buildings.add(new Building("Garage"));
+            journal.addBuilding("Garage");
+        }
+
+        assertEquals(2, directory.toFile().list().length);
+        assertSameBuildings(buildings, ChangeJournal.recover(directory));
+    }
+
+    @Test
+    public void testRecoverIgnoresTornRecord() throws Exception {
+        Path directory = Files.createTempDirectory("bms").resolve("journal");
+        List<Building> buildings = BuildingInitialiser.loadBuildings("saves/uqstlucia.txt");
+        List<Building> expected;
+        try (ChangeJournal journal = ChangeJournal.open(directory, buildings)) {
+            makeChanges(buildings, journal);
+            expected = ChangeJournal.recover(directory);
+            journal.addBuilding("Torn");
+        }
+
+        // cut the last record short, as if the application crashed
+        // while appending it
+        Path journalFile = directory.resolve("journal-1.log");
+        try (RandomAccessFile file = new RandomAccessFile(journalFile.toFile(), "rw")) {
+            file.setLength(file.length() - 3);
+        }
+        assertSameBuildings(expected, ChangeJournal.recover(directory));
+    }
+
+    @Test
+    public void testRecoverRejectsInapplicableRecord() throws Exception {
+        Path directory = Files.createTempDirectory("bms").resolve("journal");
+        List<Building> buildings = BuildingInitialiser.loadBuildings("saves/uqstlucia.txt");
+        try (ChangeJournal journal = ChangeJournal.open(directory, buildings)) {
+            journal.addFloor(buildings.size(), 1, 10, 10);
+        }
+
+        try {
+            ChangeJournal.recover(directory);
+            fail("expected FileFormatException");
+        } catch (FileFormatException expected) {
+        }
+    }
+
+    @Test
+    public void testJournalIsCurrentUntilFileChanges() throws Exception {
+        Path directory = Files.createTempDirectory("bms").resolve("journal");
+        Path file = directory.resolveSibling("buildings.txt");
+        Files.writeString(file, "unused");
+        List<Building> buildings = new ArrayList<>();
+        assertFalse(ChangeJournal.isCurrent(directory, file));
+        try (ChangeJournal journal = ChangeJournal.open(directory, file, buildings)) {
+            buildings.add(new Building("Shed"));
+            journal.addBuilding("Shed");
+            assertTrue(ChangeJournal.isCurrent(directory, file));
+
+            // replaced after the checkpoint, so the journal is out of date
+            Files.setLastModifiedTime(file, FileTime.fromMillis(
+                    Files.getLastModifiedTime(file).toMillis() + 2000));
+            assertFalse(ChangeJournal.isCurrent(directory, file));
+
+            // saving writes a checkpoint against the saved file
+            journal.checkpoint(buildings);
+            assertTrue(ChangeJournal.isCurrent(directory, file));
+        }
+        assertSameBuildings(buildings, ChangeJournal.recover(directory));
+    }
+}
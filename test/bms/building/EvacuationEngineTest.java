@@ -0,0 +1,170 @@
+package bms.building;
+
+import bms.floor.Floor;
+import bms.hazardevaluation.RuleBasedHazardEvaluator;
+import bms.room.Room;
+import bms.room.RoomState;
+import bms.room.RoomType;
+import bms.sensors.HazardSensor;
+import bms.sensors.NoiseSensor;
+import bms.sensors.TemperatureSensor;
+import bms.util.SimulationClock;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class EvacuationEngineTest {
+
+    private Building building;
+    private List<Room> rooms;
+
+    @Before
+    public void setUp() throws Exception {
+        building = new Building("Evacuation");
+        rooms = new ArrayList<>();
+        for (int number = 1; number <= 4; number++) {
+            Floor floor = new Floor(number, 10, 10);
+            building.addFloor(floor);
+            Room room = new Room(number * 100, RoomType.OFFICE, 10);
+            floor.addRoom(room);
+            rooms.add(room);
+        }
+    }
+
+    private void addSensor(int floorNumber, HazardSensor sensor) throws Exception {
+        Room room = rooms.get(floorNumber - 1);
+        room.addSensor(sensor);
+        room.setHazardEvaluator(new RuleBasedHazardEvaluator(List.of(sensor)));
+    }
+
+    private void tick(int minutes) {
+        SimulationClock clock = building.getClock();
+        for (int i = 0; i < minutes; i++) {
+            clock.elapseOneMinute();
+        }
+    }
+
+    private void assertEvacuating(EvacuationEngine engine, boolean... floors) {
+        for (int i = 0; i < floors.length; i++) {
+            assertEquals("floor " + (i + 1), floors[i],
+                    engine.isFloorEvacuating(i + 1));
+            assertEquals("floor " + (i + 1), floors[i],
+                    rooms.get(i).evaluateRoomState() == RoomState.EVACUATE);
+        }
+    }
+
+    @Test
+    public void testEvacuateFloor() throws Exception {
+        addSensor(2, new TemperatureSensor(new int[]{20, 70, 70, 20}));
+        addSensor(3, new NoiseSensor(new int[]{50}, 5));
+        EvacuationEngine engine = new EvacuationEngine(building, 100, false);
+
+        tick(1);
+        assertEvacuating(engine, false, true, false, false);
+        assertEquals(1, engine.getNumberOfEvacuatingFloors());
+
+        tick(2);
+        assertEvacuating(engine, false, false, false, false);
+        assertEquals(0, engine.getNumberOfEvacuatingFloors());
+    }
+
+    @Test
+    public void testEvacuateFloorsAbove() throws Exception {
+        // hazardous from minutes 1 to 4, and from minutes 2 to 3
+        addSensor(3, new TemperatureSensor(new int[]{20, 70, 70, 70, 20}));
+        addSensor(2, new TemperatureSensor(new int[]{20, 20, 70, 20}));
+        EvacuationEngine engine = new EvacuationEngine(building, 100, true);
+        assertEvacuating(engine, false, false, false, false);
+
+        tick(1);
+        assertEvacuating(engine, false, false, true, true);
+        assertEquals(2, engine.getNumberOfEvacuatingFloors());
+
+        tick(1);
+        assertEvacuating(engine, false, true, true, true);
+        assertEquals(3, engine.getNumberOfEvacuatingFloors());
+
+        tick(1);
+        assertEvacuating(engine, false, false, true, true);
+
+        tick(1);
+        assertEvacuating(engine, false, false, false, false);
+        assertEquals(0, engine.getNumberOfEvacuatingFloors());
+        assertFalse(engine.isFloorEvacuating(5));
+
+        engine.stop();
+        tick(5);
+        assertEvacuating(engine, false, false, false, false);
+    }
+
+    @Test
+    public void testManualDrillsAreKeptApart() throws Exception {
+        Room study = new Room(201, RoomType.STUDY, 10);
+        building.getFloorByNumber(2).addRoom(study);
+        addSensor(2, new TemperatureSensor(new int[]{20, 70, 70, 20}));
+        EvacuationEngine engine = new EvacuationEngine(building, 100, false);
+
+        // a manual drill started during an automatic evacuation outlives it
+        tick(1);
+        building.fireDrill(RoomType.STUDY);
+        assertEvacuating(engine, false, true, false, false);
+        tick(2);
+        assertFalse(engine.isFloorEvacuating(2));
+        assertTrue(study.fireDrillOngoing());
+        assertEquals(RoomState.EVACUATE, study.evaluateRoomState());
+        assertEquals(RoomState.OPEN, rooms.get(1).evaluateRoomState());
+
+        // cancelling manual drills does not end an automatic evacuation
+        tick(2);
+        building.cancelFireDrill();
+        assertEvacuating(engine, false, true, false, false);
+        assertFalse(study.fireDrillOngoing());
+        assertEquals(RoomState.EVACUATE, study.evaluateRoomState());
+        assertEquals(1, engine.getNumberOfEvacuatingFloors());
+
+        tick(2);
+        assertEvacuating(engine, false, false, false, false);
+        assertEquals(RoomState.OPEN, study.evaluateRoomState());
+    }
+
+    @Test
+    public void testWatchesFloorsAndRoomsAddedLater() throws Exception {
+        EvacuationEngine engine = new EvacuationEngine(building, 100, true);
+        addSensor(4, new TemperatureSensor(new int[]{20, 70, 70, 20}));
+        tick(1);
+        assertEvacuating(engine, false, false, false, true);
+
+        // added above an evacuated floor, with a room already hazardous
+        Floor top = new Floor(5, 10, 10);
+        Room hot = new Room(500, RoomType.OFFICE, 10);
+        HazardSensor sensor = new TemperatureSensor(new int[]{70});
+        hot.addSensor(sensor);
+        hot.setHazardEvaluator(new RuleBasedHazardEvaluator(List.of(sensor)));
+        top.addRoom(hot);
+        building.addFloor(top);
+        rooms.add(hot);
+        assertEvacuating(engine, false, false, false, true, true);
+        assertEquals(2, engine.getNumberOfEvacuatingFloors());
+
+        tick(2);
+        assertEvacuating(engine, false, false, false, false, true);
+        assertEquals(1, engine.getNumberOfEvacuatingFloors());
+
+        Room later = new Room(101, RoomType.OFFICE, 10);
+        building.getFloorByNumber(1).addRoom(later);
+        HazardSensor fire = new TemperatureSensor(new int[]{20, 70});
+        later.addSensor(fire);
+        later.setHazardEvaluator(new RuleBasedHazardEvaluator(List.of(fire)));
+        tick(1);
+        assertEvacuating(engine, true, true, true, true, true);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidLevel() {
+        new EvacuationEngine(building, 101, true);
+    }
+}
@@ -0,0 +1,61 @@
+package bms.building;
+
+import bms.floor.Floor;
+import bms.room.RoomType;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Compares starting and cancelling fire drills in every building of a
+ * generated campus save file through the buildings' fire drill states with
+ * doing so floor by floor, room by room.
+ * <p>
+ * Run with: java bms.building.FireDrillBenchmark [numRooms]
+ */
+public class FireDrillBenchmark {
+
+    private static final int RUNS = 200;
+
+    public static void main(String[] args) throws Exception {
+        int numRooms = args.length > 0 ? Integer.parseInt(args[0]) : 60000;
+        File file = File.createTempFile("campus", ".txt");
+        file.deleteOnExit();
+        BuildingInitialiserBenchmark.writeCampus(file, numRooms);
+        List<Building> buildings = BuildingInitialiser.loadBuildings(file.getPath());
+        System.out.printf("%d buildings, %d rooms%n", buildings.size(), numRooms);
+
+        for (int warmup = 0; warmup < 3; warmup++) {
+            long start = System.nanoTime();
+            for (int run = 0; run < RUNS; run++) {
+                for (Building building : buildings) {
+                    building.fireDrill(run % 2 == 0 ? null : RoomType.OFFICE);
+                }
+                for (Building building : buildings) {
+                    building.cancelFireDrill();
+                }
+            }
+            long bulkTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int run = 0; run < RUNS; run++) {
+                for (Building building : buildings) {
+                    for (Floor floor : building.getFloors()) {
+                        floor.fireDrill(run % 2 == 0 ? null : RoomType.OFFICE);
+                    }
+                }
+                for (Building building : buildings) {
+                    for (Floor floor : building.getFloors()) {
+                        floor.cancelFireDrill();
+                    }
+                }
+            }
+            long perRoomTime = System.nanoTime() - start;
+
+            System.out.printf("bulk drill + cancel     %10.1f us%n",
+                    bulkTime / 1e3 / RUNS);
+            System.out.printf("per room drill + cancel %10.1f us%n",
+                    perRoomTime / 1e3 / RUNS);
+        }
+    }
+}
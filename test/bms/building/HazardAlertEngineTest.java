@@ -0,0 +1,157 @@
+package bms.building;
+
+import bms.floor.Floor;
+import bms.hazardevaluation.RuleBasedHazardEvaluator;
+import bms.room.Room;
+import bms.room.RoomState;
+import bms.room.RoomType;
+import bms.sensors.HazardSensor;
+import bms.sensors.NoiseSensor;
+import bms.sensors.SensorFeed;
+import bms.sensors.TemperatureSensor;
+import bms.util.SimulationClock;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class HazardAlertEngineTest {
+
+    private Building building;
+    private Floor floor;
+    private List<HazardAlert> alerts;
+
+    @Before
+    public void setUp() throws Exception {
+        building = new Building("Alerts");
+        floor = new Floor(1, 10, 10);
+        building.addFloor(floor);
+        alerts = new ArrayList<>();
+    }
+
+    private Room addRoom(int number, HazardSensor sensor) throws Exception {
+        Room room = new Room(number, RoomType.OFFICE, 10);
+        floor.addRoom(room);
+        room.addSensor(sensor);
+        room.setHazardEvaluator(new RuleBasedHazardEvaluator(List.of(sensor)));
+        return room;
+    }
+
+    private void tick(int minutes) {
+        SimulationClock clock = building.getClock();
+        for (int i = 0; i < minutes; i++) {
+            clock.elapseOneMinute();
+        }
+    }
+
+    private void assertAlert(HazardAlert alert, HazardAlert.Type type,
+                             Room room, long minute) {
+        assertEquals(type, alert.getType());
+        assertSame(room, alert.getRoom());
+        assertEquals(minute, alert.getMinute());
+    }
+
+    @Test
+    public void testAlertsOnlyEvaluateChangedRooms() throws Exception {
+        Room fire = addRoom(1, new TemperatureSensor(new int[]{20, 20, 70, 70, 20}));
+        Room quiet = addRoom(2, new NoiseSensor(new int[]{50}, 5));
+        HazardAlertEngine engine = new HazardAlertEngine(building, 50, 30);
+        engine.addListener(alerts::add);
+
+        tick(10);
+        assertEquals(8, alerts.size());
+        assertAlert(alerts.get(0), HazardAlert.Type.HAZARD_RAISED, fire, 2);
+        assertAlert(alerts.get(1), HazardAlert.Type.STATE_CHANGED, fire, 2);
+        assertEquals(RoomState.OPEN, alerts.get(1).getPreviousState());
+        assertEquals(RoomState.EVACUATE, alerts.get(1).getState());
+        assertAlert(alerts.get(2), HazardAlert.Type.HAZARD_CLEARED, fire, 4);
+        assertAlert(alerts.get(3), HazardAlert.Type.STATE_CHANGED, fire, 4);
+        assertAlert(alerts.get(4), HazardAlert.Type.HAZARD_RAISED, fire, 7);
+        // the fire room is only evaluated when its reading changes
+        assertEquals(4, engine.getEvaluations());
+        assertTrue(engine.getRaisedRooms().isEmpty());
+
+        quiet.setFireDrill(true);
+        tick(1);
+        assertEquals(9, alerts.size());
+        assertAlert(alerts.get(8), HazardAlert.Type.STATE_CHANGED, quiet, 11);
+        assertEquals(5, engine.getEvaluations());
+
+        engine.stop();
+        quiet.setFireDrill(false);
+        tick(10);
+        assertEquals(9, alerts.size());
+    }
+
+    @Test
+    public void testHysteresis() throws Exception {
+        // hazard levels 25, 70, 35, 70, 25
+        Room room = addRoom(1, new NoiseSensor(new int[]{50, 65, 55, 65, 50}, 1));
+        HazardAlertEngine engine = new HazardAlertEngine(building, 60, 30);
+        engine.addListener(alerts::add);
+
+        tick(3);
+        assertEquals(1, alerts.size());
+        assertAlert(alerts.get(0), HazardAlert.Type.HAZARD_RAISED, room, 1);
+        assertEquals(70, alerts.get(0).getHazardLevel());
+        assertEquals(List.of(room), engine.getRaisedRooms());
+
+        tick(1);
+        assertEquals(2, alerts.size());
+        assertAlert(alerts.get(1), HazardAlert.Type.HAZARD_CLEARED, room, 4);
+        assertEquals(25, alerts.get(1).getHazardLevel());
+    }
+
+    @Test
+    public void testAttachingFeedReevaluatesRoom() throws Exception {
+        TemperatureSensor sensor = new TemperatureSensor(new int[]{20});
+        Room room = addRoom(1, sensor);
+        HazardAlertEngine engine = new HazardAlertEngine(building, 50, 30);
+        engine.addListener(alerts::add);
+        tick(5);
+        assertTrue(alerts.isEmpty());
+
+        SensorFeed feed = new SensorFeed(4, 20);
+        sensor.setFeed(feed);
+        feed.offer(90);
+        tick(1);
+        assertEquals(100, room.getHazardLevel());
+        assertEquals(2, alerts.size());
+        assertAlert(alerts.get(0), HazardAlert.Type.HAZARD_RAISED, room, 6);
+
+        sensor.setFeed(null);
+        tick(1);
+        assertEquals(0, room.getHazardLevel());
+        assertAlert(alerts.get(2), HazardAlert.Type.HAZARD_CLEARED, room, 7);
+    }
+
+    @Test
+    public void testWatchesRoomsAddedLater() throws Exception {
+        HazardAlertEngine engine = new HazardAlertEngine(building, 50, 30);
+        engine.addListener(alerts::add);
+        Room first = addRoom(1, new TemperatureSensor(new int[]{20, 70}));
+        Floor upstairs = new Floor(2, 10, 10);
+        building.addFloor(upstairs);
+        floor = upstairs;
+        Room second = addRoom(2, new TemperatureSensor(new int[]{20, 70}));
+
+        tick(1);
+        assertEquals(4, alerts.size());
+        assertAlert(alerts.get(0), HazardAlert.Type.HAZARD_RAISED, first, 1);
+        assertAlert(alerts.get(2), HazardAlert.Type.HAZARD_RAISED, second, 1);
+
+        engine.stop();
+        addRoom(3, new TemperatureSensor(new int[]{20, 70}));
+        building.addFloor(new Floor(3, 10, 10));
+        tick(1);
+        assertEquals(4, alerts.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testClearAboveRaiseThreshold() {
+        new HazardAlertEngine(building, 30, 50);
+    }
+}
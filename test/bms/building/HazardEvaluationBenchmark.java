@@ -0,0 +1,82 @@
+package bms.building;
+
+import bms.floor.Floor;
+import bms.hazardevaluation.HazardBatch;
+import bms.hazardevaluation.HazardEvaluator;
+import bms.room.Room;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares evaluating every room's hazard level through its own evaluator
+ * with evaluating them in bulk, on a generated campus save file.
+ * <p>
+ * Run with: java bms.building.HazardEvaluationBenchmark [numRooms]
+ */
+public class HazardEvaluationBenchmark {
+
+    private static final int RUNS = 50;
+
+    public static void main(String[] args) throws Exception {
+        int numRooms = args.length > 0 ? Integer.parseInt(args[0]) : 40000;
+        File file = File.createTempFile("campus", ".txt");
+        file.deleteOnExit();
+        BuildingInitialiserBenchmark.writeCampus(file, numRooms);
+        List<Building> buildings = BuildingInitialiser.loadBuildings(file.getPath());
+
+        List<HazardEvaluator> evaluators = new ArrayList<>();
+        for (Building building : buildings) {
+            for (Floor floor : building.getFloors()) {
+                for (Room room : floor.getRooms()) {
+                    if (room.getHazardEvaluator() != null) {
+                        evaluators.add(room.getHazardEvaluator());
+                    }
+                }
+            }
+        }
+        HazardBatch batch = new HazardBatch(evaluators);
+        System.out.printf("%d evaluators, %d sensors%n", batch.size(),
+                batch.getNumberOfSensors());
+
+        int[] expected = new int[evaluators.size()];
+        for (int warmup = 0; warmup < 3; warmup++) {
+            long start = System.nanoTime();
+            for (int run = 0; run < RUNS; run++) {
+                for (int i = 0; i < expected.length; i++) {
+                    expected[i] = evaluators.get(i).evaluateHazardLevel();
+                }
+            }
+            long perRoomTime = System.nanoTime() - start;
+
+            int[] levels = null;
+            start = System.nanoTime();
+            for (int run = 0; run < RUNS; run++) {
+                levels = batch.evaluate();
+            }
+            long batchTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int max = 0;
+            for (int run = 0; run < RUNS; run++) {
+                for (Building building : buildings) {
+                    max = Math.max(max,
+                            building.evaluateHazards().getMaxHazardLevel());
+                }
+            }
+            long reportTime = System.nanoTime() - start;
+
+            for (int i = 0; i < expected.length; i++) {
+                if (levels[i] != expected[i]) {
+                    throw new AssertionError("level " + i + " differs: "
+                            + levels[i] + " != " + expected[i]);
+                }
+            }
+            System.out.printf("per room        %8.2f ms%n", perRoomTime / 1e6 / RUNS);
+            System.out.printf("batch           %8.2f ms%n", batchTime / 1e6 / RUNS);
+            System.out.printf("evaluateHazards %8.2f ms (max %d)%n",
+                    reportTime / 1e6 / RUNS, max);
+        }
+    }
+}
@@ -82,6 +82,34 @@ public class MaintenanceScheduleTest {
         assertEquals(4, maintenanceSchedule.getTimeElapsedCurrentRoom());
     }
 
+    @Test
+    public void elapseMinutes() {
+        for (int minutes = 0; minutes < 200; minutes += 7) {
+            List<Room> stepped = List.of(new Room(101, RoomType.STUDY, 20),
+                    new Room(102, RoomType.OFFICE, 25.6),
+                    new Room(103, RoomType.LABORATORY, 10));
+            List<Room> jumped = List.of(new Room(101, RoomType.STUDY, 20),
+                    new Room(102, RoomType.OFFICE, 25.6),
+                    new Room(103, RoomType.LABORATORY, 10));
+            MaintenanceSchedule steppedSchedule = new MaintenanceSchedule(stepped);
+            MaintenanceSchedule jumpedSchedule = new MaintenanceSchedule(jumped);
+            for (int i = 0; i < 3; i++) {
+                steppedSchedule.elapseOneMinute();
+            }
+            jumpedSchedule.elapseMinutes(3);
+
+            for (int i = 0; i < minutes; i++) {
+                steppedSchedule.elapseOneMinute();
+            }
+            jumpedSchedule.elapseMinutes(minutes);
+            assertEquals(steppedSchedule.toString(), jumpedSchedule.toString());
+            for (int i = 0; i < stepped.size(); i++) {
+                assertEquals(stepped.get(i).maintenanceOngoing(),
+                        jumped.get(i).maintenanceOngoing());
+            }
+        }
+    }
+
     @Test
     public void skipCurrentMaintenance() {
         floor1.createMaintenanceSchedule(maintenanceList);
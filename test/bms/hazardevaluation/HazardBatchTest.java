@@ -0,0 +1,135 @@
+package bms.hazardevaluation;
+
+import bms.building.Building;
+import bms.building.HazardReport;
+import bms.floor.Floor;
+import bms.room.Room;
+import bms.room.RoomType;
+import bms.sensors.CarbonDioxideSensor;
+import bms.sensors.HazardSensor;
+import bms.sensors.NoiseSensor;
+import bms.sensors.OccupancySensor;
+import bms.sensors.TemperatureSensor;
+import bms.sensors.TimedSensor;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class HazardBatchTest {
+
+    private static int[] randomReadings(Random random, int length, int bound) {
+        int[] readings = new int[length];
+        for (int i = 0; i < length; i++) {
+            readings[i] = random.nextInt(bound);
+        }
+        return readings;
+    }
+
+    /**
+     * Returns a random non-empty subset of the four sensor types.
+     */
+    private static List<HazardSensor> randomSensors(Random random) {
+        List<HazardSensor> sensors = new ArrayList<>();
+        while (sensors.isEmpty()) {
+            if (random.nextBoolean()) {
+                sensors.add(new CarbonDioxideSensor(
+                        randomReadings(random, 6, 5000), 1 + random.nextInt(5),
+                        700, 300));
+            }
+            if (random.nextBoolean()) {
+                sensors.add(new NoiseSensor(randomReadings(random, 5, 90),
+                        1 + random.nextInt(5)));
+            }
+            if (random.nextBoolean()) {
+                sensors.add(new OccupancySensor(randomReadings(random, 4, 25),
+                        1 + random.nextInt(5), 20));
+            }
+            if (random.nextBoolean()) {
+                sensors.add(new TemperatureSensor(randomReadings(random, 3, 80)));
+            }
+        }
+        return sensors;
+    }
+
+    private static Map<HazardSensor, Integer> randomWeightings(Random random,
+            List<HazardSensor> sensors) {
+        Map<HazardSensor, Integer> weightings = new HashMap<>();
+        int remaining = 100;
+        for (int i = 0; i < sensors.size() - 1; i++) {
+            int weighting = random.nextInt(remaining + 1);
+            weightings.put(sensors.get(i), weighting);
+            remaining -= weighting;
+        }
+        weightings.put(sensors.get(sensors.size() - 1), remaining);
+        return weightings;
+    }
+
+    @Test
+    public void testBatchMatchesEvaluators() {
+        Random random = new Random(20);
+        List<HazardEvaluator> evaluators = new ArrayList<>();
+        List<TimedSensor> allSensors = new ArrayList<>();
+        evaluators.add(new RuleBasedHazardEvaluator(new ArrayList<>()));
+        for (int i = 0; i < 500; i++) {
+            List<HazardSensor> sensors = randomSensors(random);
+            for (HazardSensor sensor : sensors) {
+                allSensors.add((TimedSensor) sensor);
+            }
+            evaluators.add(i % 2 == 0
+                    ? new RuleBasedHazardEvaluator(sensors)
+                    : new WeightingBasedHazardEvaluator(
+                            randomWeightings(random, sensors)));
+        }
+        HazardBatch batch = new HazardBatch(evaluators);
+        assertEquals(evaluators.size(), batch.size());
+
+        for (int minute = 0; minute < 60; minute++) {
+            int[] levels = batch.evaluate();
+            for (int i = 0; i < evaluators.size(); i++) {
+                assertEquals(evaluators.get(i).evaluateHazardLevel(), levels[i]);
+            }
+            for (TimedSensor sensor : allSensors) {
+                sensor.elapseOneMinute();
+            }
+        }
+    }
+
+    @Test
+    public void testBuildingReport() throws Exception {
+        Building building = new Building("Report");
+        Floor floor = new Floor(1, 10, 10);
+        building.addFloor(floor);
+        int[] temperatures = {20, 70, 30, 68};
+        for (int i = 0; i < temperatures.length; i++) {
+            Room room = new Room(i + 1, RoomType.OFFICE, 10);
+            floor.addRoom(room);
+            TemperatureSensor sensor = new TemperatureSensor(
+                    new int[]{temperatures[i]});
+            room.addSensor(sensor);
+            if (i != 2) {
+                room.setHazardEvaluator(new RuleBasedHazardEvaluator(
+                        List.of(sensor)));
+            }
+        }
+
+        HazardReport report = building.evaluateHazards();
+        assertEquals(3, report.size());
+        assertEquals(100, report.getMaxHazardLevel());
+        assertEquals(2, report.countAtLeast(50));
+        assertEquals(4, report.getRoomsAtLeast(100).get(1).getRoomNumber());
+        int[] histogram = report.getHistogram();
+        assertEquals(HazardReport.HISTOGRAM_BANDS, histogram.length);
+        assertEquals(1, histogram[0]);
+        assertEquals(2, histogram[10]);
+        for (int i = 0; i < report.size(); i++) {
+            assertEquals(report.getRooms().get(i).getHazardLevel(),
+                    report.getHazardLevel(i));
+        }
+    }
+}
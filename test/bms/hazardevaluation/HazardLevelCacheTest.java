@@ -0,0 +1,98 @@
+package bms.hazardevaluation;
+
+import bms.sensors.HazardSensor;
+import bms.sensors.NoiseSensor;
+import bms.sensors.OccupancySensor;
+import bms.sensors.SensorFeed;
+import bms.sensors.TemperatureSensor;
+import bms.util.SimulationClock;
+import bms.util.TimedItemManager;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class HazardLevelCacheTest {
+
+    private SimulationClock clock;
+    private List<HazardSensor> sensors;
+    private RuleBasedHazardEvaluator evaluator;
+
+    @Before
+    public void setUp() {
+        clock = new SimulationClock();
+        sensors = List.of(
+                new NoiseSensor(new int[]{55, 55, 70, 62}, 5),
+                new OccupancySensor(new int[]{3, 6, 9}, 5, 10),
+                new TemperatureSensor(new int[]{21, 24, 21}));
+        SimulationClock.moveTimedItems(List.of((NoiseSensor) sensors.get(0),
+                (OccupancySensor) sensors.get(1),
+                (TemperatureSensor) sensors.get(2)),
+                TimedItemManager.getInstance().getClock(), clock);
+        evaluator = new RuleBasedHazardEvaluator(sensors);
+        HazardLevelCache.resetStatistics();
+    }
+
+    @Test
+    public void testCachedLevelMatchesEvaluation() {
+        HazardLevelCache cache = new HazardLevelCache(evaluator, sensors);
+        for (int minute = 0; minute < 200; minute++) {
+            assertEquals(evaluator.evaluateHazardLevel(), cache.getHazardLevel());
+            assertEquals(cache.getHazardLevel(), cache.getHazardLevel());
+            clock.elapseMinutes(minute % 7 == 0 ? 3 : 1);
+        }
+        assertEquals(600, HazardLevelCache.getHits()
+                + HazardLevelCache.getMisses());
+    }
+
+    @Test
+    public void testEvaluatesOnlyWhenReadingsChange() {
+        HazardSensor noise = new NoiseSensor(new int[]{50, 50, 50, 60}, 5);
+        SimulationClock.moveTimedItems(List.of((NoiseSensor) noise),
+                TimedItemManager.getInstance().getClock(), clock);
+        HazardLevelCache cache = new HazardLevelCache(
+                new RuleBasedHazardEvaluator(List.of(noise)), List.of(noise));
+        // the reading changes after 15 minutes, and back after another 5
+        for (int minute = 0; minute < 40; minute++) {
+            cache.getHazardLevel();
+            clock.elapseOneMinute();
+        }
+        assertEquals(4, HazardLevelCache.getMisses());
+        assertEquals(36, HazardLevelCache.getHits());
+        assertEquals(0.9, HazardLevelCache.getHitRate(), 0.001);
+    }
+
+    @Test
+    public void testUnscheduledSensorsAreNotCached() {
+        TemperatureSensor sensor = new TemperatureSensor(new int[]{20, 70});
+        TimedItemManager.getInstance().getClock().unregisterTimedItem(sensor);
+        HazardLevelCache cache = new HazardLevelCache(
+                new RuleBasedHazardEvaluator(List.of(sensor)), List.of(sensor));
+        assertEquals(0, cache.getHazardLevel());
+        sensor.elapseOneMinute();
+        assertEquals(100, cache.getHazardLevel());
+        assertEquals(0, HazardLevelCache.getHits());
+    }
+
+    @Test
+    public void testFeedInvalidatesCachedLevel() {
+        TemperatureSensor sensor = new TemperatureSensor(new int[]{20});
+        SimulationClock.moveTimedItems(List.of(sensor),
+                TimedItemManager.getInstance().getClock(), clock);
+        HazardLevelCache cache = new HazardLevelCache(
+                new RuleBasedHazardEvaluator(List.of(sensor)), List.of(sensor));
+        assertEquals(0, cache.getHazardLevel());
+
+        SensorFeed feed = new SensorFeed(4, 20);
+        sensor.setFeed(feed);
+        feed.offer(90);
+        clock.elapseOneMinute();
+        assertEquals(100, sensor.getHazardLevel());
+        assertEquals(100, cache.getHazardLevel());
+
+        sensor.setFeed(null);
+        assertEquals(0, cache.getHazardLevel());
+    }
+}
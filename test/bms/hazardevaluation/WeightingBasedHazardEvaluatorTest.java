@@ -0,0 +1,40 @@
+package bms.hazardevaluation;
+
+import bms.sensors.CarbonDioxideSensor;
+import bms.sensors.HazardSensor;
+import bms.sensors.NoiseSensor;
+import bms.sensors.TemperatureSensor;
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class WeightingBasedHazardEvaluatorTest {
+
+    @Test
+    public void testWeightingsFrozenInCanonicalOrder() {
+        TemperatureSensor temperature = new TemperatureSensor(new int[]{70});
+        NoiseSensor noise = new NoiseSensor(new int[]{50}, 1);
+        CarbonDioxideSensor carbonDioxide = new CarbonDioxideSensor(
+                new int[]{1000}, 1, 600, 400);
+        Map<HazardSensor, Integer> weightings = new LinkedHashMap<>();
+        weightings.put(temperature, 20);
+        weightings.put(noise, 50);
+        weightings.put(carbonDioxide, 30);
+        WeightingBasedHazardEvaluator evaluator =
+                new WeightingBasedHazardEvaluator(weightings);
+
+        assertEquals(List.of(30, 50, 20), evaluator.getWeightings());
+        int expected = (int) Math.round(carbonDioxide.getHazardLevel() * 0.3
+                + noise.getHazardLevel() * 0.5
+                + temperature.getHazardLevel() * 0.2);
+        assertEquals(expected, evaluator.evaluateHazardLevel());
+
+        weightings.put(temperature, 100);
+        assertEquals(List.of(30, 50, 20), evaluator.getWeightings());
+        assertEquals(expected, evaluator.evaluateHazardLevel());
+    }
+}
@@ -0,0 +1,89 @@
+package bms.room;
+
+import bms.building.Building;
+import bms.floor.Floor;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FireDrillStateTest {
+
+    private Building building;
+    private List<Room> rooms;
+
+    @Before
+    public void setUp() throws Exception {
+        building = new Building("Drills");
+        rooms = new ArrayList<>();
+        Floor floor = new Floor(1, 100, 100);
+        building.addFloor(floor);
+        // enough rooms to span several words
+        for (int i = 0; i < 150; i++) {
+            RoomType type = RoomType.values()[i % RoomType.values().length];
+            Room room = new Room(i + 1, type, 10);
+            floor.addRoom(room);
+            rooms.add(room);
+        }
+    }
+
+    @Test
+    public void testFireDrillByType() throws Exception {
+        building.fireDrill(RoomType.LABORATORY);
+        for (Room room : rooms) {
+            boolean drill = room.getType() == RoomType.LABORATORY;
+            assertEquals(drill, room.fireDrillOngoing());
+            assertEquals(drill ? RoomState.EVACUATE : RoomState.OPEN,
+                    room.evaluateRoomState());
+        }
+
+        building.fireDrill(null);
+        for (Room room : rooms) {
+            assertTrue(room.fireDrillOngoing());
+        }
+
+        building.cancelFireDrill();
+        for (Room room : rooms) {
+            assertFalse(room.fireDrillOngoing());
+        }
+    }
+
+    @Test
+    public void testRoomDrillsKeptWhenIndexed() throws Exception {
+        Floor floor = new Floor(2, 10, 10);
+        Room room = new Room(201, RoomType.STUDY, 10);
+        floor.addRoom(room);
+        room.setFireDrill(true);
+        building.addFloor(floor);
+        assertTrue(room.fireDrillOngoing());
+
+        building.cancelFireDrill();
+        assertFalse(room.fireDrillOngoing());
+        room.setFireDrill(true);
+        assertTrue(room.fireDrillOngoing());
+        assertFalse(rooms.get(0).fireDrillOngoing());
+    }
+
+    @Test
+    public void testObserversNotifiedOfChanges() throws Exception {
+        List<Room> changed = new ArrayList<>();
+        RoomObserver observer = changed::add;
+        Room first = rooms.get(0);
+        Room second = rooms.get(1);
+        first.addObserver(observer);
+        second.addObserver(observer);
+        second.setFireDrill(true);
+        assertEquals(List.of(second), changed);
+
+        building.fireDrill(null);
+        assertEquals(List.of(second, first), changed);
+
+        rooms.get(100).addObserver(observer);
+        second.removeObserver(observer);
+        building.cancelFireDrill();
+        assertEquals(List.of(second, first, first, rooms.get(100)), changed);
+    }
+}
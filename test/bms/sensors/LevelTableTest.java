@@ -0,0 +1,79 @@
+package bms.sensors;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LevelTableTest {
+
+    @Test
+    public void testNoiseTablesMatchFormulas() {
+        for (int reading = 0; reading < 200; reading++) {
+            assertEquals(NoiseSensor.computeHazardLevel(reading),
+                    NoiseSensor.hazardLevel(reading));
+            assertEquals(NoiseSensor.computeComfortLevel(reading),
+                    NoiseSensor.comfortLevel(reading));
+        }
+    }
+
+    @Test
+    public void testTemperatureAndCarbonDioxideTablesMatchFormulas() {
+        for (int reading = -100; reading < 200; reading++) {
+            assertEquals(TemperatureSensor.computeHazardLevel(reading),
+                    TemperatureSensor.hazardLevel(reading));
+            assertEquals(TemperatureSensor.computeComfortLevel(reading),
+                    TemperatureSensor.comfortLevel(reading));
+        }
+        for (int reading = 0; reading < 6000; reading++) {
+            assertEquals(CarbonDioxideSensor.computeHazardLevel(reading),
+                    CarbonDioxideSensor.hazardLevel(reading));
+        }
+    }
+
+    @Test
+    public void testCarbonDioxideSensorLevelsMatchFormula() {
+        int[] readings = new int[1500];
+        for (int i = 0; i < readings.length; i++) {
+            readings[i] = i;
+        }
+        CarbonDioxideSensor sensor = new CarbonDioxideSensor(readings, 1, 700, 300);
+        // too wide for a table, so computed
+        CarbonDioxideSensor wide = new CarbonDioxideSensor(readings, 1,
+                LevelTable.MAX_SIZE, LevelTable.MAX_SIZE);
+        for (int reading : readings) {
+            assertEquals(CarbonDioxideSensor.computeComfortLevel(reading, 700, 300),
+                    sensor.getComfortLevel());
+            assertEquals(CarbonDioxideSensor.computeComfortLevel(reading,
+                    LevelTable.MAX_SIZE, LevelTable.MAX_SIZE),
+                    wide.getComfortLevel());
+            sensor.elapseOneMinute();
+            wide.elapseOneMinute();
+        }
+    }
+
+    @Test
+    public void testOccupancySensorLevelsMatchFormulas() {
+        int[] readings = {0, 1, 7, 15, 29, 30, 31, 100};
+        for (int capacity : new int[]{0, 1, 30}) {
+            OccupancySensor sensor = new OccupancySensor(readings, 1, capacity);
+            for (int reading : readings) {
+                assertEquals(OccupancySensor.computeHazardLevel(reading, capacity),
+                        sensor.getHazardLevel());
+                assertEquals(OccupancySensor.computeComfortLevel(reading, capacity),
+                        sensor.getComfortLevel());
+                sensor.elapseOneMinute();
+            }
+        }
+    }
+
+    @Test
+    public void testTablesAreBounded() {
+        assertNull(LevelTable.of(0, LevelTable.MAX_SIZE, reading -> 0));
+        assertNull(LevelTable.of(5, 4, reading -> 0));
+        LevelTable table = LevelTable.of(10, 12, reading -> reading * 2);
+        assertEquals(-1, LevelTable.lookup(table, 9));
+        assertEquals(22, LevelTable.lookup(table, 11));
+        assertEquals(-1, LevelTable.lookup(table, 13));
+        assertEquals(-1, LevelTable.lookup(null, 11));
+    }
+}
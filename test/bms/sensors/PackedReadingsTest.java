@@ -0,0 +1,75 @@
+package bms.sensors;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PackedReadingsTest {
+
+    @Test
+    public void testPackedReadingsMatchArray() {
+        Random random = new Random(42);
+        for (int bits = 0; bits <= PackedReadings.MAX_BITS; bits++) {
+            int[] readings = new int[1440];
+            int base = random.nextInt(1000);
+            for (int i = 0; i < readings.length; i++) {
+                readings[i] = base + (bits == 0 ? 0 : random.nextInt(1 << bits));
+            }
+            PackedReadings packed = PackedReadings.packIfSmaller(readings);
+            assertNotNull(packed);
+            assertEquals(readings.length, packed.length());
+            assertArrayEquals(readings, packed.toArray());
+            assertTrue(packed.getPackedBytes() <= 2L * readings.length);
+        }
+    }
+
+    @Test
+    public void testShortOrWideReadingsAreNotPacked() {
+        assertNull(PackedReadings.packIfSmaller(new int[]{1, 2, 3}));
+        int[] wide = new int[100];
+        wide[1] = 1 << 20;
+        assertNull(PackedReadings.packIfSmaller(wide));
+    }
+
+    @Test
+    public void testTraceSensorMatchesUnpackedSensor() {
+        int[] trace = new int[1440];
+        for (int i = 0; i < trace.length; i++) {
+            trace[i] = 40 + (i * 7) % 50;
+        }
+        TimedSensor packed = new NoiseSensor(trace, 1);
+        assertTrue(packed.hasPackedReadings());
+        assertArrayEquals(trace, packed.getSensorReadings());
+
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < trace.length; i++) {
+            expected.append(i > 0 ? "," : "").append(trace[i]);
+        }
+        assertEquals("NoiseSensor:" + expected + ":1", packed.encode());
+
+        for (int minute = 0; minute < 2 * trace.length; minute += 37) {
+            assertEquals(trace[minute % trace.length], packed.getCurrentReading());
+            packed.elapseMinutes(37);
+        }
+
+        int[] changed = Arrays.copyOf(trace, trace.length);
+        changed[trace.length - 1]++;
+        assertEquals(packed, new NoiseSensor(trace, 1));
+        assertFalse(packed.equals(new NoiseSensor(changed, 1)));
+    }
+
+    @Test
+    public void testIdenticalTracesShareReadings() {
+        int[] trace = new int[1440];
+        for (int i = 0; i < trace.length; i++) {
+            trace[i] = 300 + (i * 13) % 200;
+        }
+        TimedSensor first = new NoiseSensor(trace, 1);
+        TimedSensor second = new NoiseSensor(Arrays.copyOf(trace, trace.length), 1);
+        assertTrue(first.hasPackedReadings());
+        assertSame(first.getReadingPattern(), second.getReadingPattern());
+    }
+}
@@ -0,0 +1,131 @@
+package bms.sensors;
+
+import bms.floor.Floor;
+import bms.room.Room;
+import bms.room.RoomType;
+import bms.util.SimulationClock;
+import bms.util.TimedItemManager;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ReadingHistoryTest {
+
+    private int[] readings;
+    private SimulationClock clock;
+    private TemperatureSensor sensor;
+
+    @Before
+    public void setUp() {
+        readings = new int[]{20, 24, 18, 30, 22, 27, 19};
+        clock = new SimulationClock();
+        sensor = new TemperatureSensor(readings);
+    }
+
+    private ReadingHistory createHistory(int minuteCapacity, int hourCapacity) {
+        ReadingHistory history = new ReadingHistory(sensor, minuteCapacity,
+                hourCapacity);
+        SimulationClock.moveTimedItems(List.of(sensor, history),
+                TimedItemManager.getInstance().getClock(), clock);
+        return history;
+    }
+
+    private static void assertStatistics(List<Integer> expected,
+                                         ReadingStatistics actual) {
+        assertEquals(expected.size(), actual.getCount());
+        long sum = 0;
+        for (int reading : expected) {
+            sum += reading;
+        }
+        assertEquals(sum, actual.getSum());
+        assertEquals(expected.stream().mapToInt(i -> i).min().orElse(0),
+                actual.getMin());
+        assertEquals(expected.stream().mapToInt(i -> i).max().orElse(0),
+                actual.getMax());
+    }
+
+    @Test
+    public void testMinuteWindowsAreExact() {
+        ReadingHistory history = createHistory(30, 2);
+        assertEquals(0, history.getStatistics(5).getCount());
+
+        List<Integer> recorded = new ArrayList<>();
+        for (int minute = 0; minute < 45; minute++) {
+            clock.elapseOneMinute();
+            recorded.add(sensor.getCurrentReading());
+        }
+        for (int window : new int[]{1, 4, 7, 30}) {
+            assertStatistics(recorded.subList(recorded.size() - window,
+                    recorded.size()), history.getStatistics(window));
+        }
+    }
+
+    @Test
+    public void testHourWindowsRollUpWholeHours() {
+        ReadingHistory history = createHistory(10, 3);
+        List<Integer> recorded = new ArrayList<>();
+        for (int minute = 0; minute < 150; minute++) {
+            clock.elapseOneMinute();
+            recorded.add(sensor.getCurrentReading());
+        }
+        // the current hour holds 30 minutes, the one before all 60
+        assertStatistics(recorded.subList(120, 150), history.getStatistics(11));
+        assertStatistics(recorded.subList(60, 150), history.getStatistics(61));
+        assertStatistics(recorded, history.getStatistics(1000));
+    }
+
+    @Test
+    public void testJumpsRecordSkippedMinutes() {
+        ReadingHistory history = createHistory(20, 1);
+        clock.elapseMinutes(12);
+        List<Integer> recorded = new ArrayList<>();
+        for (int minute = 1; minute <= 12; minute++) {
+            recorded.add(readings[minute % readings.length]);
+        }
+        assertStatistics(recorded, history.getStatistics(20));
+
+        // only the current hour is kept, 32 minutes into it
+        clock.elapseMinutes(200);
+        assertEquals(32, history.getStatistics(60).getCount());
+        assertEquals(20, history.getStatistics(20).getCount());
+        assertEquals(sensor.getCurrentReading(),
+                history.getStatistics(1).getMax());
+    }
+
+    @Test
+    public void testRoomAndFloorStatistics() throws Exception {
+        Floor floor = new Floor(1, 10, 10);
+        Room first = new Room(1, RoomType.OFFICE, 20);
+        Room second = new Room(2, RoomType.OFFICE, 20);
+        floor.addRoom(first);
+        floor.addRoom(second);
+        first.addSensor(new TemperatureSensor(new int[]{10, 20}));
+        first.recordHistory(60, 1);
+        second.recordHistory(60, 1);
+        second.addSensor(new TemperatureSensor(new int[]{30}));
+        assertNull(first.getReadingStatistics("NoiseSensor", 10));
+
+        SimulationClock floorClock = floor.getClock();
+        for (int minute = 0; minute < 4; minute++) {
+            floorClock.elapseOneMinute();
+        }
+        ReadingStatistics statistics =
+                first.getReadingStatistics("TemperatureSensor", 10);
+        assertEquals(4, statistics.getCount());
+        assertEquals(15.0, statistics.getMean(), 0.001);
+
+        statistics = floor.getReadingStatistics("TemperatureSensor", 10);
+        assertEquals(8, statistics.getCount());
+        assertEquals(10, statistics.getMin());
+        assertEquals(30, statistics.getMax());
+        assertEquals(22.5, statistics.getMean(), 0.001);
+
+        first.removeSensor(first.getSensor("TemperatureSensor"));
+        assertEquals(4, floor.getReadingStatistics("TemperatureSensor", 10)
+                .getCount());
+    }
+}
@@ -0,0 +1,29 @@
+package bms.sensors;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ReadingPatternPoolTest {
+
+    @Test
+    public void testSensorsShareIdenticalReadings() {
+        ReadingPatternPool pool = ReadingPatternPool.getInstance();
+        int[] readings = {21, 22, 23, 98765};
+        TimedSensor first = new TemperatureSensor(readings);
+        pool.resetStatistics();
+        TimedSensor second = new TemperatureSensor(new int[]{21, 22, 23, 98765});
+        TimedSensor other = new NoiseSensor(new int[]{21, 22, 23, 98764}, 1);
+
+        assertSame(first.getSharedReadings(), second.getSharedReadings());
+        assertNotSame(first.getSharedReadings(), other.getSharedReadings());
+        assertEquals(2, pool.getLookups());
+        assertEquals(1, pool.getHits());
+        assertEquals(0.5, pool.getHitRate(), 1e-9);
+        assertTrue(pool.getBytesSaved() >= 4 * readings.length);
+
+        // the pool keeps its own copy
+        readings[0] = 30;
+        assertEquals(21, second.getCurrentReading());
+    }
+}
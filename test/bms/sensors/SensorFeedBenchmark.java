@@ -0,0 +1,73 @@
+package bms.sensors;
+
+import bms.util.SimulationClock;
+import bms.util.TimedItemManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the rate at which readings can be offered to live sensor feeds
+ * while the sensors' clock is ticked and their hazard levels are read on
+ * another thread.
+ * <p>
+ * Run with: java bms.sensors.SensorFeedBenchmark [numSensors] [seconds]
+ */
+public class SensorFeedBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int numSensors = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        SimulationClock clock = new SimulationClock();
+        TimedItemManager manager = TimedItemManager.getInstance();
+        List<TemperatureSensor> sensors = new ArrayList<>();
+        List<SensorFeed> feeds = new ArrayList<>();
+        for (int i = 0; i < numSensors; i++) {
+            TemperatureSensor sensor = new TemperatureSensor(new int[]{20});
+            manager.unregisterTimedItem(sensor);
+            clock.registerTimedItem(sensor);
+            SensorFeed feed = new SensorFeed(1024, 20);
+            sensor.setFeed(feed);
+            sensors.add(sensor);
+            feeds.add(feed);
+        }
+
+        long end = System.nanoTime() + seconds * 1_000_000_000L;
+        long[] offered = new long[1];
+        long[] dropped = new long[1];
+        Thread producer = new Thread(() -> {
+            int reading = 0;
+            long count = 0;
+            long drops = 0;
+            while (System.nanoTime() < end) {
+                for (SensorFeed feed : feeds) {
+                    if (!feed.offer(15 + reading % 60)) {
+                        drops++;
+                    }
+                    count++;
+                }
+                reading++;
+            }
+            offered[0] = count;
+            dropped[0] = drops;
+        });
+        producer.start();
+
+        long ticks = 0;
+        long hazardReads = 0;
+        while (producer.isAlive()) {
+            clock.elapseOneMinute();
+            ticks++;
+            for (TemperatureSensor sensor : sensors) {
+                hazardReads += sensor.getHazardLevel() >= 0 ? 1 : 0;
+            }
+        }
+        producer.join();
+
+        System.out.printf("%d sensors, %d s: %,.0f readings/s offered "
+                        + "(%.1f%% dropped), %,d ticks, %,d hazard reads%n",
+                numSensors, seconds, offered[0] / (double) seconds,
+                100.0 * dropped[0] / Math.max(1, offered[0]), ticks, hazardReads);
+    }
+}
@@ -0,0 +1,113 @@
+package bms.sensors;
+
+import bms.util.SimulationClock;
+import bms.util.TimedItemManager;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SensorFeedTest {
+
+    @Test
+    public void testFeedPublishesLatestReading() {
+        SensorFeed feed = new SensorFeed(3, 10);
+        assertEquals(10, feed.getPublishedReading());
+        assertTrue(feed.offer(11));
+        assertTrue(feed.offer(12));
+        assertEquals(2, feed.getPending());
+        assertEquals(10, feed.getPublishedReading());
+
+        assertEquals(2, feed.publish());
+        assertEquals(12, feed.getPublishedReading());
+        assertEquals(0, feed.publish());
+        assertEquals(12, feed.getPublishedReading());
+
+        // capacity is rounded up to 4
+        for (int i = 0; i < 4; i++) {
+            assertTrue(feed.offer(20 + i));
+        }
+        // a full buffer drops its oldest reading, not the latest
+        assertFalse(feed.offer(30));
+        assertEquals(1, feed.getDropped());
+        assertEquals(4, feed.getPending());
+        assertEquals(4, feed.publish());
+        assertEquals(30, feed.getPublishedReading());
+    }
+
+    @Test
+    public void testLiveSensorPublishesAtUpdateFrequency() {
+        OccupancySensor sensor = new OccupancySensor(new int[]{0}, 2, 20);
+        SimulationClock clock = new SimulationClock();
+        SimulationClock.moveTimedItems(Collections.singletonList(sensor),
+                TimedItemManager.getInstance().getClock(), clock);
+        SensorFeed feed = new SensorFeed(16, 5);
+        sensor.setFeed(feed);
+        assertEquals(5, sensor.getCurrentReading());
+        assertEquals(25, sensor.getHazardLevel());
+
+        feed.offer(10);
+        clock.elapseOneMinute();
+        assertEquals(5, sensor.getCurrentReading());
+        clock.elapseOneMinute();
+        assertEquals(10, sensor.getCurrentReading());
+        assertEquals(50, sensor.getHazardLevel());
+
+        // a long jump publishes the latest reading
+        feed.offer(15);
+        feed.offer(20);
+        clock.elapseMinutes(100);
+        assertEquals(20, sensor.getCurrentReading());
+
+        // back to replaying its own readings
+        sensor.setFeed(null);
+        assertEquals(0, sensor.getCurrentReading());
+    }
+
+    @Test
+    public void testConcurrentIngestionAndTicks() throws Exception {
+        List<SensorFeed> feeds = new ArrayList<>();
+        List<NoiseSensor> sensors = new ArrayList<>();
+        SimulationClock clock = new SimulationClock();
+        for (int i = 0; i < 8; i++) {
+            NoiseSensor sensor = new NoiseSensor(new int[]{0}, 1);
+            SimulationClock.moveTimedItems(Collections.singletonList(sensor),
+                    TimedItemManager.getInstance().getClock(), clock);
+            SensorFeed feed = new SensorFeed(64, 0);
+            sensor.setFeed(feed);
+            sensors.add(sensor);
+            feeds.add(feed);
+        }
+        Path file = Files.createTempFile("feed", ".txt");
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            lines.append(i % feeds.size()).append(':').append(40 + i % 60).append('\n');
+        }
+        Files.write(file, lines.toString().getBytes());
+
+        SensorFeedReplay replay = new SensorFeedReplay(file, feeds, 200);
+        Thread producer = new Thread(replay);
+        producer.start();
+        while (producer.isAlive()) {
+            clock.elapseOneMinute();
+            for (NoiseSensor sensor : sensors) {
+                int level = sensor.getHazardLevel();
+                assertTrue(level >= 0 && level <= 100);
+            }
+        }
+        producer.join();
+        clock.elapseOneMinute();
+        assertEquals(200000, replay.getOffered());
+
+        for (int i = 0; i < feeds.size(); i++) {
+            assertEquals(0, feeds.get(i).getPending());
+            int reading = sensors.get(i).getCurrentReading();
+            assertTrue(reading >= 40 && reading < 100);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package bms.sensors;
+
+import java.util.Random;
+
+/**
+ * Compares computing sensor hazard and comfort levels from their formulas
+ * with looking them up in precomputed {@link LevelTable}s, for random
+ * readings in each sensor type's usual range.
+ * <p>
+ * Run with: java bms.sensors.SensorLevelBenchmark
+ */
+public class SensorLevelBenchmark {
+
+    private static final int READINGS = 1 << 16;
+    private static final int RUNS = 200;
+
+    private static final String[] NAMES = {"noise hazard", "noise comfort",
+            "co2 hazard", "co2 comfort", "occupancy hazard",
+            "occupancy comfort", "temperature hazard", "temperature comfort"};
+
+    /**
+     * Tables built as the sensors build them for an ideal value of 700 and a
+     * variation limit of 300, and for a capacity of 30.
+     */
+    private static final LevelTable CO2_COMFORT = LevelTable.of(401, 999,
+            reading -> CarbonDioxideSensor.computeComfortLevel(reading, 700, 300));
+    private static final LevelTable OCCUPANCY_HAZARD = LevelTable.of(0, 29,
+            reading -> OccupancySensor.computeHazardLevel(reading, 30));
+    private static final LevelTable OCCUPANCY_COMFORT = LevelTable.of(0, 29,
+            reading -> OccupancySensor.computeComfortLevel(reading, 30));
+
+    public static void main(String[] args) {
+        Random random = new Random(22);
+        int[][] readings = new int[NAMES.length][READINGS];
+        for (int i = 0; i < READINGS; i++) {
+            readings[0][i] = 30 + random.nextInt(60);
+            readings[1][i] = readings[0][i];
+            readings[2][i] = 300 + random.nextInt(6000);
+            readings[3][i] = 300 + random.nextInt(900);
+            readings[4][i] = random.nextInt(40);
+            readings[5][i] = readings[4][i];
+            readings[6][i] = 10 + random.nextInt(70);
+            readings[7][i] = readings[6][i];
+        }
+        for (int warmup = 0; warmup < 3; warmup++) {
+            System.out.println("-- run " + warmup);
+            for (int kind = 0; kind < NAMES.length; kind++) {
+                for (int reading : readings[kind]) {
+                    if (formula(kind, reading) != table(kind, reading)) {
+                        throw new AssertionError(NAMES[kind] + " differs at "
+                                + reading);
+                    }
+                }
+                long formulaTime = time(readings[kind], kind, false);
+                long tableTime = time(readings[kind], kind, true);
+                System.out.printf("%-19s formula %6.2f ns  table %6.2f ns%n",
+                        NAMES[kind], (double) formulaTime / RUNS / READINGS,
+                        (double) tableTime / RUNS / READINGS);
+            }
+        }
+    }
+
+    private static int formula(int kind, int reading) {
+        switch (kind) {
+            case 0:
+                return NoiseSensor.computeHazardLevel(reading);
+            case 1:
+                return NoiseSensor.computeComfortLevel(reading);
+            case 2:
+                return CarbonDioxideSensor.computeHazardLevel(reading);
+            case 3:
+                return CarbonDioxideSensor.computeComfortLevel(reading, 700, 300);
+            case 4:
+                return OccupancySensor.computeHazardLevel(reading, 30);
+            case 5:
+                return OccupancySensor.computeComfortLevel(reading, 30);
+            case 6:
+                return TemperatureSensor.computeHazardLevel(reading);
+            default:
+                return TemperatureSensor.computeComfortLevel(reading);
+        }
+    }
+
+    /**
+     * Looks the level up as the sensors do, falling back to the formula for
+     * readings outside the table.
+     */
+    private static int table(int kind, int reading) {
+        int level;
+        switch (kind) {
+            case 0:
+                return NoiseSensor.hazardLevel(reading);
+            case 1:
+                return NoiseSensor.comfortLevel(reading);
+            case 2:
+                return CarbonDioxideSensor.hazardLevel(reading);
+            case 3:
+                level = LevelTable.lookup(CO2_COMFORT, reading);
+                break;
+            case 4:
+                level = LevelTable.lookup(OCCUPANCY_HAZARD, reading);
+                break;
+            case 5:
+                level = LevelTable.lookup(OCCUPANCY_COMFORT, reading);
+                break;
+            case 6:
+                return TemperatureSensor.hazardLevel(reading);
+            default:
+                return TemperatureSensor.comfortLevel(reading);
+        }
+        return level >= 0 ? level : formula(kind, reading);
+    }
+
+    private static long time(int[] readings, int kind, boolean table) {
+        long sum = 0;
+        long start = System.nanoTime();
+        for (int run = 0; run < RUNS; run++) {
+            for (int reading : readings) {
+                sum += table ? table(kind, reading) : formula(kind, reading);
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        if (sum == 42) {
+            System.out.println();
+        }
+        return elapsed;
+    }
+}
@@ -0,0 +1,58 @@
+package bms.sensors;
+
+import bms.util.SimulationClock;
+import bms.util.TimedItemManager;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class TimedSensorTest {
+
+    @Test
+    public void testElapseMinutesMatchesElapseOneMinute() {
+        int[] readings = {3, 9, 4, 7, 1};
+        for (int minutes = 0; minutes < 60; minutes += 3) {
+            TimedSensor stepped = new NoiseSensor(readings, 3);
+            TimedSensor jumped = new NoiseSensor(readings, 3);
+            stepped.elapseOneMinute();
+            jumped.elapseMinutes(1);
+            for (int i = 0; i < minutes; i++) {
+                stepped.elapseOneMinute();
+            }
+            jumped.elapseMinutes(minutes);
+            assertEquals(stepped.getTimeElapsed(), jumped.getTimeElapsed());
+            assertEquals(stepped.getCurrentReading(), jumped.getCurrentReading());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testElapseMinutesRejectsNegative() {
+        new TemperatureSensor(new int[]{20}).elapseMinutes(-1);
+    }
+
+    @Test
+    public void testReadingFollowsSchedulerClock() {
+        int[] readings = {3, 9, 4, 7, 1};
+        TimedSensor sensor = new NoiseSensor(readings, 2);
+        TimedSensor stepped = new NoiseSensor(readings, 2);
+        SimulationClock clock = new SimulationClock();
+        SimulationClock.moveTimedItems(Collections.singletonList(sensor),
+                TimedItemManager.getInstance().getClock(), clock);
+
+        // only the clock is elapsed; the sensor derives its reading from it
+        clock.elapseMinutes(7);
+        stepped.elapseMinutes(7);
+        assertEquals(stepped.getTimeElapsed(), sensor.getTimeElapsed());
+        assertEquals(stepped.getCurrentReading(), sensor.getCurrentReading());
+
+        // the sensor keeps its time once it stops following the clock
+        clock.unregisterTimedItem(sensor);
+        clock.elapseMinutes(5);
+        sensor.elapseOneMinute();
+        stepped.elapseOneMinute();
+        assertEquals(stepped.getTimeElapsed(), sensor.getTimeElapsed());
+        assertEquals(stepped.getCurrentReading(), sensor.getCurrentReading());
+    }
+}
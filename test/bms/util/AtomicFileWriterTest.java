@@ -0,0 +1,67 @@
+package bms.util;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class AtomicFileWriterTest {
+
+    @Test
+    public void testReplacesFile() throws IOException {
+        Path directory = Files.createTempDirectory("bms");
+        Path target = directory.resolve("save.txt");
+        Files.writeString(target, "old");
+
+        AtomicFileWriter.write(target, writer -> writer.write("new"));
+
+        assertEquals("new", Files.readString(target));
+        assertEquals(1, directory.toFile().list().length);
+    }
+
+    @Test
+    public void testFailureLeavesFileUnchanged() throws IOException {
+        Path directory = Files.createTempDirectory("bms");
+        Path target = directory.resolve("save.txt");
+        Files.writeString(target, "old");
+
+        try {
+            AtomicFileWriter.write(target, writer -> {
+                writer.write("partial");
+                throw new IOException("disk full");
+            });
+            fail("expected IOException");
+        } catch (IOException expected) {
+        }
+
+        assertEquals("old", Files.readString(target));
+        File[] files = directory.toFile().listFiles();
+        assertEquals(1, files.length);
+    }
+
+    @Test
+    public void testKeepsPermissions() throws IOException {
+        if (!FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            return;
+        }
+        Path directory = Files.createTempDirectory("bms");
+        Path target = directory.resolve("save.txt");
+        Files.writeString(target, "old");
+        Set<PosixFilePermission> permissions =
+                PosixFilePermissions.fromString("rw-r--r--");
+        Files.setPosixFilePermissions(target, permissions);
+
+        AtomicFileWriter.write(target, writer -> writer.write("new"));
+
+        assertEquals("new", Files.readString(target));
+        assertEquals(permissions, Files.getPosixFilePermissions(target));
+    }
+}
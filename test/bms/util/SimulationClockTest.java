@@ -0,0 +1,246 @@
+package bms.util;
+
+import bms.building.Building;
+import bms.floor.Floor;
+import bms.floor.MaintenanceSchedule;
+import bms.room.Room;
+import bms.room.RoomType;
+import bms.sensors.NoiseSensor;
+import bms.sensors.TimedSensor;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SimulationClockTest {
+
+    /**
+     * Creates a building with one room holding the given sensor.
+     */
+    private static Building createBuilding(String name, TimedSensor sensor)
+            throws Exception {
+        Building building = new Building(name);
+        Floor floor = new Floor(1, 10, 10);
+        building.addFloor(floor);
+        Room room = new Room(101, RoomType.STUDY, 20);
+        room.addSensor(sensor);
+        floor.addRoom(room);
+        return building;
+    }
+
+    @Test
+    public void testSensorsMoveToBuildingClock() throws Exception {
+        TimedSensor sensor = new NoiseSensor(new int[]{1, 2, 3}, 1);
+        Building building = createBuilding("A", sensor);
+        assertSame(building.getClock(), building.getFloors().get(0).getClock());
+        assertEquals(1, building.getClock().getNumberOfTimedItems());
+
+        building.getClock().elapseOneMinute();
+        assertEquals(1, sensor.getTimeElapsed());
+        TimedItemManager.getInstance().elapseOneMinute();
+        assertEquals(2, sensor.getTimeElapsed());
+    }
+
+    @Test
+    public void testBuildingsRunAtTheirOwnRates() throws Exception {
+        TimedSensor paused = new NoiseSensor(new int[]{1, 2, 3}, 1);
+        TimedSensor fast = new NoiseSensor(new int[]{1, 2, 3}, 1);
+        Building pausedBuilding = createBuilding("Paused", paused);
+        Building fastBuilding = createBuilding("Fast", fast);
+        pausedBuilding.getClock().setPaused(true);
+        fastBuilding.getClock().setRate(5);
+
+        TimedItemManager.getInstance().elapseOneMinute();
+        TimedItemManager.getInstance().elapseOneMinute();
+        assertEquals(0, paused.getTimeElapsed());
+        assertEquals(10, fast.getTimeElapsed());
+        assertEquals(10, fastBuilding.getClock().getMinutesElapsed());
+    }
+
+    @Test
+    public void testUnregisteredClockIsTickedIndependently() throws Exception {
+        TimedSensor sensor = new NoiseSensor(new int[]{1, 2, 3}, 1);
+        Building building = createBuilding("Independent", sensor);
+        building.unregisterTimedItems();
+
+        TimedItemManager.getInstance().elapseOneMinute();
+        assertEquals(0, sensor.getTimeElapsed());
+        building.getClock().elapseMinutes(4);
+        assertEquals(4, sensor.getTimeElapsed());
+    }
+
+    /**
+     * Scheduled item which changes every given number of minutes, and
+     * counts how often it is woken.
+     */
+    private static class CountingItem implements ScheduledTimedItem {
+        private final int period;
+        private SimulationClock scheduler;
+        private long minutes = 0;
+        private long syncedAt = 0;
+        private int wakes = 0;
+        private Object handle;
+
+        private CountingItem(int period) {
+            this.period = period;
+        }
+
+        @Override
+        public void elapseOneMinute() {
+            minutes++;
+        }
+
+        @Override
+        public long getMinutesUntilNextChange() {
+            return period - minutes % period;
+        }
+
+        @Override
+        public SimulationClock getScheduler() {
+            return scheduler;
+        }
+
+        @Override
+        public void setScheduler(SimulationClock scheduler) {
+            this.scheduler = scheduler;
+            this.syncedAt = scheduler == null ? 0 : scheduler.getMinutesElapsed();
+        }
+
+        @Override
+        public Object getSchedulerHandle() {
+            return handle;
+        }
+
+        @Override
+        public void setSchedulerHandle(Object handle) {
+            this.handle = handle;
+        }
+
+        @Override
+        public void wake() {
+            wakes++;
+            minutes += scheduler.getMinutesElapsed() - syncedAt;
+            syncedAt = scheduler.getMinutesElapsed();
+        }
+    }
+
+    @Test
+    public void testScheduledItemsAreOnlyWokenWhenDue() {
+        SimulationClock clock = new SimulationClock();
+        CountingItem item = new CountingItem(10);
+        clock.registerTimedItem(item);
+        assertSame(clock, item.getScheduler());
+        assertEquals(1, clock.getNumberOfTimedItems());
+
+        for (int i = 0; i < 100; i++) {
+            clock.elapseOneMinute();
+        }
+        assertEquals(10, item.wakes);
+        assertEquals(100, item.minutes);
+
+        // a long jump wakes the item once
+        clock.elapseMinutes(1000);
+        assertEquals(11, item.wakes);
+        assertEquals(1100, item.minutes);
+
+        clock.unregisterTimedItem(item);
+        assertNull(item.getScheduler());
+        clock.elapseMinutes(10);
+        assertEquals(11, item.wakes);
+        assertEquals(0, clock.getNumberOfTimedItems());
+    }
+
+    @Test
+    public void testRescheduledItemIsWokenOnce() {
+        SimulationClock clock = new SimulationClock();
+        CountingItem item = new CountingItem(10);
+        clock.registerTimedItem(item);
+        clock.elapseMinutes(4);
+        for (int i = 0; i < 1000; i++) {
+            clock.reschedule(item);
+        }
+        assertEquals(1, clock.getNumberOfTimedItems());
+
+        // the item has not caught up, so is due a whole period after minute 4
+        clock.elapseMinutes(9);
+        assertEquals(0, item.wakes);
+        clock.elapseOneMinute();
+        assertEquals(1, item.wakes);
+        assertEquals(14, item.minutes);
+
+        clock.unregisterTimedItem(item);
+        clock.reschedule(item);
+        assertEquals(0, clock.getNumberOfTimedItems());
+    }
+
+    @Test
+    public void testScheduledSensorMatchesSteppedSensor() {
+        int[] readings = {5, 8, 2, 9, 4};
+        TimedSensor scheduled = new NoiseSensor(readings, 3);
+        TimedSensor stepped = new NoiseSensor(readings, 3);
+        SimulationClock clock = new SimulationClock();
+        SimulationClock.moveTimedItems(Arrays.asList(scheduled),
+                TimedItemManager.getInstance().getClock(), clock);
+        TimedItemManager.getInstance().unregisterTimedItem(stepped);
+        assertSame(clock, scheduled.getScheduler());
+        assertNull(stepped.getScheduler());
+
+        for (int i = 0; i < 40; i++) {
+            clock.elapseOneMinute();
+            stepped.elapseOneMinute();
+            assertEquals(stepped.getCurrentReading(), scheduled.getCurrentReading());
+            assertEquals(stepped.getTimeElapsed(), scheduled.getTimeElapsed());
+        }
+        clock.setRate(7);
+        for (int i = 0; i < 10; i++) {
+            clock.elapseOneMinute();
+            stepped.elapseMinutes(7);
+            assertEquals(stepped.getCurrentReading(), scheduled.getCurrentReading());
+        }
+    }
+
+    @Test
+    public void testMaintenanceRoomsChangeAtDueMinute() throws Exception {
+        Floor floor = new Floor(1, 20, 20);
+        List<Room> rooms = new ArrayList<>();
+        rooms.add(new Room(101, RoomType.STUDY, 10));
+        rooms.add(new Room(102, RoomType.LABORATORY, 25));
+        rooms.add(new Room(103, RoomType.OFFICE, 30));
+        for (Room room : rooms) {
+            floor.addRoom(room);
+        }
+        SimulationClock clock = new SimulationClock();
+        floor.setClock(clock);
+        floor.createMaintenanceSchedule(rooms);
+        MaintenanceSchedule schedule = floor.getMaintenanceSchedule();
+        assertSame(clock, schedule.getScheduler());
+
+        // the rooms' maintenance flags are only changed when woken, so they
+        // must be up to date after every tick
+        int time = 0;
+        int current = 0;
+        for (int minute = 1; minute <= 300; minute++) {
+            clock.elapseOneMinute();
+            time++;
+            if (time >= schedule.getMaintenanceTime(rooms.get(current))) {
+                current = (current + 1) % rooms.size();
+                time = 0;
+            }
+            for (int i = 0; i < rooms.size(); i++) {
+                assertEquals(i == current, rooms.get(i).maintenanceOngoing());
+            }
+        }
+
+        // skipping a room moves the next wake earlier
+        schedule.skipCurrentMaintenance();
+        current = (current + 1) % rooms.size();
+        for (int minute = 0; minute < schedule.getMaintenanceTime(rooms.get(current)); minute++) {
+            assertTrue(rooms.get(current).maintenanceOngoing());
+            clock.elapseOneMinute();
+        }
+        assertFalse(rooms.get(current).maintenanceOngoing());
+    }
+}
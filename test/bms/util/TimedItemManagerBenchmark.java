@@ -0,0 +1,58 @@
+package bms.util;
+
+import bms.sensors.NoiseSensor;
+import bms.sensors.OccupancySensor;
+import bms.sensors.TemperatureSensor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Compares sequential ticks of {@link TimedItemManager} with parallel ticks
+ * on the common fork-join pool, for 10k, 100k and 1M registered sensors.
+ * <p>
+ * Sensors register weakly with the singleton manager, so they are kept in a
+ * list, which grows between rounds rather than being rebuilt.
+ * Run with: java -Xmx2g bms.util.TimedItemManagerBenchmark
+ */
+public class TimedItemManagerBenchmark {
+
+    private static final int TICKS = 50;
+
+    public static void main(String[] args) {
+        TimedItemManager manager = TimedItemManager.getInstance();
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        System.out.println("parallelism " + pool.getParallelism());
+        List<TimedItem> sensors = new ArrayList<>();
+        for (int numSensors = 10_000; numSensors <= 1_000_000; numSensors *= 10) {
+            while (sensors.size() < numSensors) {
+                switch (sensors.size() % 3) {
+                    case 0:
+                        sensors.add(new NoiseSensor(new int[]{55, 62, 69, 63}, 3));
+                        break;
+                    case 1:
+                        sensors.add(new OccupancySensor(new int[]{4, 6, 12, 20, 18}, 2, 30));
+                        break;
+                    default:
+                        sensors.add(new TemperatureSensor(new int[]{21, 22, 23, 24}));
+                }
+            }
+
+            long sequential = Long.MAX_VALUE;
+            long parallel = Long.MAX_VALUE;
+            for (int i = 0; i < TICKS; i++) {
+                long start = System.nanoTime();
+                manager.elapseOneMinute();
+                sequential = Math.min(sequential, System.nanoTime() - start);
+
+                start = System.nanoTime();
+                manager.elapseOneMinute(pool);
+                parallel = Math.min(parallel, System.nanoTime() - start);
+            }
+            System.out.printf("%8d sensors: sequential tick (best of %d) %8.3f ms,"
+                            + " parallel tick %8.3f ms%n", numSensors, TICKS,
+                    sequential / 1e6, parallel / 1e6);
+        }
+    }
+}
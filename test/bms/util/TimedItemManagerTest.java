@@ -0,0 +1,93 @@
+package bms.util;
+
+import bms.building.Building;
+import bms.building.BuildingInitialiser;
+import bms.sensors.NoiseSensor;
+import bms.sensors.TimedSensor;
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class TimedItemManagerTest {
+
+    @Test
+    public void testParallelTickElapsesEachItemOnce() {
+        List<TimedSensor> sensors = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            sensors.add(new NoiseSensor(new int[]{1, 2, 3}, 1));
+        }
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            TimedItemManager.getInstance().elapseOneMinute(pool);
+            TimedItemManager.getInstance().elapseMinutes(4, pool);
+        } finally {
+            pool.shutdown();
+        }
+        for (TimedSensor sensor : sensors) {
+            assertEquals(5, sensor.getTimeElapsed());
+            assertEquals(3, sensor.getCurrentReading());
+        }
+    }
+
+    @Test
+    public void testUnregisteredBuildingStopsTicking() throws Exception {
+        TimedItemManager manager = TimedItemManager.getInstance();
+        List<Building> buildings = BuildingInitialiser.loadBuildings("saves/uqstlucia.txt");
+        List<TimedItem> timedItems = new ArrayList<>();
+        for (Building building : buildings) {
+            timedItems.addAll(building.getTimedItems());
+            building.unregisterTimedItems();
+        }
+        assertFalse(timedItems.isEmpty());
+
+        TimedSensor sensor = null;
+        for (TimedItem timedItem : timedItems) {
+            if (timedItem instanceof TimedSensor) {
+                sensor = (TimedSensor) timedItem;
+            }
+        }
+        manager.elapseOneMinute();
+        assertEquals(0, sensor.getTimeElapsed());
+    }
+
+    @Test
+    public void testDiscardedModelsAreNotTicked() throws Exception {
+        TimedItemManager manager = TimedItemManager.getInstance();
+        List<Building> buildings = BuildingInitialiser.loadBuildings("saves/uqstlucia.txt");
+        List<WeakReference<SimulationClock>> clocks = new ArrayList<>();
+        for (Building building : buildings) {
+            clocks.add(new WeakReference<>(building.getClock()));
+        }
+        int before = manager.getNumberOfTimedItems();
+        buildings = null;
+
+        // collection is not guaranteed, so wait a bounded time for it, and
+        // only check what happens to the models once they are collected
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!allCleared(clocks) && System.nanoTime() < deadline) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assumeTrue("models were not garbage collected", allCleared(clocks));
+
+        // models discarded without being unregistered must not pile up
+        manager.elapseOneMinute();
+        assertTrue(manager.getNumberOfTimedItems() <= before - clocks.size());
+    }
+
+    private static boolean allCleared(List<? extends WeakReference<?>> references) {
+        for (WeakReference<?> reference : references) {
+            if (reference.get() != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+}